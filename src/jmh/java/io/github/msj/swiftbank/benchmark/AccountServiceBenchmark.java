@@ -0,0 +1,100 @@
+package io.github.msj.swiftbank.benchmark;
+
+import io.github.msj.swiftbank.dto.TransactionPage;
+import io.github.msj.swiftbank.service.AccountService;
+import io.github.msj.swiftbank.service.TransactionService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class AccountServiceBenchmark {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+
+    @State(Scope.Benchmark)
+    public static class Bank {
+
+        @Param({"1000"})
+        public int accounts;
+
+        @Param({"20"})
+        public int transactionsPerAccount;
+
+        ConfigurableApplicationContext context;
+
+        AccountService accountService;
+
+        TransactionService transactionService;
+
+        List<Long> accountIds;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            context = BenchmarkEnvironment.start("account_service", Collections.<String, Object>emptyMap());
+            accountIds = BenchmarkEnvironment.seed(context, accounts, transactionsPerAccount);
+            accountService = context.getBean(AccountService.class);
+            transactionService = context.getBean(TransactionService.class);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            context.close();
+        }
+
+        Long randomAccount() {
+            return accountIds.get(ThreadLocalRandom.current().nextInt(accountIds.size()));
+        }
+    }
+
+    @Benchmark
+    public void creditAccount(Bank bank) {
+        bank.accountService.creditAccount(bank.randomAccount(), AMOUNT);
+    }
+
+    @Benchmark
+    public void debitAccount(Bank bank) {
+        bank.accountService.debitAccount(bank.randomAccount(), AMOUNT);
+    }
+
+    @Benchmark
+    public void transferBetweenAccounts(Bank bank) {
+        Long source = bank.randomAccount();
+        Long target = bank.randomAccount();
+        while (target.equals(source)) {
+            target = bank.randomAccount();
+        }
+        bank.accountService.transferBetweenAccounts(source, target, AMOUNT);
+    }
+
+    @Benchmark
+    public BigDecimal calculateTotalBalance(Bank bank) {
+        return bank.accountService.calculateTotalBalance();
+    }
+
+    @Benchmark
+    public TransactionPage getTransactionPage(Bank bank) {
+        return bank.transactionService.getTransactionPage(bank.randomAccount(), null, TransactionPage.Direction.NEXT);
+    }
+}
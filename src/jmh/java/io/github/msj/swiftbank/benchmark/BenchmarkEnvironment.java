@@ -0,0 +1,100 @@
+package io.github.msj.swiftbank.benchmark;
+
+import io.github.msj.swiftbank.SwiftBankApplication;
+import io.github.msj.swiftbank.entity.Account;
+import io.github.msj.swiftbank.entity.Transaction;
+import io.github.msj.swiftbank.entity.User;
+import io.github.msj.swiftbank.repository.AccountRepository;
+import io.github.msj.swiftbank.repository.TransactionRepository;
+import io.github.msj.swiftbank.service.UserService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+final class BenchmarkEnvironment {
+
+    private static final int SEED_CHUNK_SIZE = 500;
+
+    private BenchmarkEnvironment() {
+    }
+
+    static ConfigurableApplicationContext start(String databaseName, Map<String, Object> overrides) {
+        System.setProperty("spring.devtools.restart.enabled", "false");
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("spring.datasource.url",
+                "jdbc:h2:mem:" + databaseName + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE");
+        properties.put("spring.datasource.username", "sa");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.datasource.driver-class-name", "org.h2.Driver");
+        properties.put("spring.jpa.show-sql", "false");
+        properties.put("spring.jpa.properties.hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        properties.put("swiftbank.velocity.enabled", "false");
+        properties.put("logging.level.root", "warn");
+        properties.put("logging.level.org.hibernate.SQL", "warn");
+        properties.put("logging.level.org.hibernate.type.descriptor.sql", "warn");
+        properties.putAll(overrides);
+
+        List<String> args = new ArrayList<>();
+        for (Map.Entry<String, Object> property : properties.entrySet()) {
+            args.add("--" + property.getKey() + "=" + property.getValue());
+        }
+
+        return new SpringApplicationBuilder(SwiftBankApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args.toArray(new String[0]));
+    }
+
+    static List<Long> seed(ConfigurableApplicationContext context, int accounts, int transactionsPerAccount) {
+        AccountRepository accountRepository = context.getBean(AccountRepository.class);
+        TransactionRepository transactionRepository = context.getBean(TransactionRepository.class);
+        TransactionOperations transactionOperations = context.getBean(TransactionOperations.class);
+        List<User> owners = new ArrayList<>();
+        owners.add(context.getBean(UserService.class).findByUsername("one_user@email.com"));
+        owners.add(context.getBean(UserService.class).findByUsername("second_user@email.com"));
+
+        List<Long> accountIds = new ArrayList<>(accounts);
+        for (int offset = 0; offset < accounts; offset += SEED_CHUNK_SIZE) {
+            int chunkEnd = Math.min(accounts, offset + SEED_CHUNK_SIZE);
+            int chunkStart = offset;
+            List<Account> saved = transactionOperations.execute(status -> {
+                Long nextVal = accountRepository.lockNextAccountId();
+                accountRepository.updateNextAccountId(nextVal + chunkEnd - chunkStart);
+                List<Account> chunk = new ArrayList<>();
+                for (int i = chunkStart; i < chunkEnd; i++) {
+                    Account account = new Account();
+                    account.setId(nextVal - 48 + i - chunkStart);
+                    account.setOwnerName("Conta " + i);
+                    account.setBalance(new BigDecimal("1000000000"));
+                    account.setUser(owners.get(i % owners.size()));
+                    chunk.add(account);
+                }
+                List<Account> accountsSaved = accountRepository.saveAll(chunk);
+
+                List<Transaction> ledger = new ArrayList<>();
+                for (Account account : accountsSaved) {
+                    for (int j = 0; j < transactionsPerAccount; j++) {
+                        Transaction transaction = new Transaction();
+                        transaction.setAccount(account);
+                        transaction.setAmount(BigDecimal.ONE);
+                        transaction.setTransactionType("CREDIT");
+                        ledger.add(transaction);
+                    }
+                }
+                transactionRepository.saveAll(ledger);
+                return accountsSaved;
+            });
+            for (Account account : saved) {
+                accountIds.add(account.getId());
+            }
+        }
+        return accountIds;
+    }
+}
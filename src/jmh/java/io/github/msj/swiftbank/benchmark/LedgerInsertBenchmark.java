@@ -0,0 +1,86 @@
+package io.github.msj.swiftbank.benchmark;
+
+import io.github.msj.swiftbank.entity.Account;
+import io.github.msj.swiftbank.entity.Transaction;
+import io.github.msj.swiftbank.repository.AccountRepository;
+import io.github.msj.swiftbank.service.TransactionService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class LedgerInsertBenchmark {
+
+    private static final int ROWS_PER_INVOCATION = 50;
+
+    @State(Scope.Benchmark)
+    public static class Ledger {
+
+        @Param({"1", "50"})
+        public int jdbcBatchSize;
+
+        @Param({"pooled", "identity"})
+        public String idGeneration;
+
+        ConfigurableApplicationContext context;
+
+        TransactionService transactionService;
+
+        Account account;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Map<String, Object> overrides = new HashMap<>();
+            overrides.put("spring.jpa.properties.hibernate.jdbc.batch_size", String.valueOf(jdbcBatchSize));
+            if ("identity".equals(idGeneration)) {
+                overrides.put("spring.jpa.mapping-resources", "META-INF/identity-orm.xml");
+            }
+            context = BenchmarkEnvironment.start("ledger_insert_" + idGeneration + "_" + jdbcBatchSize, overrides);
+            List<Long> accountIds = BenchmarkEnvironment.seed(context, 1, 0);
+            account = context.getBean(AccountRepository.class).findById(accountIds.get(0)).orElseThrow(IllegalStateException::new);
+            transactionService = context.getBean(TransactionService.class);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            context.close();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS_PER_INVOCATION)
+    public List<Transaction> saveLedgerRows(Ledger ledger) {
+        List<Transaction> rows = new ArrayList<>(ROWS_PER_INVOCATION);
+        for (int i = 0; i < ROWS_PER_INVOCATION; i++) {
+            Transaction transaction = new Transaction();
+            transaction.setAccount(ledger.account);
+            transaction.setAmount(BigDecimal.ONE);
+            transaction.setTransactionType("CREDIT");
+            rows.add(transaction);
+        }
+        return ledger.transactionService.saveAll(rows);
+    }
+}
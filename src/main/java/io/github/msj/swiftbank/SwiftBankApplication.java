@@ -2,8 +2,10 @@ package io.github.msj.swiftbank;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class SwiftBankApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,136 @@
+package io.github.msj.swiftbank.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Collections;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class BoundedPasswordEncoder implements PasswordEncoder, DisposableBean {
+
+    private static final Pattern BCRYPT_COST = Pattern.compile("^\\$2[abxy]?\\$(\\d{2})\\$");
+
+    private static final String OVERLOADED_MESSAGE = "Serviço de autenticação sobrecarregado. Tente novamente em instantes.";
+
+    private final PasswordEncoder delegate;
+
+    private final int strength;
+
+    private final long timeoutMillis;
+
+    private final ThreadPoolExecutor executor;
+
+    private final Counter rejections;
+
+    public BoundedPasswordEncoder(int strength, int threads, int queueCapacity, long timeoutMillis,
+                                  MeterRegistry meterRegistry) {
+        this(new BCryptPasswordEncoder(strength), strength, threads, queueCapacity, timeoutMillis, meterRegistry);
+    }
+
+    BoundedPasswordEncoder(PasswordEncoder delegate, int strength, int threads, int queueCapacity, long timeoutMillis,
+                           MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.strength = strength;
+        this.timeoutMillis = timeoutMillis;
+
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.min(Math.max(1, queueCapacity), backlogWithinTimeout(poolSize))),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        ExecutorServiceMetrics.monitor(meterRegistry, executor, "passwordHashing", Collections.emptyList());
+        this.rejections = Counter.builder("swiftbank.password.hashing.rejected")
+                .description("Password hashing requests rejected because the executor was saturated")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return submit(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return submit(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+        return matcher.find() && Integer.parseInt(matcher.group(1)) != strength;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private int backlogWithinTimeout(int poolSize) {
+        // a caller queued behind more hashes than the pool can finish before the timeout would only be abandoned
+        // later, so the queue stops there and such callers are rejected on arrival
+        delegate.encode("calibration");
+        long startedAt = System.nanoTime();
+        delegate.encode("calibration");
+        long hashNanos = Math.max(1, System.nanoTime() - startedAt);
+        long roundsWithinTimeout = TimeUnit.MILLISECONDS.toNanos(timeoutMillis) / hashNanos;
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, (roundsWithinTimeout - 1) * poolSize));
+    }
+
+    private <T> T submit(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejections.increment();
+            throw new AuthenticationServiceException(OVERLOADED_MESSAGE, e);
+        }
+
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            abandon(future);
+            rejections.increment();
+            throw new AuthenticationServiceException(OVERLOADED_MESSAGE, e);
+        } catch (InterruptedException e) {
+            abandon(future);
+            Thread.currentThread().interrupt();
+            throw new AuthenticationServiceException(OVERLOADED_MESSAGE, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private void abandon(Future<?> future) {
+        // cancelling alone leaves a queued hash holding its slot until a worker skips it
+        future.cancel(true);
+        executor.remove((Runnable) future);
+    }
+}
@@ -0,0 +1,22 @@
+package io.github.msj.swiftbank.config;
+
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+
+class ClosingConnectionProxy extends LazyConnectionDataSourceProxy implements Closeable {
+
+    private final Closeable routing;
+
+    <T extends DataSource & Closeable> ClosingConnectionProxy(T routing) {
+        super(routing);
+        this.routing = routing;
+    }
+
+    @Override
+    public void close() throws IOException {
+        routing.close();
+    }
+}
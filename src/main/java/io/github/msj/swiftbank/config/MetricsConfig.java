@@ -0,0 +1,34 @@
+package io.github.msj.swiftbank.config;
+
+import io.github.msj.swiftbank.service.ConflictRetryExecutor;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Arrays;
+import java.util.List;
+
+@Configuration
+public class MetricsConfig {
+
+    private static final List<String> RETRIED_OPERATIONS = Arrays.asList("credit", "debit", "transfer");
+
+    @Bean
+    public MeterBinder conflictRetryMetrics(ConflictRetryExecutor conflictRetryExecutor) {
+        return registry -> {
+            for (String operation : RETRIED_OPERATIONS) {
+                FunctionCounter.builder("swiftbank.conflict.retries", conflictRetryExecutor,
+                                executor -> executor.getRetryCount(operation))
+                        .description("Attempts repeated after a locking conflict")
+                        .tag("operation", operation)
+                        .register(registry);
+                FunctionCounter.builder("swiftbank.conflict.exhausted", conflictRetryExecutor,
+                                executor -> executor.getExhaustedCount(operation))
+                        .description("Operations that gave up after exhausting conflict retries")
+                        .tag("operation", operation)
+                        .register(registry);
+            }
+        };
+    }
+}
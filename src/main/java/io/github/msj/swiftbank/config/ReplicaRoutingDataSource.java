@@ -0,0 +1,113 @@
+package io.github.msj.swiftbank.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    static final String PRIMARY = "primary";
+
+    static final String LAST_WRITE_ATTRIBUTE = ReplicaRoutingDataSource.class.getName() + ".lastWrite";
+
+    private final List<String> replicas;
+
+    private final long readYourWritesMillis;
+
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    private final Counter writeRoutes;
+
+    private final Counter readRoutes;
+
+    private final Counter pinnedRoutes;
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, long readYourWritesMillis,
+                                    MeterRegistry meterRegistry) {
+        Map<Object, Object> targets = new HashMap<>(replicas);
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+
+        this.replicas = new ArrayList<>(replicas.keySet());
+        this.readYourWritesMillis = readYourWritesMillis;
+        this.writeRoutes = routes(meterRegistry, "write");
+        this.readRoutes = routes(meterRegistry, "read");
+        this.pinnedRoutes = routes(meterRegistry, "pinned");
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                rememberWriteOnCommit();
+            }
+            writeRoutes.increment();
+            return PRIMARY;
+        }
+
+        if (replicas.isEmpty() || wroteRecently()) {
+            pinnedRoutes.increment();
+            return PRIMARY;
+        }
+
+        readRoutes.increment();
+        return replicas.get(Math.floorMod(nextReplica.getAndIncrement(), replicas.size()));
+    }
+
+    private void rememberWriteOnCommit() {
+        final RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null || readYourWritesMillis <= 0) {
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                attributes.setAttribute(LAST_WRITE_ATTRIBUTE, System.currentTimeMillis(),
+                        RequestAttributes.SCOPE_SESSION);
+            }
+        });
+    }
+
+    private boolean wroteRecently() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null || readYourWritesMillis <= 0) {
+            return false;
+        }
+
+        Object lastWrite = attributes.getAttribute(LAST_WRITE_ATTRIBUTE, RequestAttributes.SCOPE_SESSION);
+        return lastWrite instanceof Long
+                && System.currentTimeMillis() - (Long) lastWrite < readYourWritesMillis;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (DataSource target : getResolvedDataSources().values()) {
+            if (target instanceof Closeable) {
+                ((Closeable) target).close();
+            }
+        }
+    }
+
+    private static Counter routes(MeterRegistry meterRegistry, String route) {
+        return Counter.builder("swiftbank.datasource.routes")
+                .description("Connections handed out by the read-replica router")
+                .tag("route", route)
+                .register(meterRegistry);
+    }
+}
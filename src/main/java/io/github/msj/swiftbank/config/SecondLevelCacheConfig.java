@@ -0,0 +1,62 @@
+package io.github.msj.swiftbank.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class SecondLevelCacheConfig {
+
+    private static final String USERS_REGION = "users";
+
+    private static final String USER_ROLES_REGION = "users.roles";
+
+    private static final String ROLES_REGION = "roles";
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(@Value("${swiftbank.second-level-cache.users-max-size:10000}") long usersMaxSize,
+                                              @Value("${swiftbank.second-level-cache.roles-max-size:100}") long rolesMaxSize,
+                                              @Value("${swiftbank.second-level-cache.query-max-size:10000}") long queryMaxSize,
+                                              @Value("${swiftbank.second-level-cache.ttl-ms:600000}") long ttlMillis) {
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager(provider.getDefaultURI(), getClass().getClassLoader());
+
+        cacheManager.createCache(USERS_REGION, bounded(usersMaxSize, ttlMillis));
+        cacheManager.createCache(USER_ROLES_REGION, bounded(usersMaxSize, ttlMillis));
+        cacheManager.createCache(ROLES_REGION, bounded(rolesMaxSize, 0));
+        cacheManager.createCache(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME,
+                bounded(queryMaxSize, ttlMillis));
+        cacheManager.createCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME,
+                new CaffeineConfiguration<Object, Object>());
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> {
+            properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+        };
+    }
+
+    private static CaffeineConfiguration<Object, Object> bounded(long maxSize, long ttlMillis) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(maxSize));
+        if (ttlMillis > 0) {
+            configuration.setExpireAfterWrite(OptionalLong.of(TimeUnit.MILLISECONDS.toNanos(ttlMillis)));
+        }
+        configuration.setStatisticsEnabled(true);
+        return configuration;
+    }
+}
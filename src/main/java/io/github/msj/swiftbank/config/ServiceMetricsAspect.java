@@ -0,0 +1,134 @@
+package io.github.msj.swiftbank.config;
+
+import io.github.msj.swiftbank.exception.ConcurrentUpdateException;
+import io.github.msj.swiftbank.exception.InsufficientFundsException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+@Aspect
+@Component
+public class ServiceMetricsAspect {
+
+    static final String CALLS_METRIC = "swiftbank.service.calls";
+
+    static final String AMOUNT_METRIC = "swiftbank.account.amount";
+
+    enum Outcome {
+        SUCCESS, INSUFFICIENT_FUNDS, CONFLICT, REJECTED, ERROR;
+
+        final String tag = name().toLowerCase(Locale.ROOT);
+
+        static Outcome of(Throwable throwable) {
+            if (throwable instanceof InsufficientFundsException) {
+                return INSUFFICIENT_FUNDS;
+            }
+            if (throwable instanceof ConcurrentUpdateException) {
+                return CONFLICT;
+            }
+            if (throwable instanceof IllegalArgumentException) {
+                return REJECTED;
+            }
+            return ERROR;
+        }
+    }
+
+    private static final Map<String, String> AMOUNT_OPERATIONS = new HashMap<>();
+
+    static {
+        AMOUNT_OPERATIONS.put("creditAccount", "credit");
+        AMOUNT_OPERATIONS.put("debitAccount", "debit");
+        AMOUNT_OPERATIONS.put("transferBetweenAccounts", "transfer");
+    }
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<Method, MethodMeters> meters = new ConcurrentHashMap<>();
+
+    public ServiceMetricsAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("execution(public * io.github.msj.swiftbank.service.AccountService.*(..))"
+            + " || execution(public * io.github.msj.swiftbank.service.TransactionService.*(..))"
+            + " || execution(public * io.github.msj.swiftbank.service.UserService.*(..))")
+    public Object measure(ProceedingJoinPoint joinPoint) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        MethodMeters methodMeters = meters.computeIfAbsent(method, this::register);
+
+        long start = System.nanoTime();
+        try {
+            Object result = joinPoint.proceed();
+            methodMeters.record(Outcome.SUCCESS, System.nanoTime() - start);
+            methodMeters.recordAmount(joinPoint.getArgs());
+            return result;
+        } catch (Throwable throwable) {
+            methodMeters.record(Outcome.of(throwable), System.nanoTime() - start);
+            throw throwable;
+        }
+    }
+
+    private MethodMeters register(Method method) {
+        String className = method.getDeclaringClass().getSimpleName();
+        Outcome[] outcomes = Outcome.values();
+        Timer[] timers = new Timer[outcomes.length];
+        for (Outcome outcome : outcomes) {
+            timers[outcome.ordinal()] = Timer.builder(CALLS_METRIC)
+                    .description("Latency and outcome of service calls")
+                    .tag("class", className)
+                    .tag("method", method.getName())
+                    .tag("outcome", outcome.tag)
+                    .register(meterRegistry);
+        }
+
+        DistributionSummary amounts = null;
+        String operation = AMOUNT_OPERATIONS.get(method.getName());
+        if (operation != null && "AccountService".equals(className)) {
+            amounts = DistributionSummary.builder(AMOUNT_METRIC)
+                    .description("Amounts moved by successful account operations")
+                    .baseUnit("BRL")
+                    .tag("operation", operation)
+                    .register(meterRegistry);
+        }
+        return new MethodMeters(timers, amounts);
+    }
+
+    private static final class MethodMeters {
+
+        private final Timer[] timers;
+
+        private final DistributionSummary amounts;
+
+        private MethodMeters(Timer[] timers, DistributionSummary amounts) {
+            this.timers = timers;
+            this.amounts = amounts;
+        }
+
+        private void record(Outcome outcome, long elapsedNanos) {
+            timers[outcome.ordinal()].record(elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+
+        private void recordAmount(Object[] args) {
+            if (amounts == null || args.length == 0) {
+                return;
+            }
+            Object amount = args[args.length - 1];
+            if (amount instanceof BigDecimal) {
+                amounts.record(((BigDecimal) amount).doubleValue());
+            }
+        }
+    }
+}
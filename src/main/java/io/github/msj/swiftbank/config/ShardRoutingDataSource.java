@@ -0,0 +1,38 @@
+package io.github.msj.swiftbank.config;
+
+import io.github.msj.swiftbank.service.AccountShards;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    public ShardRoutingDataSource(List<DataSource> shards) {
+        Map<Object, Object> targets = new HashMap<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            targets.put(shard, shards.get(shard));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shards.get(AccountShards.HOME_SHARD));
+        setLenientFallback(false);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return AccountShards.currentShard();
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (DataSource target : getResolvedDataSources().values()) {
+            if (target instanceof Closeable) {
+                ((Closeable) target).close();
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package io.github.msj.swiftbank.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@ConditionalOnProperty(name = "swiftbank.sharding.enabled", havingValue = "true")
+public class ShardingConfig {
+
+    @Bean
+    public DataSource dataSource(DataSourceProperties properties, MeterRegistry meterRegistry, Environment environment,
+                                 @Value("${swiftbank.sharding.urls:}") String[] shardUrls,
+                                 @Value("${swiftbank.sharding.username:${spring.datasource.username:}}") String username,
+                                 @Value("${swiftbank.sharding.password:${spring.datasource.password:}}") String password,
+                                 @Value("${spring.flyway.locations:classpath:db/migration}") String[] migrationLocations) {
+        if (environment.getProperty("swiftbank.read-replicas.enabled", Boolean.class, false)) {
+            throw new IllegalStateException("swiftbank.sharding and swiftbank.read-replicas cannot be enabled together");
+        }
+        if (environment.getProperty("swiftbank.ledger.write-behind.enabled", Boolean.class, false)) {
+            throw new IllegalStateException("swiftbank.ledger.write-behind must be disabled when sharding is enabled, "
+                    + "its writer thread is not bound to the owning shard");
+        }
+
+        HikariDataSource home = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        home.setPoolName("shard-0");
+        home.setMetricRegistry(meterRegistry);
+
+        List<DataSource> shards = new ArrayList<>();
+        shards.add(home);
+        for (String url : shardUrls) {
+            if (url.trim().isEmpty()) {
+                continue;
+            }
+            HikariDataSource shard = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(properties.determineDriverClassName())
+                    .url(url.trim())
+                    .username(username)
+                    .password(password)
+                    .build();
+            shard.setPoolName("shard-" + shards.size());
+            shard.setMetricRegistry(meterRegistry);
+            Flyway.configure()
+                    .dataSource(shard)
+                    .locations(migrationLocations)
+                    .baselineOnMigrate(true)
+                    .load()
+                    .migrate();
+            shards.add(shard);
+        }
+
+        ShardRoutingDataSource routing = new ShardRoutingDataSource(shards);
+        routing.afterPropertiesSet();
+        return new ClosingConnectionProxy(routing);
+    }
+}
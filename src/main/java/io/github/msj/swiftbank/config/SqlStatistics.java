@@ -0,0 +1,80 @@
+package io.github.msj.swiftbank.config;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public final class SqlStatistics {
+
+    private static final ThreadLocal<SqlStatistics> CURRENT = new ThreadLocal<>();
+
+    private static final ThreadLocal<Long> QUERY_STARTED_AT = new ThreadLocal<>();
+
+    private final LongAdder statements = new LongAdder();
+
+    private final LongAdder rows = new LongAdder();
+
+    private final LongAdder elapsedNanos = new LongAdder();
+
+    static SqlStatistics start() {
+        SqlStatistics statistics = new SqlStatistics();
+        CURRENT.set(statistics);
+        return statistics;
+    }
+
+    static void stop() {
+        CURRENT.remove();
+    }
+
+    static SqlStatistics current() {
+        return CURRENT.get();
+    }
+
+    static Runnable bind(Runnable task) {
+        SqlStatistics statistics = CURRENT.get();
+        if (statistics == null) {
+            return task;
+        }
+        return () -> {
+            SqlStatistics previous = CURRENT.get();
+            CURRENT.set(statistics);
+            try {
+                task.run();
+            } finally {
+                if (previous == null) {
+                    CURRENT.remove();
+                } else {
+                    CURRENT.set(previous);
+                }
+            }
+        };
+    }
+
+    void queryStarted() {
+        QUERY_STARTED_AT.set(System.nanoTime());
+    }
+
+    void queryFinished(long affectedRows) {
+        statements.increment();
+        rows.add(affectedRows);
+        Long queryStartedAt = QUERY_STARTED_AT.get();
+        if (queryStartedAt != null) {
+            elapsedNanos.add(System.nanoTime() - queryStartedAt);
+            QUERY_STARTED_AT.remove();
+        }
+    }
+
+    void rowRead() {
+        rows.increment();
+    }
+
+    public long getStatements() {
+        return statements.sum();
+    }
+
+    public long getRows() {
+        return rows.sum();
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos.sum();
+    }
+}
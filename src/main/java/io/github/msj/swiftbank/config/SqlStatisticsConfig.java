@@ -0,0 +1,39 @@
+package io.github.msj.swiftbank.config;
+
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.TaskDecorator;
+
+import javax.sql.DataSource;
+
+@Configuration
+public class SqlStatisticsConfig {
+
+    @Bean
+    public static BeanPostProcessor sqlStatisticsDataSourcePostProcessor(Environment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource) || bean instanceof ProxyDataSource
+                        || !environment.getProperty("swiftbank.sql-stats.enabled", Boolean.class, true)) {
+                    return bean;
+                }
+                SqlStatisticsListener listener = new SqlStatisticsListener();
+                return ProxyDataSourceBuilder.create(beanName, (DataSource) bean)
+                        .listener(listener)
+                        .methodListener(listener)
+                        .proxyResultSet()
+                        .build();
+            }
+        };
+    }
+
+    @Bean
+    public TaskDecorator sqlStatisticsTaskDecorator() {
+        return SqlStatistics::bind;
+    }
+}
@@ -0,0 +1,284 @@
+package io.github.msj.swiftbank.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class SqlStatisticsFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(SqlStatisticsFilter.class);
+
+    static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+    private final MeterRegistry meterRegistry;
+
+    private final boolean enabled;
+
+    private final long statementBudget;
+
+    private final boolean failOnBudget;
+
+    public SqlStatisticsFilter(MeterRegistry meterRegistry,
+                               @Value("${swiftbank.sql-stats.enabled:true}") boolean enabled,
+                               @Value("${swiftbank.sql-stats.statement-budget:25}") long statementBudget,
+                               @Value("${swiftbank.sql-stats.fail-on-budget:false}") boolean failOnBudget) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.statementBudget = statementBudget;
+        this.failOnBudget = failOnBudget;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !enabled
+                || path.endsWith("/transactions/export")
+                || path.equals("/user/events")
+                || path.startsWith("/actuator");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        SqlStatistics statistics = SqlStatistics.start();
+        ServerTimingResponse responseWrapper = new ServerTimingResponse(request, response, statistics);
+        try {
+            filterChain.doFilter(request, responseWrapper);
+            responseWrapper.beforeCommit();
+        } finally {
+            SqlStatistics.stop();
+            record(request, statistics);
+        }
+    }
+
+    private void beforeCommit(HttpServletRequest request, HttpServletResponse response, SqlStatistics statistics) {
+        if (!response.isCommitted()) {
+            double elapsedMillis = statistics.getElapsedNanos() / 1_000_000.0;
+            response.setHeader(SERVER_TIMING_HEADER, String.format(Locale.ROOT, "db;dur=%.1f;desc=\"%d statements, %d rows\"",
+                    elapsedMillis, statistics.getStatements(), statistics.getRows()));
+        }
+
+        // a state-changing request has already committed its work by the time its response goes out, so failing it
+        // would only invite a retry; strict mode is limited to requests that are safe to repeat
+        if (failOnBudget && statistics.getStatements() > statementBudget && isSafe(request.getMethod())) {
+            throw new IllegalStateException("Request " + request.getMethod() + " " + handler(request) + " issued "
+                    + statistics.getStatements() + " SQL statements, over the budget of " + statementBudget);
+        }
+    }
+
+    private void record(HttpServletRequest request, SqlStatistics statistics) {
+        String handler = handler(request);
+        String method = request.getMethod();
+
+        DistributionSummary.builder("swiftbank.request.sql.statements")
+                .description("SQL statements issued while serving a request")
+                .tag("handler", handler)
+                .tag("method", method)
+                .register(meterRegistry)
+                .record(statistics.getStatements());
+        DistributionSummary.builder("swiftbank.request.sql.rows")
+                .description("Rows read or written while serving a request")
+                .tag("handler", handler)
+                .tag("method", method)
+                .register(meterRegistry)
+                .record(statistics.getRows());
+        Timer.builder("swiftbank.request.sql.time")
+                .description("Time spent executing SQL while serving a request")
+                .tag("handler", handler)
+                .tag("method", method)
+                .register(meterRegistry)
+                .record(statistics.getElapsedNanos(), TimeUnit.NANOSECONDS);
+
+        if (statistics.getStatements() > statementBudget) {
+            Counter.builder("swiftbank.request.sql.budget.exceeded")
+                    .description("Requests that issued more SQL statements than the configured budget")
+                    .tag("handler", handler)
+                    .tag("method", method)
+                    .register(meterRegistry)
+                    .increment();
+            logger.warn("{} {} issued {} SQL statements, over the budget of {}",
+                    method, handler, statistics.getStatements(), statementBudget);
+        }
+    }
+
+    private static String handler(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern != null ? pattern.toString() : "none";
+    }
+
+    private static boolean isSafe(String method) {
+        return "GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method);
+    }
+
+    // passes the body straight through and only steps in before the first byte (or an error, redirect or flush)
+    // would commit the headers, which is the last point the Server-Timing header can still be added
+    private final class ServerTimingResponse extends HttpServletResponseWrapper {
+
+        private final HttpServletRequest request;
+
+        private final SqlStatistics statistics;
+
+        private boolean headersReported;
+
+        private ServletOutputStream outputStream;
+
+        private PrintWriter writer;
+
+        private ServerTimingResponse(HttpServletRequest request, HttpServletResponse response, SqlStatistics statistics) {
+            super(response);
+            this.request = request;
+            this.statistics = statistics;
+        }
+
+        private void beforeCommit() {
+            if (headersReported) {
+                return;
+            }
+            headersReported = true;
+            SqlStatisticsFilter.this.beforeCommit(request, (HttpServletResponse) getResponse(), statistics);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                outputStream = new CommitAwareOutputStream(super.getOutputStream());
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                writer = new CommitAwareWriter(super.getWriter());
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            beforeCommit();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            beforeCommit();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            beforeCommit();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            beforeCommit();
+            super.sendRedirect(location);
+        }
+
+        private final class CommitAwareOutputStream extends ServletOutputStream {
+
+            private final ServletOutputStream delegate;
+
+            private CommitAwareOutputStream(ServletOutputStream delegate) {
+                this.delegate = delegate;
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                beforeCommit();
+                delegate.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                beforeCommit();
+                delegate.write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                beforeCommit();
+                delegate.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                beforeCommit();
+                delegate.close();
+            }
+
+            @Override
+            public boolean isReady() {
+                return delegate.isReady();
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                delegate.setWriteListener(writeListener);
+            }
+        }
+
+        private final class CommitAwareWriter extends PrintWriter {
+
+            private CommitAwareWriter(PrintWriter delegate) {
+                super(delegate);
+            }
+
+            @Override
+            public void write(int c) {
+                beforeCommit();
+                super.write(c);
+            }
+
+            @Override
+            public void write(char[] buf, int off, int len) {
+                beforeCommit();
+                super.write(buf, off, len);
+            }
+
+            @Override
+            public void write(String s, int off, int len) {
+                beforeCommit();
+                super.write(s, off, len);
+            }
+
+            @Override
+            public void flush() {
+                beforeCommit();
+                super.flush();
+            }
+
+            @Override
+            public void close() {
+                beforeCommit();
+                super.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package io.github.msj.swiftbank.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+@Component
+public class TokenBucketRateLimiter {
+
+    public enum Endpoint {
+        CREDIT("/user/accounts/credit"),
+        DEBIT("/user/accounts/debit"),
+        TRANSFER("/user/accounts/transfer");
+
+        private final String path;
+
+        Endpoint(String path) {
+            this.path = path;
+        }
+
+        public static Endpoint match(String method, String path) {
+            if (!"POST".equalsIgnoreCase(method)) {
+                return null;
+            }
+            for (Endpoint endpoint : values()) {
+                if (endpoint.path.equals(path)) {
+                    return endpoint;
+                }
+            }
+            return null;
+        }
+    }
+
+    public static class Limit {
+
+        private int capacity = 10;
+
+        private double refillPerSecond = 1.0;
+
+        public Limit() {
+        }
+
+        public Limit(int capacity, double refillPerSecond) {
+            this.capacity = capacity;
+            this.refillPerSecond = refillPerSecond;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+
+        public double getRefillPerSecond() {
+            return refillPerSecond;
+        }
+
+        public void setRefillPerSecond(double refillPerSecond) {
+            this.refillPerSecond = refillPerSecond;
+        }
+    }
+
+    public static final class Decision {
+
+        private static final Decision ALLOWED = new Decision(true, 0);
+
+        private final boolean allowed;
+
+        private final long retryAfterSeconds;
+
+        private Decision(boolean allowed, long retryAfterSeconds) {
+            this.allowed = allowed;
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public boolean isAllowed() {
+            return allowed;
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+
+    private final Map<Endpoint, Limit> limits;
+
+    private final Cache<String, Bucket> buckets;
+
+    private final MeterRegistry meterRegistry;
+
+    private final boolean enabled;
+
+    private final LongSupplier nanoClock;
+
+    @Autowired
+    public TokenBucketRateLimiter(Environment environment, MeterRegistry meterRegistry,
+                                  @Value("${swiftbank.rate-limit.enabled:true}") boolean enabled,
+                                  @Value("${swiftbank.rate-limit.max-buckets:100000}") int maxBuckets,
+                                  @Value("${swiftbank.rate-limit.idle-eviction-ms:600000}") long idleEvictionMillis) {
+        this(Binder.get(environment)
+                        .bind("swiftbank.rate-limit.endpoints", Bindable.mapOf(Endpoint.class, Limit.class))
+                        .orElseGet(Collections::emptyMap),
+                meterRegistry, enabled, maxBuckets, idleEvictionMillis, System::nanoTime);
+        Gauge.builder("swiftbank.rate-limit.buckets", buckets, Cache::estimatedSize)
+                .description("Token buckets currently held in memory")
+                .register(meterRegistry);
+    }
+
+    TokenBucketRateLimiter(Map<Endpoint, Limit> limits, MeterRegistry meterRegistry, boolean enabled,
+                           int maxBuckets, long idleEvictionMillis, LongSupplier nanoClock) {
+        this.limits = new EnumMap<>(Endpoint.class);
+        for (Endpoint endpoint : Endpoint.values()) {
+            this.limits.put(endpoint, limits.containsKey(endpoint) ? limits.get(endpoint) : new Limit());
+        }
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.nanoClock = nanoClock;
+
+        // a bucket idle for a full refill is back at capacity, so expiring it cannot hand a client extra tokens;
+        // when the table is full the least valuable bucket makes room instead of locking new clients out
+        long idleEvictionNanos = TimeUnit.MILLISECONDS.toNanos(idleEvictionMillis);
+        for (Limit limit : this.limits.values()) {
+            idleEvictionNanos = Math.max(idleEvictionNanos, new Bucket(limit, 0).fullRefillNanos());
+        }
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxBuckets)
+                .expireAfterAccess(idleEvictionNanos, TimeUnit.NANOSECONDS)
+                .ticker(nanoClock::getAsLong)
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Decision tryAcquire(String principal, Endpoint endpoint) {
+        if (!enabled) {
+            return Decision.ALLOWED;
+        }
+
+        long now = nanoClock.getAsLong();
+        Bucket bucket = buckets.get(endpoint.name() + ':' + principal, key -> new Bucket(limits.get(endpoint), now));
+        long retryAfterSeconds = bucket.tryConsume(now);
+        return retryAfterSeconds == 0 ? Decision.ALLOWED : reject(endpoint, "rate", retryAfterSeconds);
+    }
+
+    long getBucketCount() {
+        buckets.cleanUp();
+        return buckets.estimatedSize();
+    }
+
+    private Decision reject(Endpoint endpoint, String reason, long retryAfterSeconds) {
+        Counter.builder("swiftbank.rate-limit.rejected")
+                .description("Requests rejected by the per-user rate limiter")
+                .tag("endpoint", endpoint.name().toLowerCase(Locale.ROOT))
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+        return new Decision(false, retryAfterSeconds);
+    }
+
+    private static final class Bucket {
+
+        private final int capacity;
+
+        private final double tokensPerNano;
+
+        private final AtomicReference<State> state;
+
+        private Bucket(Limit limit, long now) {
+            this.capacity = Math.max(1, limit.getCapacity());
+            this.tokensPerNano = Math.max(limit.getRefillPerSecond(), 1e-6) / TimeUnit.SECONDS.toNanos(1);
+            this.state = new AtomicReference<>(new State(capacity, now));
+        }
+
+        private long tryConsume(long now) {
+            while (true) {
+                State current = state.get();
+                double tokens = Math.min(capacity, current.tokens + (now - current.updatedAt) * tokensPerNano);
+                if (tokens < 1) {
+                    return Math.max(1, (long) Math.ceil((1 - tokens) / tokensPerNano / TimeUnit.SECONDS.toNanos(1)));
+                }
+                if (state.compareAndSet(current, new State(tokens - 1, Math.max(now, current.updatedAt)))) {
+                    return 0;
+                }
+            }
+        }
+
+        private long fullRefillNanos() {
+            return (long) (capacity / tokensPerNano);
+        }
+    }
+
+    private static final class State {
+
+        private final double tokens;
+
+        private final long updatedAt;
+
+        private State(double tokens, long updatedAt) {
+            this.tokens = tokens;
+            this.updatedAt = updatedAt;
+        }
+    }
+}
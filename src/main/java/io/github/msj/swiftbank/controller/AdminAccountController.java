@@ -1,19 +1,24 @@
 package io.github.msj.swiftbank.controller;
 
-import io.github.msj.swiftbank.entity.Account;
-import io.github.msj.swiftbank.entity.Transaction;
+import io.github.msj.swiftbank.dto.AccountOverview;
+import io.github.msj.swiftbank.dto.AccountPage;
+import io.github.msj.swiftbank.dto.AccountSearchCriteria;
+import io.github.msj.swiftbank.dto.TransactionPage;
 import io.github.msj.swiftbank.service.AccountService;
+import io.github.msj.swiftbank.service.TransactionExportFormat;
 import io.github.msj.swiftbank.service.TransactionService;
 import io.github.msj.swiftbank.service.UserService;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
+import java.io.IOException;
 import java.math.BigDecimal;
-import java.util.List;
 
 @Controller
 @RequestMapping("/admin")
@@ -33,8 +38,8 @@ public class AdminAccountController {
     }
 
     @GetMapping("/accounts/list")
-    public String listAllAccounts(Model model) {
-        model.addAttribute("accounts", accountService.findAll());
+    public String listAllAccounts(@ModelAttribute("criteria") AccountSearchCriteria criteria, Model model) {
+        addAccountPageToModel(model, criteria);
         return "admin-account-list";
     }
 
@@ -46,23 +51,35 @@ public class AdminAccountController {
     }
 
     @GetMapping("/accounts/transactions/selection")
-    public String showTransactionSelection(Model model) {
-        List<Account> allAccounts = accountService.findAll();
-        model.addAttribute("accounts", allAccounts);
-
+    public String showTransactionSelection(@ModelAttribute("criteria") AccountSearchCriteria criteria, Model model) {
+        addAccountPageToModel(model, criteria);
         return "admin-transaction-selection";
     }
 
     @PostMapping("/transactions")
-    public String listAdminTransactions(@RequestParam Long accountId, Model model) {
-        Account account = accountService.findById(accountId);
-        List<Transaction> transactions = transactionService.getTransactionsByAccount(accountId);
-        model.addAttribute("transactions", transactions);
+    public String listAdminTransactions(@RequestParam Long accountId,
+                                        @RequestParam(required = false) String cursor,
+                                        @RequestParam(defaultValue = "NEXT") TransactionPage.Direction direction,
+                                        Model model) {
+        AccountOverview account = accountService.findOverviewById(accountId);
+        TransactionPage page = transactionService.getTransactionPage(accountId, cursor, direction);
+        model.addAttribute("transactions", page.getTransactions());
+        model.addAttribute("page", page);
         model.addAttribute("selectedAccount", account);
 
         return "admin-transaction-list";
     }
 
+    @GetMapping("/transactions/export")
+    public void exportAdminTransactions(@RequestParam Long accountId,
+                                        @RequestParam(defaultValue = "CSV") TransactionExportFormat format,
+                                        HttpServletResponse response) throws IOException {
+        accountService.findOverviewById(accountId);
+
+        TransactionExportSupport.prepareResponse(response, format, accountId);
+        transactionService.exportTransactions(accountId, format, response.getWriter());
+    }
+
     @GetMapping("/accounts/create")
     public String showCreateAccountForm(Model model) {
         model.addAttribute("users", userService.findAll());
@@ -84,4 +101,10 @@ public class AdminAccountController {
         return "create-account";
     }
 
+    private void addAccountPageToModel(Model model, AccountSearchCriteria criteria) {
+        AccountPage page = accountService.searchAccounts(criteria);
+        model.addAttribute("accounts", page.getAccounts());
+        model.addAttribute("page", page);
+        model.addAttribute("approximateTotal", accountService.countAccounts(criteria));
+    }
 }
@@ -0,0 +1,22 @@
+package io.github.msj.swiftbank.controller;
+
+import io.github.msj.swiftbank.service.TransactionExportFormat;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+
+import java.nio.charset.StandardCharsets;
+
+final class TransactionExportSupport {
+
+    private TransactionExportSupport() {
+    }
+
+    static void prepareResponse(HttpServletResponse response, TransactionExportFormat format, Long accountId) {
+        response.setContentType(format.getContentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(format.fileName(accountId)).build().toString());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+    }
+}
@@ -1,22 +1,38 @@
 package io.github.msj.swiftbank.controller;
 
-import io.github.msj.swiftbank.entity.Account;
-import io.github.msj.swiftbank.entity.Transaction;
-import io.github.msj.swiftbank.entity.User;
+import io.github.msj.swiftbank.dto.AccountOverview;
+import io.github.msj.swiftbank.dto.AccountSummary;
+import io.github.msj.swiftbank.dto.OperationOutcome;
+import io.github.msj.swiftbank.dto.SwiftBankUserDetails;
+import io.github.msj.swiftbank.dto.TargetAccount;
+import io.github.msj.swiftbank.dto.TransactionPage;
 import io.github.msj.swiftbank.service.AccountService;
+import io.github.msj.swiftbank.service.IdempotencyService;
+import io.github.msj.swiftbank.service.LiveFeedService;
+import io.github.msj.swiftbank.service.TransactionExportFormat;
 import io.github.msj.swiftbank.service.TransactionService;
-import io.github.msj.swiftbank.service.UserService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
-import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.util.Arrays;
 import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Controller
 @RequestMapping("/user")
@@ -24,136 +40,177 @@ public class UserTransactionController {
 
     private final AccountService accountService;
 
-    private final UserService userService;
-
     private final TransactionService transactionService;
 
-    public UserTransactionController(AccountService accountService, UserService userService,
-                                     TransactionService transactionService) {
+    private final IdempotencyService idempotencyService;
+
+    private final LiveFeedService liveFeedService;
+
+    public UserTransactionController(AccountService accountService, TransactionService transactionService,
+                                     IdempotencyService idempotencyService, LiveFeedService liveFeedService) {
         this.accountService = accountService;
-        this.userService = userService;
         this.transactionService = transactionService;
+        this.idempotencyService = idempotencyService;
+        this.liveFeedService = liveFeedService;
     }
 
     @GetMapping("/dashboard")
-    public String showDashboard(Model model, Authentication authentication) {
-        User user = userService.findByUsername(authentication.getName());
-        BigDecimal totalBalance = accountService.calculateTotalBalanceByUser(user.getId());
+    public String showDashboard(Model model, @AuthenticationPrincipal SwiftBankUserDetails principal) {
+        BigDecimal totalBalance = accountService.calculateTotalBalanceByUser(principal.getUserId());
         model.addAttribute("totalBalance", totalBalance != null ? totalBalance : BigDecimal.ZERO);
+        model.addAttribute("accounts", accountService.getAccountsByUser(principal.getUserId()));
         return "user-dashboard";
     }
 
+    @GetMapping(path = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamEvents(@AuthenticationPrincipal SwiftBankUserDetails principal) {
+        List<Long> accountIds = accountService.getAccountsByUser(principal.getUserId()).stream()
+                .map(AccountSummary::getId)
+                .collect(Collectors.toList());
+
+        return liveFeedService.subscribe(accountIds)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, "30")
+                        .build());
+    }
+
     @GetMapping("/accounts/list")
-    public String listUserAccounts(Model model, Authentication authentication) {
-        User user = userService.findByUsername(authentication.getName());
-        model.addAttribute("accounts", accountService.getAccountsByUser(user.getId()));
+    public String listUserAccounts(Model model, @AuthenticationPrincipal SwiftBankUserDetails principal) {
+        model.addAttribute("accounts", accountService.getAccountsByUser(principal.getUserId()));
         return "user-account-list";
     }
 
     @GetMapping("/transactions/selection")
-    public String showTransactionSelection(Model model, Authentication authentication) {
-        User user = userService.findByUsername(authentication.getName());
-
-        List<Account> userAccounts = accountService.getAccountsByUser(user.getId());
+    public String showTransactionSelection(Model model, @AuthenticationPrincipal SwiftBankUserDetails principal) {
+        List<AccountSummary> userAccounts = accountService.getAccountsByUser(principal.getUserId());
         model.addAttribute("accounts", userAccounts);
 
         return "user-transaction-selection";
     }
 
     @PostMapping("/transactions")
-    public String listUserTransactions(@RequestParam Long accountId, Model model, Authentication authentication) {
-        User user = userService.findByUsername(authentication.getName());
-
-        Account account = accountService.findById(accountId);
-
-        if (!account.getUser().getId().equals(user.getId())) {
+    public String listUserTransactions(@RequestParam Long accountId,
+                                       @RequestParam(required = false) String cursor,
+                                       @RequestParam(defaultValue = "NEXT") TransactionPage.Direction direction,
+                                       Model model,
+                                       @AuthenticationPrincipal SwiftBankUserDetails principal) {
+        AccountOverview account = accountService.findOverviewById(accountId);
+
+        if (!account.getUserId().equals(principal.getUserId())) {
             throw new AccessDeniedException("Acesso negado: esta conta não pertence ao usuário logado.");
         }
 
-        List<Transaction> transactions = transactionService.getTransactionsByAccount(accountId);
-        model.addAttribute("transactions", transactions);
+        TransactionPage page = transactionService.getTransactionPage(accountId, cursor, direction);
+        model.addAttribute("transactions", page.getTransactions());
+        model.addAttribute("page", page);
         model.addAttribute("selectedAccount", account);
 
         return "user-transaction-list";
     }
 
+    @GetMapping("/transactions/export")
+    public void exportUserTransactions(@RequestParam Long accountId,
+                                       @RequestParam(defaultValue = "CSV") TransactionExportFormat format,
+                                       @AuthenticationPrincipal SwiftBankUserDetails principal,
+                                       HttpServletResponse response) throws IOException {
+        if (!principal.ownsAccount(accountId)
+                && !accountService.findOverviewById(accountId).getUserId().equals(principal.getUserId())) {
+            throw new AccessDeniedException("Acesso negado: esta conta não pertence ao usuário logado.");
+        }
+
+        TransactionExportSupport.prepareResponse(response, format, accountId);
+        transactionService.exportTransactions(accountId, format, response.getWriter());
+    }
+
     @GetMapping("/accounts/credit")
-    public String showCreditForm(Model model, Authentication authentication) {
-        addUserAccountsToModel(model, authentication);
+    public String showCreditForm(Model model, @AuthenticationPrincipal SwiftBankUserDetails principal) {
+        addUserAccountsToModel(model, principal);
         return "credit-account";
     }
 
     @PostMapping("/accounts/credit")
     public String creditAccount(@RequestParam Long accountId,
                                 @RequestParam BigDecimal amount,
+                                @RequestParam(required = false) String idempotencyKey,
                                 Model model,
-                                Authentication authentication) {
-        try {
+                                @AuthenticationPrincipal SwiftBankUserDetails principal) {
+        OperationOutcome outcome = idempotencyService.execute(principal.getUsername(), idempotencyKey, "credit",
+                Arrays.asList(accountId, amount), () -> {
             accountService.creditAccount(accountId, amount);
-            model.addAttribute("successMessage", "Valor creditado com sucesso!");
-        } catch (IllegalArgumentException e) {
-            model.addAttribute("errorMessage", e.getMessage());
-        }
+            return "Valor creditado com sucesso!";
+        });
+        model.addAttribute(outcome.isSuccess() ? "successMessage" : "errorMessage", outcome.getMessage());
 
-        addUserAccountsToModel(model, authentication);
+        addUserAccountsToModel(model, principal);
         return "credit-account";
     }
 
     @GetMapping("/accounts/debit")
-    public String showDebitForm(Model model, Authentication authentication) {
-        addUserAccountsToModel(model, authentication);
+    public String showDebitForm(Model model, @AuthenticationPrincipal SwiftBankUserDetails principal) {
+        addUserAccountsToModel(model, principal);
         return "debit-account";
     }
 
     @PostMapping("/accounts/debit")
     public String debitAccount(@RequestParam Long accountId,
                                @RequestParam BigDecimal amount,
+                               @RequestParam(required = false) String idempotencyKey,
                                Model model,
-                               Authentication authentication) {
-        try {
+                               @AuthenticationPrincipal SwiftBankUserDetails principal) {
+        OperationOutcome outcome = idempotencyService.execute(principal.getUsername(), idempotencyKey, "debit",
+                Arrays.asList(accountId, amount), () -> {
             accountService.debitAccount(accountId, amount);
-            model.addAttribute("successMessage", "Valor debitado com sucesso!");
-        } catch (IllegalArgumentException e) {
-            model.addAttribute("errorMessage", e.getMessage());
-        }
+            return "Valor debitado com sucesso!";
+        });
+        model.addAttribute(outcome.isSuccess() ? "successMessage" : "errorMessage", outcome.getMessage());
 
-        addUserAccountsToModel(model, authentication);
+        addUserAccountsToModel(model, principal);
         return "debit-account";
     }
 
     @GetMapping("/accounts/transfer")
-    public String showTransferForm(Model model, Authentication authentication) {
-        populateTransferForm(model, authentication);
+    public String showTransferForm(Model model, @AuthenticationPrincipal SwiftBankUserDetails principal) {
+        populateTransferForm(model, principal);
         return "transfer-account";
     }
 
+    @GetMapping("/accounts/targets")
+    @ResponseBody
+    public List<TargetAccount> searchTargetAccounts(@RequestParam("q") String query,
+                                                    @AuthenticationPrincipal SwiftBankUserDetails principal) {
+        return accountService.searchTransferTargets(principal.getUserId(), query);
+    }
+
     @PostMapping("/accounts/transfer")
     public String transferBetweenAccounts(@RequestParam Long sourceAccountId,
                                           @RequestParam Long targetAccountId,
                                           @RequestParam BigDecimal amount,
+                                          @RequestParam(required = false) String idempotencyKey,
                                           Model model,
-                                          Authentication authentication) {
-        try {
-            accountService.transferBetweenAccounts(sourceAccountId, targetAccountId, amount);
-            model.addAttribute("successMessage", "Transferência realizada com sucesso!");
-        } catch (IllegalArgumentException e) {
-            model.addAttribute("errorMessage", e.getMessage());
-        }
-
-        populateTransferForm(model, authentication);
+                                          @AuthenticationPrincipal SwiftBankUserDetails principal) {
+        OperationOutcome outcome = idempotencyService.execute(principal.getUsername(), idempotencyKey, "transfer",
+                Arrays.asList(sourceAccountId, targetAccountId, amount), () -> {
+            if (!accountService.transferBetweenAccounts(sourceAccountId, targetAccountId, amount)) {
+                return "Transferência recebida e em processamento. Consulte o extrato em instantes.";
+            }
+            return "Transferência realizada com sucesso!";
+        });
+        model.addAttribute(outcome.isSuccess() ? "successMessage" : "errorMessage", outcome.getMessage());
+
+        populateTransferForm(model, principal);
 
         return "transfer-account";
     }
 
 
-    private void populateTransferForm(Model model, Authentication authentication) {
-        User user = userService.findByUsername(authentication.getName());
-        model.addAttribute("accounts", accountService.getAccountsByUser(user.getId()));
-        model.addAttribute("targetAccounts", accountService.getAccountsExcludingUser(user.getId()));
+    private void populateTransferForm(Model model, SwiftBankUserDetails principal) {
+        model.addAttribute("accounts", accountService.getAccountsByUser(principal.getUserId()));
+        model.addAttribute("idempotencyKey", UUID.randomUUID().toString());
     }
 
-    private void addUserAccountsToModel(Model model, Authentication authentication) {
-        User user = userService.findByUsername(authentication.getName());
-        model.addAttribute("accounts", accountService.getAccountsByUser(user.getId()));
+    private void addUserAccountsToModel(Model model, SwiftBankUserDetails principal) {
+        model.addAttribute("accounts", accountService.getAccountsByUser(principal.getUserId()));
+        model.addAttribute("idempotencyKey", UUID.randomUUID().toString());
     }
 }
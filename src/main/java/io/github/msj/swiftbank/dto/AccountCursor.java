@@ -0,0 +1,60 @@
+package io.github.msj.swiftbank.dto;
+
+import java.util.Objects;
+
+public class AccountCursor {
+
+    private static final String SEPARATOR = "_";
+
+    private final Long id;
+
+    private final String ownerName;
+
+    public AccountCursor(Long id, String ownerName) {
+        this.id = Objects.requireNonNull(id);
+        this.ownerName = ownerName;
+    }
+
+    public static AccountCursor decode(String token) {
+        int separatorIndex = token.indexOf(SEPARATOR);
+        try {
+            if (separatorIndex < 0) {
+                return new AccountCursor(Long.valueOf(token), null);
+            }
+            return new AccountCursor(Long.valueOf(token.substring(0, separatorIndex)),
+                    token.substring(separatorIndex + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor de paginação inválido.", e);
+        }
+    }
+
+    public String encode() {
+        return ownerName == null ? String.valueOf(id) : id + SEPARATOR + ownerName;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getOwnerName() {
+        return ownerName;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof AccountCursor)) return false;
+        AccountCursor that = (AccountCursor) o;
+        return id.equals(that.id) && Objects.equals(ownerName, that.ownerName);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, ownerName);
+    }
+
+    @Override
+    public String toString() {
+        return encode();
+    }
+}
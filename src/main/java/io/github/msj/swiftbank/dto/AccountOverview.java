@@ -0,0 +1,24 @@
+package io.github.msj.swiftbank.dto;
+
+import java.math.BigDecimal;
+
+public class AccountOverview extends AccountSummary {
+
+    private final Long userId;
+
+    private final String userName;
+
+    public AccountOverview(Long id, String ownerName, BigDecimal balance, Long userId, String userName) {
+        super(id, ownerName, balance);
+        this.userId = userId;
+        this.userName = userName;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+}
@@ -0,0 +1,48 @@
+package io.github.msj.swiftbank.dto;
+
+import java.util.Collections;
+import java.util.List;
+
+public class AccountPage {
+
+    public enum Direction {
+        NEXT, PREVIOUS
+    }
+
+    private final List<AccountOverview> accounts;
+
+    private final String nextCursor;
+
+    private final String previousCursor;
+
+    public AccountPage(List<AccountOverview> accounts, boolean hasNext, boolean hasPrevious, boolean keyedByOwnerName) {
+        this.accounts = Collections.unmodifiableList(accounts);
+        this.nextCursor = hasNext && !accounts.isEmpty()
+                ? cursorOf(accounts.get(accounts.size() - 1), keyedByOwnerName) : null;
+        this.previousCursor = hasPrevious && !accounts.isEmpty() ? cursorOf(accounts.get(0), keyedByOwnerName) : null;
+    }
+
+    private static String cursorOf(AccountOverview account, boolean keyedByOwnerName) {
+        return new AccountCursor(account.getId(), keyedByOwnerName ? account.getOwnerName() : null).encode();
+    }
+
+    public List<AccountOverview> getAccounts() {
+        return accounts;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public String getPreviousCursor() {
+        return previousCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    public boolean hasPrevious() {
+        return previousCursor != null;
+    }
+}
@@ -0,0 +1,147 @@
+package io.github.msj.swiftbank.dto;
+
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+
+public class AccountSearchCriteria {
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private static final String DEFAULT_SORT = "id";
+
+    // every sort key is backed by an index ending in id so pages can seek instead of skipping rows; balance is left
+    // out because indexing it would add a write to every credit and debit
+    private static final Set<String> SORTABLE_PROPERTIES =
+            Collections.unmodifiableSet(new HashSet<>(Arrays.asList("id", "ownerName", "createdAt")));
+
+    private String ownerName;
+
+    private Long userId;
+
+    private BigDecimal minBalance;
+
+    private BigDecimal maxBalance;
+
+    private String cursor;
+
+    private AccountPage.Direction pageDirection = AccountPage.Direction.NEXT;
+
+    private int size = DEFAULT_PAGE_SIZE;
+
+    private String sort = DEFAULT_SORT;
+
+    private Sort.Direction direction = Sort.Direction.ASC;
+
+    public String getOwnerName() {
+        return ownerName;
+    }
+
+    public void setOwnerName(String ownerName) {
+        this.ownerName = ownerName == null || ownerName.trim().isEmpty() ? null : ownerName.trim();
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public BigDecimal getMinBalance() {
+        return minBalance;
+    }
+
+    public void setMinBalance(BigDecimal minBalance) {
+        this.minBalance = minBalance;
+    }
+
+    public BigDecimal getMaxBalance() {
+        return maxBalance;
+    }
+
+    public void setMaxBalance(BigDecimal maxBalance) {
+        this.maxBalance = maxBalance;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor == null || cursor.isEmpty() ? null : cursor;
+    }
+
+    public AccountPage.Direction getPageDirection() {
+        return pageDirection;
+    }
+
+    public void setPageDirection(AccountPage.Direction pageDirection) {
+        this.pageDirection = pageDirection == null ? AccountPage.Direction.NEXT : pageDirection;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size <= 0 ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+    }
+
+    public String getSort() {
+        return sort;
+    }
+
+    public void setSort(String sort) {
+        this.sort = SORTABLE_PROPERTIES.contains(sort) ? sort : DEFAULT_SORT;
+    }
+
+    public Sort.Direction getDirection() {
+        return direction;
+    }
+
+    public void setDirection(Sort.Direction direction) {
+        this.direction = direction == null ? Sort.Direction.ASC : direction;
+    }
+
+    public boolean isSortedByOwnerName() {
+        return "ownerName".equals(sort);
+    }
+
+    public Sort.Direction queryDirection() {
+        if (cursor == null || pageDirection == AccountPage.Direction.NEXT) {
+            return direction;
+        }
+        return direction == Sort.Direction.ASC ? Sort.Direction.DESC : Sort.Direction.ASC;
+    }
+
+    public Sort querySort() {
+        // ids are allocated centrally in creation order, so they also stand in for createdAt
+        Sort order = Sort.by(queryDirection(), "id");
+        return isSortedByOwnerName() ? Sort.by(queryDirection(), "ownerName").and(order) : order;
+    }
+
+    public Comparator<AccountOverview> comparator() {
+        Comparator<AccountOverview> order;
+        if (isSortedByOwnerName()) {
+            // merges shard pages, so it has to agree with the case-insensitive collation the database sorts with
+            order = Comparator.comparing(AccountOverview::getOwnerName,
+                    Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER)).thenComparing(AccountOverview::getId);
+        } else {
+            order = Comparator.comparing(AccountOverview::getId);
+        }
+        return queryDirection() == Sort.Direction.DESC ? order.reversed() : order;
+    }
+
+    public String filterKey() {
+        return ownerName + "|" + userId + "|" + minBalance + "|" + maxBalance;
+    }
+}
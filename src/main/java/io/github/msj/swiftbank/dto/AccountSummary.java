@@ -0,0 +1,30 @@
+package io.github.msj.swiftbank.dto;
+
+import java.math.BigDecimal;
+
+public class AccountSummary {
+
+    private final Long id;
+
+    private final String ownerName;
+
+    private final BigDecimal balance;
+
+    public AccountSummary(Long id, String ownerName, BigDecimal balance) {
+        this.id = id;
+        this.ownerName = ownerName;
+        this.balance = balance;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getOwnerName() {
+        return ownerName;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+}
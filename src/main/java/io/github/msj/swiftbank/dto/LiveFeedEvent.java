@@ -0,0 +1,67 @@
+package io.github.msj.swiftbank.dto;
+
+import io.github.msj.swiftbank.entity.OutboxEvent;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public final class LiveFeedEvent {
+
+    private final Long eventId;
+
+    private final Long accountId;
+
+    private final Long counterpartyAccountId;
+
+    private final String transactionType;
+
+    private final BigDecimal amount;
+
+    private final BigDecimal balance;
+
+    private final LocalDateTime createdAt;
+
+    public LiveFeedEvent(Long eventId, Long accountId, Long counterpartyAccountId, String transactionType,
+                         BigDecimal amount, BigDecimal balance, LocalDateTime createdAt) {
+        this.eventId = eventId;
+        this.accountId = accountId;
+        this.counterpartyAccountId = counterpartyAccountId;
+        this.transactionType = transactionType;
+        this.amount = amount;
+        this.balance = balance;
+        this.createdAt = createdAt;
+    }
+
+    public static LiveFeedEvent from(OutboxEvent event, BigDecimal balance) {
+        return new LiveFeedEvent(event.getId(), event.getAccountId(), event.getCounterpartyAccountId(),
+                event.getEventType(), event.getAmount(), balance, event.getCreatedAt());
+    }
+
+    public Long getEventId() {
+        return eventId;
+    }
+
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    public Long getCounterpartyAccountId() {
+        return counterpartyAccountId;
+    }
+
+    public String getTransactionType() {
+        return transactionType;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -0,0 +1,48 @@
+package io.github.msj.swiftbank.dto;
+
+import java.util.Objects;
+
+public final class OperationOutcome {
+
+    private final boolean success;
+
+    private final String message;
+
+    private OperationOutcome(boolean success, String message) {
+        this.success = success;
+        this.message = message;
+    }
+
+    public static OperationOutcome success(String message) {
+        return new OperationOutcome(true, message);
+    }
+
+    public static OperationOutcome failure(String message) {
+        return new OperationOutcome(false, message);
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        OperationOutcome that = (OperationOutcome) o;
+        return success == that.success && Objects.equals(message, that.message);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(success, message);
+    }
+}
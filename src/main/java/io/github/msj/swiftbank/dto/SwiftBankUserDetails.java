@@ -0,0 +1,43 @@
+package io.github.msj.swiftbank.dto;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+public class SwiftBankUserDetails extends User {
+
+    private final Long userId;
+
+    private final Set<Long> accountIds;
+
+    public SwiftBankUserDetails(Long userId, String username, String password, boolean enabled,
+                                Collection<? extends GrantedAuthority> authorities, Collection<Long> accountIds) {
+        super(username, password, enabled, true, true, true, authorities);
+        this.userId = userId;
+        this.accountIds = Collections.unmodifiableSet(new LinkedHashSet<>(accountIds));
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public Set<Long> getAccountIds() {
+        return accountIds;
+    }
+
+    public boolean ownsAccount(Long accountId) {
+        return accountIds.contains(accountId);
+    }
+
+    public SwiftBankUserDetails copy() {
+        return withPassword(getPassword());
+    }
+
+    public SwiftBankUserDetails withPassword(String password) {
+        return new SwiftBankUserDetails(userId, getUsername(), password, isEnabled(), getAuthorities(), accountIds);
+    }
+}
@@ -0,0 +1,21 @@
+package io.github.msj.swiftbank.dto;
+
+public final class TargetAccount {
+
+    private final Long id;
+
+    private final String ownerName;
+
+    public TargetAccount(Long id, String ownerName) {
+        this.id = id;
+        this.ownerName = ownerName;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getOwnerName() {
+        return ownerName;
+    }
+}
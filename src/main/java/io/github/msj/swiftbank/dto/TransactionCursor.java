@@ -0,0 +1,62 @@
+package io.github.msj.swiftbank.dto;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Objects;
+
+public class TransactionCursor {
+
+    private static final String SEPARATOR = "_";
+
+    private final LocalDateTime createdAt;
+
+    private final Long id;
+
+    public TransactionCursor(LocalDateTime createdAt, Long id) {
+        this.createdAt = Objects.requireNonNull(createdAt);
+        this.id = Objects.requireNonNull(id);
+    }
+
+    public static TransactionCursor decode(String token) {
+        int separatorIndex = token.lastIndexOf(SEPARATOR);
+        if (separatorIndex <= 0) {
+            throw new IllegalArgumentException("Cursor de paginação inválido.");
+        }
+        try {
+            return new TransactionCursor(LocalDateTime.parse(token.substring(0, separatorIndex)),
+                    Long.valueOf(token.substring(separatorIndex + 1)));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor de paginação inválido.", e);
+        }
+    }
+
+    public String encode() {
+        return createdAt + SEPARATOR + id;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TransactionCursor)) return false;
+        TransactionCursor that = (TransactionCursor) o;
+        return createdAt.equals(that.createdAt) && id.equals(that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(createdAt, id);
+    }
+
+    @Override
+    public String toString() {
+        return encode();
+    }
+}
@@ -0,0 +1,47 @@
+package io.github.msj.swiftbank.dto;
+
+import java.util.Collections;
+import java.util.List;
+
+public class TransactionPage {
+
+    public enum Direction {
+        NEXT, PREVIOUS
+    }
+
+    private final List<TransactionView> transactions;
+
+    private final String nextCursor;
+
+    private final String previousCursor;
+
+    public TransactionPage(List<TransactionView> transactions, boolean hasNext, boolean hasPrevious) {
+        this.transactions = Collections.unmodifiableList(transactions);
+        this.nextCursor = hasNext && !transactions.isEmpty() ? cursorOf(transactions.get(transactions.size() - 1)) : null;
+        this.previousCursor = hasPrevious && !transactions.isEmpty() ? cursorOf(transactions.get(0)) : null;
+    }
+
+    private static String cursorOf(TransactionView transaction) {
+        return new TransactionCursor(transaction.getCreatedAt(), transaction.getId()).encode();
+    }
+
+    public List<TransactionView> getTransactions() {
+        return transactions;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public String getPreviousCursor() {
+        return previousCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    public boolean hasPrevious() {
+        return previousCursor != null;
+    }
+}
@@ -0,0 +1,38 @@
+package io.github.msj.swiftbank.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public final class TransactionView {
+
+    private final Long id;
+
+    private final String transactionType;
+
+    private final BigDecimal amount;
+
+    private final LocalDateTime createdAt;
+
+    public TransactionView(Long id, String transactionType, BigDecimal amount, LocalDateTime createdAt) {
+        this.id = id;
+        this.transactionType = transactionType;
+        this.amount = amount;
+        this.createdAt = createdAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getTransactionType() {
+        return transactionType;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
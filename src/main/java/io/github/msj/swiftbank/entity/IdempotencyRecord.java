@@ -0,0 +1,96 @@
+package io.github.msj.swiftbank.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "idempotency_keys")
+public class IdempotencyRecord implements Persistable<String> {
+
+    public enum Status {
+        PENDING, SUCCEEDED, FAILED
+    }
+
+    @Id
+    @Column(name = "idempotency_key")
+    private String idempotencyKey;
+
+    @Column(nullable = false)
+    private String operation;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status;
+
+    private String requestHash;
+
+    private String resultMessage;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Transient
+    private boolean newRecord = true;
+
+    protected IdempotencyRecord() {
+    }
+
+    public IdempotencyRecord(String idempotencyKey, String operation, String requestHash) {
+        this.idempotencyKey = idempotencyKey;
+        this.operation = operation;
+        this.requestHash = requestHash;
+        this.status = Status.PENDING;
+    }
+
+    @PrePersist
+    public void prePersist() {
+        this.createdAt = LocalDateTime.now();
+    }
+
+    @PostPersist
+    @PostLoad
+    void markNotNew() {
+        this.newRecord = false;
+    }
+
+    @Override
+    public String getId() {
+        return idempotencyKey;
+    }
+
+    @Override
+    public boolean isNew() {
+        return newRecord;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getRequestHash() {
+        return requestHash;
+    }
+
+    public String getResultMessage() {
+        return resultMessage;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -0,0 +1,50 @@
+package io.github.msj.swiftbank.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "outbox_checkpoints")
+public class OutboxCheckpoint {
+
+    @Id
+    private String subscriber;
+
+    @Column(nullable = false)
+    private Long lastSequenceNumber;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+
+    protected OutboxCheckpoint() {
+    }
+
+    public OutboxCheckpoint(String subscriber, Long lastSequenceNumber) {
+        this.subscriber = subscriber;
+        this.lastSequenceNumber = lastSequenceNumber;
+    }
+
+    @PrePersist
+    @PreUpdate
+    public void touch() {
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public String getSubscriber() {
+        return subscriber;
+    }
+
+    public Long getLastSequenceNumber() {
+        return lastSequenceNumber;
+    }
+
+    public void setLastSequenceNumber(Long lastSequenceNumber) {
+        this.lastSequenceNumber = lastSequenceNumber;
+    }
+}
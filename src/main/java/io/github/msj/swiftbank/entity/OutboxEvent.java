@@ -0,0 +1,84 @@
+package io.github.msj.swiftbank.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "outbox_events")
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long sequenceNumber;
+
+    @Column(nullable = false)
+    private String eventType;
+
+    @Column(nullable = false)
+    private Long accountId;
+
+    private Long counterpartyAccountId;
+
+    @Column(nullable = false)
+    private BigDecimal amount;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    protected OutboxEvent() {
+    }
+
+    public OutboxEvent(String eventType, Long accountId, Long counterpartyAccountId, BigDecimal amount) {
+        this.eventType = eventType;
+        this.accountId = accountId;
+        this.counterpartyAccountId = counterpartyAccountId;
+        this.amount = amount;
+    }
+
+    @PrePersist
+    public void prePersist() {
+        this.createdAt = LocalDateTime.now();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    public void setSequenceNumber(Long sequenceNumber) {
+        this.sequenceNumber = sequenceNumber;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    public Long getCounterpartyAccountId() {
+        return counterpartyAccountId;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -0,0 +1,8 @@
+package io.github.msj.swiftbank.exception;
+
+public class InsufficientFundsException extends IllegalArgumentException {
+
+    public InsufficientFundsException(String message) {
+        super(message);
+    }
+}
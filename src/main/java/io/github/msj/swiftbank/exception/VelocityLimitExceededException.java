@@ -0,0 +1,8 @@
+package io.github.msj.swiftbank.exception;
+
+public class VelocityLimitExceededException extends IllegalArgumentException {
+
+    public VelocityLimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -1,19 +1,115 @@
 package io.github.msj.swiftbank.repository;
 
+import io.github.msj.swiftbank.dto.AccountOverview;
+import io.github.msj.swiftbank.dto.AccountSummary;
+import io.github.msj.swiftbank.dto.TargetAccount;
 import io.github.msj.swiftbank.entity.Account;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface AccountRepository extends JpaRepository<Account, Long> {
 
-    List<Account> findByUserId(Long userId);
+    @Query("SELECT new io.github.msj.swiftbank.dto.AccountSummary(a.id, a.ownerName, a.balance) FROM Account a " +
+            "WHERE a.user.id = :userId ORDER BY a.id")
+    List<AccountSummary> findSummariesByUserId(@Param("userId") Long userId);
 
-    @Query("SELECT a FROM Account a WHERE a.user.id != :userId")
-    List<Account> findAccountsExcludingUser(@Param("userId") Long userId);
+    @Query("SELECT new io.github.msj.swiftbank.dto.AccountSummary(a.id, a.ownerName, a.balance) FROM Account a " +
+            "WHERE a.id IN :accountIds")
+    List<AccountSummary> findSummariesByIdIn(@Param("accountIds") Collection<Long> accountIds);
+
+    @Query("SELECT new io.github.msj.swiftbank.dto.AccountOverview(a.id, a.ownerName, a.balance, u.id, u.name) " +
+            "FROM Account a JOIN a.user u WHERE a.id = :accountId")
+    Optional<AccountOverview> findOverviewById(@Param("accountId") Long accountId);
+
+    @Query("SELECT a.id FROM Account a WHERE a.user.id = :userId")
+    List<Long> findIdsByUserId(@Param("userId") Long userId);
+
+    @Query("SELECT new io.github.msj.swiftbank.dto.TargetAccount(a.id, a.ownerName) FROM Account a " +
+            "WHERE a.id = :accountId AND a.user.id <> :userId")
+    Optional<TargetAccount> findTargetAccountById(@Param("accountId") Long accountId, @Param("userId") Long userId);
+
+    @Query("SELECT new io.github.msj.swiftbank.dto.TargetAccount(a.id, a.ownerName) FROM Account a " +
+            "WHERE a.ownerName LIKE :prefix ESCAPE '!' AND a.user.id <> :userId ORDER BY a.ownerName, a.id")
+    List<TargetAccount> findTargetAccountsByOwnerNamePrefix(@Param("prefix") String prefix, @Param("userId") Long userId,
+                                                                    Pageable pageable);
+
+    @Query("SELECT new io.github.msj.swiftbank.dto.AccountOverview(a.id, a.ownerName, a.balance, u.id, u.name) " +
+            "FROM Account a JOIN a.user u " +
+            "WHERE (:ownerPrefix IS NULL OR a.ownerName LIKE :ownerPrefix ESCAPE '!') " +
+            "AND (:userId IS NULL OR u.id = :userId) " +
+            "AND (:minBalance IS NULL OR a.balance >= :minBalance) " +
+            "AND (:maxBalance IS NULL OR a.balance <= :maxBalance)")
+    List<AccountOverview> searchAccounts(@Param("ownerPrefix") String ownerPrefix, @Param("userId") Long userId,
+                                          @Param("minBalance") BigDecimal minBalance, @Param("maxBalance") BigDecimal maxBalance,
+                                          Sort sort, Limit limit);
+
+    @Query("SELECT new io.github.msj.swiftbank.dto.AccountOverview(a.id, a.ownerName, a.balance, u.id, u.name) " +
+            "FROM Account a JOIN a.user u " +
+            "WHERE (:ownerPrefix IS NULL OR a.ownerName LIKE :ownerPrefix ESCAPE '!') " +
+            "AND (:userId IS NULL OR u.id = :userId) " +
+            "AND (:minBalance IS NULL OR a.balance >= :minBalance) " +
+            "AND (:maxBalance IS NULL OR a.balance <= :maxBalance) " +
+            "AND a.id > :id")
+    List<AccountOverview> searchAccountsAfterId(@Param("ownerPrefix") String ownerPrefix, @Param("userId") Long userId,
+                                                @Param("minBalance") BigDecimal minBalance, @Param("maxBalance") BigDecimal maxBalance,
+                                                @Param("id") Long id, Sort sort, Limit limit);
+
+    @Query("SELECT new io.github.msj.swiftbank.dto.AccountOverview(a.id, a.ownerName, a.balance, u.id, u.name) " +
+            "FROM Account a JOIN a.user u " +
+            "WHERE (:ownerPrefix IS NULL OR a.ownerName LIKE :ownerPrefix ESCAPE '!') " +
+            "AND (:userId IS NULL OR u.id = :userId) " +
+            "AND (:minBalance IS NULL OR a.balance >= :minBalance) " +
+            "AND (:maxBalance IS NULL OR a.balance <= :maxBalance) " +
+            "AND a.id < :id")
+    List<AccountOverview> searchAccountsBeforeId(@Param("ownerPrefix") String ownerPrefix, @Param("userId") Long userId,
+                                                 @Param("minBalance") BigDecimal minBalance, @Param("maxBalance") BigDecimal maxBalance,
+                                                 @Param("id") Long id, Sort sort, Limit limit);
+
+    // owner names sort NULLS FIRST ascending, so a null cursor name precedes every named account
+    @Query("SELECT new io.github.msj.swiftbank.dto.AccountOverview(a.id, a.ownerName, a.balance, u.id, u.name) " +
+            "FROM Account a JOIN a.user u " +
+            "WHERE (:ownerPrefix IS NULL OR a.ownerName LIKE :ownerPrefix ESCAPE '!') " +
+            "AND (:userId IS NULL OR u.id = :userId) " +
+            "AND (:minBalance IS NULL OR a.balance >= :minBalance) " +
+            "AND (:maxBalance IS NULL OR a.balance <= :maxBalance) " +
+            "AND ((:ownerName IS NULL AND (a.ownerName IS NOT NULL OR a.id > :id)) " +
+            "OR a.ownerName > :ownerName OR (a.ownerName = :ownerName AND a.id > :id))")
+    List<AccountOverview> searchAccountsAfterOwnerName(@Param("ownerPrefix") String ownerPrefix, @Param("userId") Long userId,
+                                                       @Param("minBalance") BigDecimal minBalance, @Param("maxBalance") BigDecimal maxBalance,
+                                                       @Param("ownerName") String ownerName, @Param("id") Long id,
+                                                       Sort sort, Limit limit);
+
+    @Query("SELECT new io.github.msj.swiftbank.dto.AccountOverview(a.id, a.ownerName, a.balance, u.id, u.name) " +
+            "FROM Account a JOIN a.user u " +
+            "WHERE (:ownerPrefix IS NULL OR a.ownerName LIKE :ownerPrefix ESCAPE '!') " +
+            "AND (:userId IS NULL OR u.id = :userId) " +
+            "AND (:minBalance IS NULL OR a.balance >= :minBalance) " +
+            "AND (:maxBalance IS NULL OR a.balance <= :maxBalance) " +
+            "AND ((:ownerName IS NULL AND a.ownerName IS NULL AND a.id < :id) " +
+            "OR (:ownerName IS NOT NULL AND (a.ownerName IS NULL OR a.ownerName < :ownerName " +
+            "OR (a.ownerName = :ownerName AND a.id < :id))))")
+    List<AccountOverview> searchAccountsBeforeOwnerName(@Param("ownerPrefix") String ownerPrefix, @Param("userId") Long userId,
+                                                        @Param("minBalance") BigDecimal minBalance, @Param("maxBalance") BigDecimal maxBalance,
+                                                        @Param("ownerName") String ownerName, @Param("id") Long id,
+                                                        Sort sort, Limit limit);
+
+    @Query("SELECT COUNT(a) FROM Account a " +
+            "WHERE (:ownerPrefix IS NULL OR a.ownerName LIKE :ownerPrefix ESCAPE '!') " +
+            "AND (:userId IS NULL OR a.user.id = :userId) " +
+            "AND (:minBalance IS NULL OR a.balance >= :minBalance) " +
+            "AND (:maxBalance IS NULL OR a.balance <= :maxBalance)")
+    long countAccounts(@Param("ownerPrefix") String ownerPrefix, @Param("userId") Long userId,
+                       @Param("minBalance") BigDecimal minBalance, @Param("maxBalance") BigDecimal maxBalance);
 
     @Query("SELECT COALESCE(SUM(a.balance), 0) FROM Account a")
     BigDecimal calculateTotalBalance();
@@ -21,4 +117,26 @@ public interface AccountRepository extends JpaRepository<Account, Long> {
     @Query("SELECT COALESCE(SUM(a.balance), 0) FROM Account a WHERE a.user.id = :userId")
     BigDecimal calculateTotalBalanceByUser(Long userId);
 
+    @Query("SELECT a.user.id, COALESCE(SUM(a.balance), 0) FROM Account a GROUP BY a.user.id")
+    List<Object[]> calculateTotalBalancePerUser();
+
+    @Query("SELECT a.user.id FROM Account a WHERE a.id = :accountId")
+    Optional<Long> findOwnerIdById(@Param("accountId") Long accountId);
+
+    @Modifying
+    @Query("UPDATE Account a SET a.balance = a.balance + :amount, a.version = a.version + 1 WHERE a.id = :accountId")
+    int creditBalance(@Param("accountId") Long accountId, @Param("amount") BigDecimal amount);
+
+    @Modifying
+    @Query("UPDATE Account a SET a.balance = a.balance - :amount, a.version = a.version + 1 " +
+            "WHERE a.id = :accountId AND a.balance >= :amount")
+    int debitBalanceIfSufficient(@Param("accountId") Long accountId, @Param("amount") BigDecimal amount);
+
+    @Query(value = "SELECT next_val FROM id_sequences WHERE sequence_name = 'accounts' FOR UPDATE", nativeQuery = true)
+    Long lockNextAccountId();
+
+    @Modifying
+    @Query(value = "UPDATE id_sequences SET next_val = :nextVal WHERE sequence_name = 'accounts'", nativeQuery = true)
+    int updateNextAccountId(@Param("nextVal") Long nextVal);
+
 }
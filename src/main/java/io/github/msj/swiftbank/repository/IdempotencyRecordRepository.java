@@ -0,0 +1,23 @@
+package io.github.msj.swiftbank.repository;
+
+import io.github.msj.swiftbank.entity.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.status = :status, r.resultMessage = :message WHERE r.idempotencyKey = :key")
+    int complete(@Param("key") String key,
+                 @Param("status") IdempotencyRecord.Status status,
+                 @Param("message") String message);
+
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.createdAt < :threshold")
+    int deleteCreatedBefore(@Param("threshold") LocalDateTime threshold);
+
+}
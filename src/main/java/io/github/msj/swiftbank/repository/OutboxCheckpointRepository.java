@@ -0,0 +1,8 @@
+package io.github.msj.swiftbank.repository;
+
+import io.github.msj.swiftbank.entity.OutboxCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface OutboxCheckpointRepository extends JpaRepository<OutboxCheckpoint, String> {
+
+}
@@ -0,0 +1,35 @@
+package io.github.msj.swiftbank.repository;
+
+import io.github.msj.swiftbank.entity.OutboxEvent;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    @Query("SELECT e FROM OutboxEvent e WHERE e.sequenceNumber > :afterSequenceNumber ORDER BY e.sequenceNumber")
+    List<OutboxEvent> findAfter(@Param("afterSequenceNumber") Long afterSequenceNumber, Limit limit);
+
+    @Query("SELECT COALESCE(MAX(e.sequenceNumber), 0) FROM OutboxEvent e")
+    Long findLastSequenceNumber();
+
+    @Query("SELECT e FROM OutboxEvent e WHERE e.sequenceNumber IS NULL ORDER BY e.id")
+    List<OutboxEvent> findUnsequenced(Limit limit);
+
+    @Query(value = "SELECT next_val FROM id_sequences WHERE sequence_name = 'outbox_events' FOR UPDATE", nativeQuery = true)
+    Long lockNextSequenceNumber();
+
+    @Modifying
+    @Query(value = "UPDATE id_sequences SET next_val = :nextVal WHERE sequence_name = 'outbox_events'", nativeQuery = true)
+    int updateNextSequenceNumber(@Param("nextVal") Long nextVal);
+
+    @Modifying
+    @Query("DELETE FROM OutboxEvent e WHERE e.sequenceNumber <= :maxSequenceNumber AND e.createdAt < :threshold")
+    int deleteDelivered(@Param("maxSequenceNumber") Long maxSequenceNumber, @Param("threshold") LocalDateTime threshold);
+
+}
@@ -0,0 +1,36 @@
+package io.github.msj.swiftbank.repository;
+
+import io.github.msj.swiftbank.entity.ShardTransfer;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface ShardTransferRepository extends JpaRepository<ShardTransfer, Long> {
+
+    @Query("SELECT t FROM ShardTransfer t WHERE t.status IN :statuses AND t.updatedAt < :threshold ORDER BY t.id")
+    List<ShardTransfer> findStalled(@Param("statuses") Collection<ShardTransfer.Status> statuses,
+                                    @Param("threshold") LocalDateTime threshold, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE ShardTransfer t SET t.status = :status, t.updatedAt = :now WHERE t.id = :id")
+    int updateStatus(@Param("id") Long id, @Param("status") ShardTransfer.Status status,
+                     @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query(value = "INSERT INTO shard_transfer_steps (transfer_id, step, applied, created_at) " +
+            "VALUES (:transferId, :step, :applied, CURRENT_TIMESTAMP)", nativeQuery = true)
+    int insertStep(@Param("transferId") Long transferId, @Param("step") String step,
+                   @Param("applied") boolean applied);
+
+    @Query(value = "SELECT applied FROM shard_transfer_steps WHERE transfer_id = :transferId AND step = :step",
+            nativeQuery = true)
+    Optional<Boolean> findStepApplied(@Param("transferId") Long transferId, @Param("step") String step);
+
+}
@@ -1,15 +1,50 @@
 package io.github.msj.swiftbank.repository;
 
+import io.github.msj.swiftbank.dto.TransactionView;
 import io.github.msj.swiftbank.entity.Transaction;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
 
-    List<Transaction> findByAccountId(Long accountId);
+    @Query("SELECT t.sourceEventId FROM Transaction t WHERE t.sourceEventId IN :eventIds")
+    List<Long> findSourceEventIdsIn(@Param("eventIds") Collection<Long> eventIds);
+
+    @Query("SELECT new io.github.msj.swiftbank.dto.TransactionView(t.id, t.transactionType, t.amount, t.createdAt) " +
+            "FROM Transaction t WHERE t.account.id = :accountId ORDER BY t.createdAt DESC, t.id DESC")
+    List<TransactionView> findLatestByAccountId(@Param("accountId") Long accountId, Limit limit);
+
+    @Query("SELECT new io.github.msj.swiftbank.dto.TransactionView(t.id, t.transactionType, t.amount, t.createdAt) " +
+            "FROM Transaction t WHERE t.account.id = :accountId " +
+            "AND (t.createdAt < :createdAt OR (t.createdAt = :createdAt AND t.id < :id)) " +
+            "ORDER BY t.createdAt DESC, t.id DESC")
+    List<TransactionView> findOlderByAccountId(@Param("accountId") Long accountId,
+                                               @Param("createdAt") LocalDateTime createdAt,
+                                               @Param("id") Long id,
+                                               Limit limit);
+
+    @Query("SELECT new io.github.msj.swiftbank.dto.TransactionView(t.id, t.transactionType, t.amount, t.createdAt) " +
+            "FROM Transaction t WHERE t.account.id = :accountId " +
+            "AND (t.createdAt > :createdAt OR (t.createdAt = :createdAt AND t.id > :id)) " +
+            "ORDER BY t.createdAt ASC, t.id ASC")
+    List<TransactionView> findNewerByAccountId(@Param("accountId") Long accountId,
+                                               @Param("createdAt") LocalDateTime createdAt,
+                                               @Param("id") Long id,
+                                               Limit limit);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new io.github.msj.swiftbank.dto.TransactionView(t.id, t.transactionType, t.amount, t.createdAt) " +
+            "FROM Transaction t WHERE t.account.id = :accountId ORDER BY t.createdAt ASC, t.id ASC")
+    Stream<TransactionView> streamByAccountId(@Param("accountId") Long accountId);
 
 }
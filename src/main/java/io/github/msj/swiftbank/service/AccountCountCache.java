@@ -0,0 +1,36 @@
+package io.github.msj.swiftbank.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+@Component
+public class AccountCountCache {
+
+    private final Cache<String, Long> cache;
+
+    public AccountCountCache(MeterRegistry meterRegistry,
+                             @Value("${swiftbank.account-count-cache.max-size:1000}") long maxSize,
+                             @Value("${swiftbank.account-count-cache.ttl-ms:30000}") long ttlMillis) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "accountCount");
+    }
+
+    public long get(String filterKey, Supplier<Long> counter) {
+        return cache.get(filterKey, key -> counter.get());
+    }
+
+    public void evictAll() {
+        cache.invalidateAll();
+    }
+}
@@ -0,0 +1,89 @@
+package io.github.msj.swiftbank.service;
+
+import io.github.msj.swiftbank.exception.ConcurrentUpdateException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Component
+public class AccountLockManager {
+
+    private static final String BUSY_MESSAGE = "Conta ocupada com outra operação. Tente novamente.";
+
+    private final ReentrantLock[] stripes;
+
+    private final int mask;
+
+    private final long timeoutMillis;
+
+    public AccountLockManager(@Value("${swiftbank.account-locks.stripes:1024}") int stripeCount,
+                              @Value("${swiftbank.account-locks.timeout-ms:2000}") long timeoutMillis) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new ReentrantLock(true);
+        }
+        this.mask = size - 1;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public AccountLocks lock(Long... accountIds) {
+        int[] indexes = Arrays.stream(accountIds).mapToInt(this::stripeOf).distinct().sorted().toArray();
+
+        int acquired = 0;
+        try {
+            for (int index : indexes) {
+                if (!stripes[index].tryLock(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                    throw new ConcurrentUpdateException(BUSY_MESSAGE);
+                }
+                acquired++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            unlock(indexes, acquired);
+            throw new ConcurrentUpdateException(BUSY_MESSAGE, e);
+        } catch (RuntimeException e) {
+            unlock(indexes, acquired);
+            throw e;
+        }
+
+        return new AccountLocks(indexes);
+    }
+
+    int stripeOf(Long accountId) {
+        int hash = Long.hashCode(accountId);
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    int stripeCount() {
+        return stripes.length;
+    }
+
+    private void unlock(int[] indexes, int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            stripes[indexes[i]].unlock();
+        }
+    }
+
+    public final class AccountLocks implements AutoCloseable {
+
+        private final int[] indexes;
+
+        private boolean released;
+
+        private AccountLocks(int[] indexes) {
+            this.indexes = indexes;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                unlock(indexes, indexes.length);
+            }
+        }
+    }
+}
@@ -1,61 +1,198 @@
 package io.github.msj.swiftbank.service;
 
+import io.github.msj.swiftbank.dto.AccountCursor;
+import io.github.msj.swiftbank.dto.AccountOverview;
+import io.github.msj.swiftbank.dto.AccountPage;
+import io.github.msj.swiftbank.dto.AccountSearchCriteria;
+import io.github.msj.swiftbank.dto.AccountSummary;
+import io.github.msj.swiftbank.dto.TargetAccount;
 import io.github.msj.swiftbank.entity.Account;
-import io.github.msj.swiftbank.entity.Transaction;
+import io.github.msj.swiftbank.exception.ConcurrentUpdateException;
+import io.github.msj.swiftbank.exception.InsufficientFundsException;
 import io.github.msj.swiftbank.repository.AccountRepository;
-import jakarta.persistence.OptimisticLockException;
-import jakarta.transaction.Transactional;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
-import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
 
 @Service
 public class AccountService {
 
     private static final String ACCOUNT_NOT_FOUND_MESSAGE = "Conta não encontrada.";
 
-    private final AccountRepository accountRepository;
+    private static final Pattern ACCOUNT_ID_PATTERN = Pattern.compile("\\d{1,18}");
+
+    private static final int TARGET_SEARCH_MIN_PREFIX = 2;
 
-    private final TransactionService transactionService;
+    private static final int TARGET_SEARCH_LIMIT = 10;
+
+    private final AccountRepository accountRepository;
 
     private final UserService userService;
 
-    public AccountService(AccountRepository accountRepository, TransactionService transactionService, UserService userService) {
+    private final BalanceAggregateService balanceAggregateService;
+
+    private final AccountLockManager accountLockManager;
+
+    private final ConflictRetryExecutor conflictRetryExecutor;
+
+    private final AccountCountCache accountCountCache;
+
+    private final AccountShards accountShards;
+
+    private final ShardTransferCoordinator shardTransferCoordinator;
+
+    private final LedgerRecorder ledgerRecorder;
+
+    private final VelocityGuard velocityGuard;
+
+    public AccountService(AccountRepository accountRepository, UserService userService,
+                          BalanceAggregateService balanceAggregateService,
+                          AccountLockManager accountLockManager, ConflictRetryExecutor conflictRetryExecutor,
+                          AccountCountCache accountCountCache, AccountShards accountShards,
+                          ShardTransferCoordinator shardTransferCoordinator, LedgerRecorder ledgerRecorder,
+                          VelocityGuard velocityGuard) {
         this.accountRepository = accountRepository;
-        this.transactionService = transactionService;
         this.userService = userService;
+        this.balanceAggregateService = balanceAggregateService;
+        this.accountLockManager = accountLockManager;
+        this.conflictRetryExecutor = conflictRetryExecutor;
+        this.accountCountCache = accountCountCache;
+        this.accountShards = accountShards;
+        this.shardTransferCoordinator = shardTransferCoordinator;
+        this.ledgerRecorder = ledgerRecorder;
+        this.velocityGuard = velocityGuard;
     }
 
-    public List<Account> findAll() {
-        return accountRepository.findAll();
+    @Transactional(readOnly = true)
+    public Account findById(Long accountId) {
+        return accountShards.onAccount(accountId, () -> accountRepository.findById(accountId))
+                .orElseThrow(() -> new IllegalArgumentException(ACCOUNT_NOT_FOUND_MESSAGE));
     }
 
-    public Account findById(Long accountId) {
-        return accountRepository.findById(accountId)
+    @Transactional(readOnly = true)
+    public AccountOverview findOverviewById(Long accountId) {
+        return accountShards.onAccount(accountId, () -> accountRepository.findOverviewById(accountId))
                 .orElseThrow(() -> new IllegalArgumentException(ACCOUNT_NOT_FOUND_MESSAGE));
     }
 
-    public List<Account> getAccountsByUser(Long userId) {
-        return accountRepository.findByUserId(userId);
+    @Transactional(readOnly = true)
+    public List<AccountSummary> getAccountsByUser(Long userId) {
+        List<AccountSummary> accounts = new ArrayList<>();
+        accountShards.fanOut(() -> accountRepository.findSummariesByUserId(userId)).forEach(accounts::addAll);
+        if (accountShards.isSharded()) {
+            accounts.sort(Comparator.comparing(AccountSummary::getId));
+        }
+        return accounts;
+    }
+
+    @Transactional(readOnly = true)
+    public List<TargetAccount> searchTransferTargets(Long userId, String query) {
+        String term = query == null ? "" : query.trim();
+        if (term.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        if (ACCOUNT_ID_PATTERN.matcher(term).matches()) {
+            Long accountId = Long.valueOf(term);
+            return accountShards.onAccount(accountId, () -> accountRepository.findTargetAccountById(accountId, userId))
+                    .map(Collections::singletonList)
+                    .orElse(Collections.emptyList());
+        }
+
+        if (term.length() < TARGET_SEARCH_MIN_PREFIX) {
+            return Collections.emptyList();
+        }
+        String prefix = likePrefix(term);
+        List<TargetAccount> targets = new ArrayList<>();
+        accountShards.fanOut(() -> accountRepository.findTargetAccountsByOwnerNamePrefix(prefix, userId,
+                PageRequest.of(0, TARGET_SEARCH_LIMIT))).forEach(targets::addAll);
+        if (!accountShards.isSharded()) {
+            return targets;
+        }
+        targets.sort(Comparator.comparing(TargetAccount::getOwnerName, String.CASE_INSENSITIVE_ORDER)
+                .thenComparing(TargetAccount::getId));
+        return targets.subList(0, Math.min(TARGET_SEARCH_LIMIT, targets.size()));
+    }
+
+    @Transactional(readOnly = true)
+    public AccountPage searchAccounts(AccountSearchCriteria criteria) {
+        AccountCursor position = criteria.getCursor() == null ? null : AccountCursor.decode(criteria.getCursor());
+        Limit limit = Limit.of(criteria.getSize() + 1);
+        List<AccountOverview> rows = new ArrayList<>();
+        accountShards.fanOut(() -> searchAccounts(criteria, position, limit)).forEach(rows::addAll);
+        if (accountShards.isSharded()) {
+            rows.sort(criteria.comparator());
+        }
+
+        boolean more = rows.size() > criteria.getSize();
+        List<AccountOverview> page = new ArrayList<>(more ? rows.subList(0, criteria.getSize()) : rows);
+        if (position == null) {
+            return new AccountPage(page, more, false, criteria.isSortedByOwnerName());
+        }
+        if (criteria.getPageDirection() == AccountPage.Direction.PREVIOUS) {
+            Collections.reverse(page);
+            return new AccountPage(page, true, more, criteria.isSortedByOwnerName());
+        }
+        return new AccountPage(page, more, true, criteria.isSortedByOwnerName());
+    }
+
+    private List<AccountOverview> searchAccounts(AccountSearchCriteria criteria, AccountCursor position, Limit limit) {
+        String ownerPrefix = ownerPrefix(criteria);
+        Sort sort = criteria.querySort();
+        if (position == null) {
+            return accountRepository.searchAccounts(ownerPrefix, criteria.getUserId(), criteria.getMinBalance(),
+                    criteria.getMaxBalance(), sort, limit);
+        }
+
+        boolean ascending = criteria.queryDirection() == Sort.Direction.ASC;
+        if (criteria.isSortedByOwnerName()) {
+            return ascending
+                    ? accountRepository.searchAccountsAfterOwnerName(ownerPrefix, criteria.getUserId(),
+                    criteria.getMinBalance(), criteria.getMaxBalance(), position.getOwnerName(), position.getId(), sort, limit)
+                    : accountRepository.searchAccountsBeforeOwnerName(ownerPrefix, criteria.getUserId(),
+                    criteria.getMinBalance(), criteria.getMaxBalance(), position.getOwnerName(), position.getId(), sort, limit);
+        }
+        return ascending
+                ? accountRepository.searchAccountsAfterId(ownerPrefix, criteria.getUserId(), criteria.getMinBalance(),
+                criteria.getMaxBalance(), position.getId(), sort, limit)
+                : accountRepository.searchAccountsBeforeId(ownerPrefix, criteria.getUserId(), criteria.getMinBalance(),
+                criteria.getMaxBalance(), position.getId(), sort, limit);
     }
 
-    public List<Account> getAccountsExcludingUser(Long userId) {
-        return accountRepository.findAccountsExcludingUser(userId);
+    @Transactional(readOnly = true)
+    public long countAccounts(AccountSearchCriteria criteria) {
+        return accountCountCache.get(criteria.filterKey(), () -> {
+            long total = 0;
+            for (Long count : accountShards.fanOut(() -> accountRepository.countAccounts(ownerPrefix(criteria),
+                    criteria.getUserId(), criteria.getMinBalance(), criteria.getMaxBalance()))) {
+                total += count;
+            }
+            return total;
+        });
     }
 
+    @Transactional(readOnly = true)
     public Long countAccounts() {
-        return accountRepository.count();
+        return countAccounts(new AccountSearchCriteria());
     }
 
     public BigDecimal calculateTotalBalance() {
-        return accountRepository.calculateTotalBalance();
+        return balanceAggregateService.getTotalBalance();
     }
 
     public BigDecimal calculateTotalBalanceByUser(Long userId) {
-        return accountRepository.calculateTotalBalanceByUser(userId);
+        return balanceAggregateService.getTotalBalanceByUser(userId);
     }
 
     public Account createAccount(String ownerName, BigDecimal initialBalance, Long userId) {
@@ -68,7 +205,23 @@ public class AccountService {
         account.setBalance(initialBalance);
         account.setUser(userService.findById(userId));
 
-        return accountRepository.save(account);
+        Account savedAccount = accountShards.createAccount(this::allocateAccountId, accountId -> {
+            account.setId(accountId);
+            Account created = accountRepository.save(account);
+            balanceAggregateService.recordBalanceChange(userId, initialBalance);
+            return created;
+        });
+        accountCountCache.evictAll();
+        userService.evictUserDetails(account.getUser().getUsername());
+        return savedAccount;
+    }
+
+    private Long allocateAccountId() {
+        // next_val keeps the meaning the pooled table generator gave it (see V9), so the first id not yet handed
+        // out is next_val - 48
+        Long nextVal = accountRepository.lockNextAccountId();
+        accountRepository.updateNextAccountId(nextVal + 1);
+        return nextVal - 48;
     }
 
     public void creditAccount(Long accountId, BigDecimal amount) {
@@ -76,20 +229,21 @@ public class AccountService {
             throw new IllegalArgumentException("O valor do crédito deve ser maior que zero.");
         }
 
-        Optional<Account> optionalAccount = accountRepository.findById(accountId);
-        if (!optionalAccount.isPresent()) {
-            throw new IllegalArgumentException(ACCOUNT_NOT_FOUND_MESSAGE);
+        try (AccountLockManager.AccountLocks ignored = accountLockManager.lock(accountId)) {
+            accountShards.runOnAccount(accountId, () -> conflictRetryExecutor.run("credit",
+                    "Conflito detectado ao tentar realizar o crédito. Tente novamente.",
+                    () -> applyCredit(accountId, amount)));
         }
+    }
 
-        Account account = optionalAccount.get();
-        account.setBalance(account.getBalance().add(amount));
-        accountRepository.save(account);
+    private void applyCredit(Long accountId, BigDecimal amount) {
+        if (accountRepository.creditBalance(accountId, amount) == 0) {
+            throw new IllegalArgumentException(ACCOUNT_NOT_FOUND_MESSAGE);
+        }
 
-        Transaction transaction = new Transaction();
-        transaction.setAccount(account);
-        transaction.setAmount(amount);
-        transaction.setTransactionType("CREDIT");
-        transactionService.save(transaction);
+        Long ownerId = accountRepository.findOwnerIdById(accountId)
+                .orElseThrow(() -> new IllegalArgumentException(ACCOUNT_NOT_FOUND_MESSAGE));
+        ledgerRecorder.record(accountId, ownerId, null, amount, "CREDIT");
     }
 
     public void debitAccount(Long accountId, BigDecimal amount) {
@@ -97,45 +251,61 @@ public class AccountService {
             throw new IllegalArgumentException("O valor do débito deve ser maior que zero.");
         }
 
-        Account account = accountRepository.findById(accountId)
-                .orElseThrow(() -> new IllegalArgumentException(ACCOUNT_NOT_FOUND_MESSAGE));
-
-        if (account.getBalance().compareTo(amount) < 0) {
-            throw new IllegalArgumentException("Saldo insuficiente para realizar o débito.");
+        try (AccountLockManager.AccountLocks ignored = accountLockManager.lock(accountId)) {
+            velocityGuard.withinLimits(accountId, amount, () -> accountShards.runOnAccount(accountId,
+                    () -> conflictRetryExecutor.run("debit",
+                            "Conflito detectado ao tentar realizar o débito. Tente novamente.",
+                            () -> applyDebit(accountId, amount))));
         }
+    }
 
-        account.setBalance(account.getBalance().subtract(amount));
-        accountRepository.save(account);
+    private void applyDebit(Long accountId, BigDecimal amount) {
+        boolean debited = accountRepository.debitBalanceIfSufficient(accountId, amount) > 0;
 
-        Transaction transaction = new Transaction();
-        transaction.setAccount(account);
-        transaction.setAmount(amount.negate());
-        transaction.setTransactionType("DEBIT");
-        transactionService.save(transaction);
+        Long ownerId = accountRepository.findOwnerIdById(accountId)
+                .orElseThrow(() -> new IllegalArgumentException(ACCOUNT_NOT_FOUND_MESSAGE));
+        if (!debited) {
+            throw new InsufficientFundsException("Saldo insuficiente para realizar o débito.");
+        }
+
+        ledgerRecorder.record(accountId, ownerId, null, amount.negate(), "DEBIT");
     }
 
-    @Transactional
-    public void transferBetweenAccounts(Long sourceAccountId, Long targetAccountId, BigDecimal amount) {
+    public boolean transferBetweenAccounts(Long sourceAccountId, Long targetAccountId, BigDecimal amount) {
         try {
             validateTransfer(sourceAccountId, targetAccountId, amount);
 
-            Account sourceAccount = getAccountById(sourceAccountId, "Conta de origem não encontrada.");
-            Account targetAccount = getAccountById(targetAccountId, "Conta de destino não encontrada.");
-
-            validateSufficientBalance(sourceAccount, amount);
-
-            performBalanceUpdate(sourceAccount, targetAccount, amount);
-            recordTransactions(sourceAccount, targetAccount, amount);
-
-        } catch (OptimisticLockException e) {
-            throw new IllegalStateException("Conflito detectado ao tentar realizar a transferência. Tente novamente.", e);
-        } catch (IllegalArgumentException e) {
+            AtomicBoolean completed = new AtomicBoolean(true);
+            try (AccountLockManager.AccountLocks ignored = accountLockManager.lock(sourceAccountId, targetAccountId)) {
+                velocityGuard.withinLimits(sourceAccountId, amount, () -> {
+                    if (accountShards.shardOf(sourceAccountId) != accountShards.shardOf(targetAccountId)) {
+                        completed.set(shardTransferCoordinator.transfer(sourceAccountId, targetAccountId, amount));
+                        return;
+                    }
+                    accountShards.runOnAccount(sourceAccountId, () -> conflictRetryExecutor.run("transfer",
+                            "Conflito detectado ao tentar realizar a transferência. Tente novamente.",
+                            () -> applyTransfer(sourceAccountId, targetAccountId, amount)));
+                });
+            }
+            return completed.get();
+
+        } catch (IllegalArgumentException | ConcurrentUpdateException e) {
             throw e;
         } catch (Exception e) {
             throw new IllegalStateException("Erro inesperado ao processar a transferência. Entre em contato com o suporte.", e);
         }
     }
 
+    private void applyTransfer(Long sourceAccountId, Long targetAccountId, BigDecimal amount) {
+        Account sourceAccount = getAccountById(sourceAccountId, "Conta de origem não encontrada.");
+        Account targetAccount = getAccountById(targetAccountId, "Conta de destino não encontrada.");
+
+        validateSufficientBalance(sourceAccount, amount);
+
+        performBalanceUpdate(sourceAccount, targetAccount, amount);
+        ledgerRecorder.recordTransfer(sourceAccount, targetAccount, amount);
+    }
+
     private Account getAccountById(Long accountId, String errorMessage) {
         return accountRepository.findById(accountId)
                 .orElseThrow(() -> new IllegalArgumentException(errorMessage));
@@ -154,7 +324,7 @@ public class AccountService {
 
     private void validateSufficientBalance(Account sourceAccount, BigDecimal amount) {
         if (sourceAccount.getBalance().compareTo(amount) < 0) {
-            throw new IllegalArgumentException("Saldo insuficiente na conta de origem.");
+            throw new InsufficientFundsException("Saldo insuficiente na conta de origem.");
         }
     }
 
@@ -166,18 +336,11 @@ public class AccountService {
         accountRepository.save(targetAccount);
     }
 
-    private void recordTransactions(Account sourceAccount, Account targetAccount, BigDecimal amount) {
-        Transaction debitTransaction = new Transaction();
-        debitTransaction.setAccount(sourceAccount);
-        debitTransaction.setAmount(amount.negate());
-        debitTransaction.setTransactionType("TRANSFER_OUT");
-        transactionService.save(debitTransaction);
-
-        Transaction creditTransaction = new Transaction();
-        creditTransaction.setAccount(targetAccount);
-        creditTransaction.setAmount(amount);
-        creditTransaction.setTransactionType("TRANSFER_IN");
-        transactionService.save(creditTransaction);
+    private static String ownerPrefix(AccountSearchCriteria criteria) {
+        return criteria.getOwnerName() == null ? null : likePrefix(criteria.getOwnerName());
     }
 
+    private static String likePrefix(String term) {
+        return term.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%";
+    }
 }
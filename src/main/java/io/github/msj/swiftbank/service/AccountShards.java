@@ -0,0 +1,203 @@
+package io.github.msj.swiftbank.service;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+@Component
+public class AccountShards implements DisposableBean {
+
+    public static final int HOME_SHARD = 0;
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    public enum Strategy {
+        HASH, RANGE
+    }
+
+    private final TransactionOperations transactionOperations;
+
+    private final int shardCount;
+
+    private final Strategy strategy;
+
+    private final long rangeSize;
+
+    private final ExecutorService fanOutExecutor;
+
+    private final TaskDecorator fanOutDecorator;
+
+    @Autowired
+    public AccountShards(TransactionOperations transactionOperations,
+                         @Value("${swiftbank.sharding.enabled:false}") boolean enabled,
+                         @Value("${swiftbank.sharding.urls:}") String[] urls,
+                         @Value("${swiftbank.sharding.strategy:hash}") String strategy,
+                         @Value("${swiftbank.sharding.range-size:1000000}") long rangeSize,
+                         ObjectProvider<TaskDecorator> fanOutDecorator) {
+        this(transactionOperations, enabled ? 1 + countUrls(urls) : 1,
+                Strategy.valueOf(strategy.trim().toUpperCase(Locale.ROOT)), rangeSize,
+                fanOutDecorator.getIfUnique(() -> runnable -> runnable));
+    }
+
+    AccountShards(TransactionOperations transactionOperations, int shardCount, Strategy strategy, long rangeSize) {
+        this(transactionOperations, shardCount, strategy, rangeSize, runnable -> runnable);
+    }
+
+    AccountShards(TransactionOperations transactionOperations, int shardCount, Strategy strategy, long rangeSize,
+                  TaskDecorator fanOutDecorator) {
+        this.transactionOperations = transactionOperations;
+        this.fanOutDecorator = fanOutDecorator;
+        this.shardCount = shardCount;
+        this.strategy = strategy;
+        this.rangeSize = Math.max(1, rangeSize);
+
+        if (shardCount > 1) {
+            int threads = Math.max(shardCount, Runtime.getRuntime().availableProcessors());
+            AtomicInteger threadNumber = new AtomicInteger();
+            this.fanOutExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "shard-fan-out-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.fanOutExecutor = null;
+        }
+    }
+
+    public static AccountShards single(TransactionOperations transactionOperations) {
+        return new AccountShards(transactionOperations, 1, Strategy.HASH, 1);
+    }
+
+    public static int currentShard() {
+        Integer shard = CURRENT.get();
+        return shard != null ? shard : HOME_SHARD;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public boolean isSharded() {
+        return shardCount > 1;
+    }
+
+    public int shardOf(Long accountId) {
+        if (shardCount == 1) {
+            return HOME_SHARD;
+        }
+        if (strategy == Strategy.RANGE) {
+            return (int) Math.min((Math.max(1, accountId) - 1) / rangeSize, shardCount - 1);
+        }
+        return (int) Math.floorMod(accountId, (long) shardCount);
+    }
+
+    public <T> T onShard(int shard, Supplier<T> work) {
+        Integer previous = CURRENT.get();
+        CURRENT.set(shard);
+        try {
+            return work.get();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    public <T> T onAccount(Long accountId, Supplier<T> work) {
+        return onShard(shardOf(accountId), work);
+    }
+
+    public void runOnAccount(Long accountId, Runnable work) {
+        onAccount(accountId, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    public <T> T inTransactionOn(int shard, Supplier<T> work) {
+        return onShard(shard, () -> transactionOperations.execute(status -> work.get()));
+    }
+
+    public <T> T allocatingIds(Supplier<T> work) {
+        return onShard(HOME_SHARD, work);
+    }
+
+    public <T> T createAccount(Supplier<Long> allocateId, Function<Long, T> persist) {
+        Long accountId = inTransactionOn(HOME_SHARD, allocateId);
+        return inTransactionOn(shardOf(accountId), () -> persist.apply(accountId));
+    }
+
+    public <T> List<T> fanOut(Supplier<T> work) {
+        if (fanOutExecutor == null) {
+            return Collections.singletonList(onShard(HOME_SHARD, work));
+        }
+
+        List<Future<T>> futures = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            final int target = shard;
+            FutureTask<T> task = new FutureTask<>(() -> onShard(target, work));
+            fanOutExecutor.execute(fanOutDecorator.decorate(task));
+            futures.add(task);
+        }
+
+        List<T> results = new ArrayList<>(shardCount);
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Consulta aos shards interrompida.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Falha ao consultar os shards.", e.getCause());
+        } finally {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public void destroy() {
+        if (fanOutExecutor != null) {
+            fanOutExecutor.shutdownNow();
+        }
+    }
+
+    private static void restore(Integer previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    private static int countUrls(String[] urls) {
+        int count = 0;
+        for (String url : urls) {
+            if (!url.trim().isEmpty()) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,189 @@
+package io.github.msj.swiftbank.service;
+
+import io.github.msj.swiftbank.repository.AccountRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+@Service
+public class BalanceAggregateService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BalanceAggregateService.class);
+
+    private final AccountRepository accountRepository;
+
+    private final AccountShards accountShards;
+
+    private final TransactionOperations transactionOperations;
+
+    private final Aggregate totalBalance = new Aggregate();
+
+    private final ConcurrentHashMap<Long, Aggregate> balancesByUser = new ConcurrentHashMap<>();
+
+    public BalanceAggregateService(AccountRepository accountRepository, AccountShards accountShards,
+                                   TransactionOperations transactionOperations) {
+        this.accountRepository = accountRepository;
+        this.accountShards = accountShards;
+        this.transactionOperations = transactionOperations;
+    }
+
+    public BigDecimal getTotalBalance() {
+        return totalBalance.read(this::loadTotalBalance);
+    }
+
+    public BigDecimal getTotalBalanceByUser(Long userId) {
+        return balancesByUser.computeIfAbsent(userId, id -> new Aggregate())
+                .read(() -> sum(accountShards.fanOut(
+                        () -> onPrimary(() -> accountRepository.calculateTotalBalanceByUser(userId)))));
+    }
+
+    public void recordBalanceChange(Long userId, BigDecimal delta) {
+        final Aggregate userBalance = balancesByUser.computeIfAbsent(userId, id -> new Aggregate());
+        totalBalance.begin();
+        userBalance.begin();
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            totalBalance.complete(delta);
+            userBalance.complete(delta);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                BigDecimal committedDelta = status == STATUS_COMMITTED ? delta : null;
+                totalBalance.complete(committedDelta);
+                userBalance.complete(committedDelta);
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${swiftbank.balance-aggregates.verify-interval-ms:300000}",
+            initialDelayString = "${swiftbank.balance-aggregates.verify-interval-ms:300000}")
+    public void verifyAggregates() {
+        Snapshot totalSnapshot = totalBalance.snapshot();
+        Map<Long, Snapshot> userSnapshots = new HashMap<>();
+        balancesByUser.forEach((userId, aggregate) -> {
+            Snapshot snapshot = aggregate.snapshot();
+            if (snapshot != null) {
+                userSnapshots.put(userId, snapshot);
+            }
+        });
+
+        if (totalSnapshot != null) {
+            totalBalance.verify(totalSnapshot, loadTotalBalance(), "total");
+        }
+
+        if (!userSnapshots.isEmpty()) {
+            Map<Long, BigDecimal> persistedByUser = new HashMap<>();
+            for (List<Object[]> rows : accountShards.fanOut(() -> onPrimary(accountRepository::calculateTotalBalancePerUser))) {
+                for (Object[] row : rows) {
+                    persistedByUser.merge((Long) row[0], (BigDecimal) row[1], BigDecimal::add);
+                }
+            }
+            userSnapshots.forEach((userId, snapshot) -> balancesByUser.get(userId)
+                    .verify(snapshot, persistedByUser.getOrDefault(userId, BigDecimal.ZERO), "user " + userId));
+        }
+    }
+
+    private BigDecimal loadTotalBalance() {
+        return sum(accountShards.fanOut(() -> onPrimary(accountRepository::calculateTotalBalance)));
+    }
+
+    // cached aggregates only ever move by deltas, so a stale replica read would stick until the next verify pass
+    private <T> T onPrimary(Supplier<T> query) {
+        return transactionOperations.execute(status -> query.get());
+    }
+
+    private static BigDecimal sum(List<BigDecimal> values) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (BigDecimal value : values) {
+            if (value != null) {
+                total = total.add(value);
+            }
+        }
+        return total;
+    }
+
+    private static final class Snapshot {
+
+        private final BigDecimal value;
+
+        private final long completed;
+
+        private Snapshot(BigDecimal value, long completed) {
+            this.value = value;
+            this.completed = completed;
+        }
+    }
+
+    private static final class Aggregate {
+
+        private BigDecimal value;
+
+        private int inFlight;
+
+        private long completed;
+
+        BigDecimal read(Supplier<BigDecimal> loader) {
+            long stamp;
+            synchronized (this) {
+                if (value != null) {
+                    return value;
+                }
+                stamp = inFlight == 0 ? completed : -1;
+            }
+
+            BigDecimal loaded = loader.get();
+            if (loaded == null) {
+                loaded = BigDecimal.ZERO;
+            }
+
+            synchronized (this) {
+                if (value == null && stamp >= 0 && inFlight == 0 && completed == stamp) {
+                    value = loaded;
+                }
+            }
+            return loaded;
+        }
+
+        synchronized void begin() {
+            inFlight++;
+        }
+
+        synchronized void complete(BigDecimal delta) {
+            inFlight--;
+            completed++;
+            if (value != null && delta != null) {
+                value = value.add(delta);
+            }
+        }
+
+        synchronized Snapshot snapshot() {
+            return value != null && inFlight == 0 ? new Snapshot(value, completed) : null;
+        }
+
+        synchronized void verify(Snapshot snapshot, BigDecimal persisted, String label) {
+            if (value == null || inFlight != 0 || completed != snapshot.completed) {
+                return;
+            }
+            BigDecimal expected = persisted != null ? persisted : BigDecimal.ZERO;
+            if (snapshot.value.compareTo(expected) != 0) {
+                logger.warn("Balance aggregate drift detected for {}: cached={}, persisted={}. Reloading.",
+                        label, snapshot.value, expected);
+                value = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package io.github.msj.swiftbank.service;
+
+import io.github.msj.swiftbank.exception.ConcurrentUpdateException;
+import jakarta.persistence.OptimisticLockException;
+import org.hibernate.StaleStateException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+@Component
+public class ConflictRetryExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConflictRetryExecutor.class);
+
+    private final TransactionOperations transactionOperations;
+
+    private final int maxAttempts;
+
+    private final long initialBackoffMillis;
+
+    private final long maxBackoffMillis;
+
+    private final Map<String, OperationStats> stats = new ConcurrentHashMap<>();
+
+    public ConflictRetryExecutor(TransactionOperations transactionOperations,
+                                 @Value("${swiftbank.retry.max-attempts:4}") int maxAttempts,
+                                 @Value("${swiftbank.retry.initial-backoff-ms:5}") long initialBackoffMillis,
+                                 @Value("${swiftbank.retry.max-backoff-ms:100}") long maxBackoffMillis) {
+        this.transactionOperations = transactionOperations;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    public void run(String operation, String conflictMessage, Runnable work) {
+        execute(operation, conflictMessage, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    public <T> T execute(String operation, String conflictMessage, Supplier<T> work) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return work.get();
+        }
+
+        OperationStats operationStats = stats.computeIfAbsent(operation, key -> new OperationStats());
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionOperations.execute(status -> work.get());
+            } catch (RuntimeException e) {
+                if (!isConflict(e)) {
+                    throw e;
+                }
+                if (attempt >= maxAttempts) {
+                    operationStats.exhausted.increment();
+                    logger.warn("Operation {} gave up after {} conflicting attempts", operation, attempt);
+                    throw new ConcurrentUpdateException(conflictMessage, e);
+                }
+                operationStats.retries.increment();
+                backOff(attempt, conflictMessage, e);
+            }
+        }
+    }
+
+    public long getRetryCount(String operation) {
+        OperationStats operationStats = stats.get(operation);
+        return operationStats != null ? operationStats.retries.sum() : 0;
+    }
+
+    public long getExhaustedCount(String operation) {
+        OperationStats operationStats = stats.get(operation);
+        return operationStats != null ? operationStats.exhausted.sum() : 0;
+    }
+
+    private void backOff(int attempt, String conflictMessage, RuntimeException cause) {
+        long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 20));
+        if (ceiling <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConcurrentUpdateException(conflictMessage, cause);
+        }
+    }
+
+    static boolean isConflict(Throwable throwable) {
+        for (Throwable current = throwable; current != null; current = current.getCause()) {
+            if (current instanceof OptimisticLockException
+                    || current instanceof OptimisticLockingFailureException
+                    || current instanceof PessimisticLockingFailureException
+                    || current instanceof StaleStateException) {
+                return true;
+            }
+            if (current.getCause() == current) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    private static final class OperationStats {
+
+        private final LongAdder retries = new LongAdder();
+
+        private final LongAdder exhausted = new LongAdder();
+    }
+}
@@ -1,31 +1,80 @@
 package io.github.msj.swiftbank.service;
 
+import io.github.msj.swiftbank.dto.SwiftBankUserDetails;
 import io.github.msj.swiftbank.entity.Role;
 import io.github.msj.swiftbank.entity.User;
+import io.github.msj.swiftbank.repository.AccountRepository;
 import io.github.msj.swiftbank.repository.UserRepository;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
 @Service
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepository userRepository;
 
-    public CustomUserDetailsService(UserRepository userRepository) {
+    private final AccountRepository accountRepository;
+
+    private final UserDetailsCache userDetailsCache;
+
+    private final AccountShards accountShards;
+
+    public CustomUserDetailsService(UserRepository userRepository, AccountRepository accountRepository,
+                                    UserDetailsCache userDetailsCache, AccountShards accountShards) {
         this.userRepository = userRepository;
+        this.accountRepository = accountRepository;
+        this.userDetailsCache = userDetailsCache;
+        this.accountShards = accountShards;
     }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        return userDetailsCache.get(username, this::loadFromDatabase);
+    }
+
+    @Override
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        User user = userRepository.findByUsername(userDetails.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("User not found: " + userDetails.getUsername()));
+        user.setPassword(newPassword);
+        userRepository.save(user);
+        userDetailsCache.evict(user.getUsername());
+
+        if (userDetails instanceof SwiftBankUserDetails) {
+            return ((SwiftBankUserDetails) userDetails).withPassword(newPassword);
+        }
+        return org.springframework.security.core.userdetails.User.withUserDetails(userDetails)
+                .password(newPassword)
+                .build();
+    }
+
+    private SwiftBankUserDetails loadFromDatabase(String username) {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
 
-        return org.springframework.security.core.userdetails.User.builder()
-                .username(user.getUsername())
-                .password(user.getPassword())
-                .roles(user.getRoles().stream().map(Role::getName).toArray(String[]::new))
-                .build();
+        return new SwiftBankUserDetails(
+                user.getId(),
+                user.getUsername(),
+                user.getPassword(),
+                user.isEnabled(),
+                user.getRoles().stream()
+                        .map(Role::getName)
+                        .map(role -> new SimpleGrantedAuthority("ROLE_" + role))
+                        .collect(Collectors.toList()),
+                findAccountIds(user.getId()));
+    }
+
+    private List<Long> findAccountIds(Long userId) {
+        List<Long> accountIds = new ArrayList<>();
+        accountShards.fanOut(() -> accountRepository.findIdsByUserId(userId)).forEach(accountIds::addAll);
+        return accountIds;
     }
 }
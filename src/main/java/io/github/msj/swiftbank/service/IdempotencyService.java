@@ -0,0 +1,201 @@
+package io.github.msj.swiftbank.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.github.msj.swiftbank.dto.OperationOutcome;
+import io.github.msj.swiftbank.entity.IdempotencyRecord;
+import io.github.msj.swiftbank.repository.IdempotencyRecordRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+@Service
+public class IdempotencyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    private static final int MAX_KEY_LENGTH = 64;
+
+    private static final String IN_PROGRESS_MESSAGE = "Esta operação já está sendo processada. Aguarde e consulte o extrato.";
+
+    private static final String INVALID_KEY_MESSAGE = "Chave de idempotência inválida.";
+
+    private static final String KEY_REUSED_MESSAGE = "Esta chave de idempotência já foi usada com outros dados. Recarregue o formulário e tente novamente.";
+
+    static final String UNCONFIRMED_MESSAGE = "Não foi possível confirmar o resultado desta operação. Consulte o extrato antes de tentar novamente.";
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+
+    private final TransactionOperations transactionOperations;
+
+    private final Cache<String, StoredOutcome> outcomes;
+
+    private final long retentionMillis;
+
+    public IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository,
+                              TransactionOperations transactionOperations,
+                              @Value("${swiftbank.idempotency.cache-max-size:10000}") long cacheMaxSize,
+                              @Value("${swiftbank.idempotency.retention-ms:86400000}") long retentionMillis) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.transactionOperations = transactionOperations;
+        this.retentionMillis = retentionMillis;
+        this.outcomes = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(retentionMillis, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    public OperationOutcome execute(String scope, String idempotencyKey, String operation,
+                                    List<?> requestParameters, Supplier<String> action) {
+        if (idempotencyKey == null || idempotencyKey.trim().isEmpty()) {
+            return run(action);
+        }
+        if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+            return OperationOutcome.failure(INVALID_KEY_MESSAGE);
+        }
+
+        String scopedKey = scope + ":" + operation + ":" + idempotencyKey;
+        String requestHash = hash(requestParameters);
+        StoredOutcome cached = outcomes.getIfPresent(scopedKey);
+        if (cached != null) {
+            return cached.matches(requestHash) ? cached.outcome : OperationOutcome.failure(KEY_REUSED_MESSAGE);
+        }
+
+        if (!claim(scopedKey, operation, requestHash)) {
+            return replay(scopedKey, requestHash);
+        }
+
+        OperationOutcome outcome;
+        try {
+            outcome = OperationOutcome.success(action.get());
+        } catch (IllegalArgumentException e) {
+            release(scopedKey);
+            return OperationOutcome.failure(e.getMessage());
+        } catch (RuntimeException e) {
+            complete(scopedKey, requestHash, OperationOutcome.failure(UNCONFIRMED_MESSAGE));
+            throw e;
+        }
+
+        complete(scopedKey, requestHash, outcome);
+        return outcome;
+    }
+
+    @Scheduled(fixedDelayString = "${swiftbank.idempotency.purge-interval-ms:3600000}",
+            initialDelayString = "${swiftbank.idempotency.purge-interval-ms:3600000}")
+    public void purgeExpiredKeys() {
+        LocalDateTime threshold = LocalDateTime.now().minusNanos(TimeUnit.MILLISECONDS.toNanos(retentionMillis));
+        Integer purged = transactionOperations.execute(status -> idempotencyRecordRepository.deleteCreatedBefore(threshold));
+        if (purged != null && purged > 0) {
+            logger.info("Purged {} expired idempotency keys", purged);
+        }
+    }
+
+    private OperationOutcome run(Supplier<String> action) {
+        try {
+            return OperationOutcome.success(action.get());
+        } catch (IllegalArgumentException e) {
+            return OperationOutcome.failure(e.getMessage());
+        }
+    }
+
+    private boolean claim(String scopedKey, String operation, String requestHash) {
+        try {
+            transactionOperations.executeWithoutResult(status ->
+                    idempotencyRecordRepository.saveAndFlush(new IdempotencyRecord(scopedKey, operation, requestHash)));
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
+    }
+
+    private OperationOutcome replay(String scopedKey, String requestHash) {
+        Optional<IdempotencyRecord> existing = idempotencyRecordRepository.findById(scopedKey);
+        if (!existing.isPresent()) {
+            return OperationOutcome.failure(IN_PROGRESS_MESSAGE);
+        }
+
+        IdempotencyRecord record = existing.get();
+        if (record.getRequestHash() != null && !record.getRequestHash().equals(requestHash)) {
+            return OperationOutcome.failure(KEY_REUSED_MESSAGE);
+        }
+        if (record.getStatus() == IdempotencyRecord.Status.PENDING) {
+            return OperationOutcome.failure(IN_PROGRESS_MESSAGE);
+        }
+
+        OperationOutcome outcome = record.getStatus() == IdempotencyRecord.Status.SUCCEEDED
+                ? OperationOutcome.success(record.getResultMessage())
+                : OperationOutcome.failure(record.getResultMessage());
+        outcomes.put(scopedKey, new StoredOutcome(record.getRequestHash(), outcome));
+        return outcome;
+    }
+
+    private void complete(String scopedKey, String requestHash, OperationOutcome outcome) {
+        outcomes.put(scopedKey, new StoredOutcome(requestHash, outcome));
+        IdempotencyRecord.Status status = outcome.isSuccess()
+                ? IdempotencyRecord.Status.SUCCEEDED
+                : IdempotencyRecord.Status.FAILED;
+        try {
+            transactionOperations.executeWithoutResult(txStatus ->
+                    idempotencyRecordRepository.complete(scopedKey, status, outcome.getMessage()));
+        } catch (RuntimeException e) {
+            logger.error("Could not persist outcome for idempotency key {}", scopedKey, e);
+        }
+    }
+
+    private void release(String scopedKey) {
+        try {
+            transactionOperations.executeWithoutResult(status -> idempotencyRecordRepository.deleteById(scopedKey));
+        } catch (RuntimeException e) {
+            logger.error("Could not release idempotency key {}", scopedKey, e);
+        }
+    }
+
+    static String hash(List<?> requestParameters) {
+        StringBuilder canonical = new StringBuilder();
+        for (Object parameter : requestParameters) {
+            Object value = parameter instanceof BigDecimal
+                    ? ((BigDecimal) parameter).stripTrailingZeros().toPlainString()
+                    : parameter;
+            canonical.append(Objects.toString(value)).append('|');
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(canonical.toString().getBytes(StandardCharsets.UTF_8));
+            return String.format("%064x", new BigInteger(1, digest));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+
+    private static final class StoredOutcome {
+
+        private final String requestHash;
+
+        private final OperationOutcome outcome;
+
+        private StoredOutcome(String requestHash, OperationOutcome outcome) {
+            this.requestHash = requestHash;
+            this.outcome = outcome;
+        }
+
+        private boolean matches(String otherHash) {
+            return requestHash == null || requestHash.equals(otherHash);
+        }
+    }
+}
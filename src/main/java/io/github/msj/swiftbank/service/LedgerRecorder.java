@@ -0,0 +1,77 @@
+package io.github.msj.swiftbank.service;
+
+import io.github.msj.swiftbank.entity.Account;
+import io.github.msj.swiftbank.entity.OutboxEvent;
+import io.github.msj.swiftbank.entity.Transaction;
+import io.github.msj.swiftbank.repository.AccountRepository;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+
+@Component
+public class LedgerRecorder {
+
+    private final AccountRepository accountRepository;
+
+    private final TransactionService transactionService;
+
+    private final BalanceAggregateService balanceAggregateService;
+
+    private final AccountShards accountShards;
+
+    private final OutboxPublisher outboxPublisher;
+
+    private final LedgerWriter ledgerWriter;
+
+    public LedgerRecorder(AccountRepository accountRepository, TransactionService transactionService,
+                          BalanceAggregateService balanceAggregateService, AccountShards accountShards,
+                          OutboxPublisher outboxPublisher, LedgerWriter ledgerWriter) {
+        this.accountRepository = accountRepository;
+        this.transactionService = transactionService;
+        this.balanceAggregateService = balanceAggregateService;
+        this.accountShards = accountShards;
+        this.outboxPublisher = outboxPublisher;
+        this.ledgerWriter = ledgerWriter;
+    }
+
+    public void record(Long accountId, Long ownerId, Long counterpartyAccountId, BigDecimal amount,
+                       String transactionType) {
+        balanceAggregateService.recordBalanceChange(ownerId, amount);
+        if (ledgerWriter.isEnabled()) {
+            ledgerWriter.writeAfterCommit(Collections.singletonList(
+                    outboxPublisher.publish(transactionType, accountId, counterpartyAccountId, amount)));
+            return;
+        }
+        Transaction transaction = ledgerRow(accountRepository.getReferenceById(accountId), amount, transactionType);
+        accountShards.allocatingIds(() -> transactionService.save(transaction));
+        outboxPublisher.publish(transactionType, accountId, counterpartyAccountId, amount);
+    }
+
+    public void recordTransfer(Account sourceAccount, Account targetAccount, BigDecimal amount) {
+        balanceAggregateService.recordBalanceChange(sourceAccount.getUser().getId(), amount.negate());
+        balanceAggregateService.recordBalanceChange(targetAccount.getUser().getId(), amount);
+        if (ledgerWriter.isEnabled()) {
+            OutboxEvent debitEvent = outboxPublisher.publish("TRANSFER_OUT", sourceAccount.getId(),
+                    targetAccount.getId(), amount.negate());
+            OutboxEvent creditEvent = outboxPublisher.publish("TRANSFER_IN", targetAccount.getId(),
+                    sourceAccount.getId(), amount);
+            ledgerWriter.writeAfterCommit(Arrays.asList(debitEvent, creditEvent));
+            return;
+        }
+        Transaction debitTransaction = ledgerRow(sourceAccount, amount.negate(), "TRANSFER_OUT");
+        Transaction creditTransaction = ledgerRow(targetAccount, amount, "TRANSFER_IN");
+        accountShards.allocatingIds(() -> transactionService.saveAll(Arrays.asList(debitTransaction, creditTransaction)));
+        outboxPublisher.publish("TRANSFER_OUT", sourceAccount.getId(), targetAccount.getId(), amount.negate());
+        outboxPublisher.publish("TRANSFER_IN", targetAccount.getId(), sourceAccount.getId(), amount);
+    }
+
+    private static Transaction ledgerRow(Account account, BigDecimal amount, String transactionType) {
+        Transaction transaction = new Transaction();
+        transaction.setAccount(account);
+        transaction.setAmount(amount);
+        transaction.setTransactionType(transactionType);
+        return transaction;
+    }
+}
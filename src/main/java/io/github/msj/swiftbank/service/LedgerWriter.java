@@ -0,0 +1,250 @@
+package io.github.msj.swiftbank.service;
+
+import io.github.msj.swiftbank.entity.OutboxEvent;
+import io.github.msj.swiftbank.entity.Transaction;
+import io.github.msj.swiftbank.repository.AccountRepository;
+import io.github.msj.swiftbank.repository.TransactionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+@Component
+public class LedgerWriter implements OutboxEventSubscriber {
+
+    private static final Logger logger = LoggerFactory.getLogger(LedgerWriter.class);
+
+    private final TransactionRepository transactionRepository;
+
+    private final AccountRepository accountRepository;
+
+    private final TransactionOperations transactionOperations;
+
+    private final AccountShards accountShards;
+
+    private final boolean enabled;
+
+    private final int batchSize;
+
+    private final long ackTimeoutMillis;
+
+    private final BlockingQueue<PendingWrite> queue;
+
+    private volatile boolean running;
+
+    private Thread writerThread;
+
+    @Autowired
+    public LedgerWriter(TransactionRepository transactionRepository, AccountRepository accountRepository,
+                        PlatformTransactionManager transactionManager, AccountShards accountShards,
+                        @Value("${swiftbank.ledger.write-behind.enabled:false}") boolean enabled,
+                        @Value("${swiftbank.outbox.relay.enabled:true}") boolean relayEnabled,
+                        @Value("${swiftbank.ledger.write-behind.queue-capacity:4096}") int queueCapacity,
+                        @Value("${swiftbank.ledger.write-behind.batch-size:50}") int batchSize,
+                        @Value("${swiftbank.ledger.write-behind.ack-timeout-ms:5000}") long ackTimeoutMillis) {
+        this(transactionRepository, accountRepository, requiresNew(transactionManager), accountShards, enabled,
+                queueCapacity, batchSize, ackTimeoutMillis);
+        if (enabled && !relayEnabled) {
+            throw new IllegalStateException(
+                    "swiftbank.ledger.write-behind.enabled requires swiftbank.outbox.relay.enabled");
+        }
+    }
+
+    LedgerWriter(TransactionRepository transactionRepository, AccountRepository accountRepository,
+                 TransactionOperations transactionOperations, AccountShards accountShards, boolean enabled,
+                 int queueCapacity, int batchSize, long ackTimeoutMillis) {
+        this.transactionRepository = transactionRepository;
+        this.accountRepository = accountRepository;
+        this.transactionOperations = transactionOperations;
+        this.accountShards = accountShards;
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, batchSize);
+        this.ackTimeoutMillis = ackTimeoutMillis;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+    }
+
+    @Override
+    public String getName() {
+        return "ledger-writer";
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    public synchronized void start() {
+        if (!enabled || running) {
+            return;
+        }
+        running = true;
+        writerThread = new Thread(this::drainLoop, "ledger-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @PreDestroy
+    public synchronized void stop() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        writerThread.interrupt();
+        writerThread.join(ackTimeoutMillis);
+    }
+
+    public void writeAfterCommit(List<OutboxEvent> events) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Ledger rows can only be deferred inside the transaction that publishes their outbox events");
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                awaitGroupCommit(events);
+            }
+        });
+    }
+
+    @Override
+    public void onEvents(List<OutboxEvent> events) {
+        write(events);
+    }
+
+    private void awaitGroupCommit(List<OutboxEvent> events) {
+        // the money has already moved, so a slow or failed group commit must not surface as an error the
+        // caller would retry; the outbox relay lands the rows for any write that is not acknowledged here
+        PendingWrite pendingWrite = new PendingWrite(events);
+        try {
+            if (!running || !queue.offer(pendingWrite, ackTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                logger.warn("Ledger writer queue unavailable, leaving {} ledger rows to the outbox relay", events.size());
+                return;
+            }
+            pendingWrite.acknowledgement.get(ackTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted waiting for ledger rows, leaving them to the outbox relay");
+        } catch (ExecutionException | TimeoutException e) {
+            logger.warn("Ledger rows not acknowledged, leaving them to the outbox relay: {}", e.toString());
+        }
+    }
+
+    private void drainLoop() {
+        List<PendingWrite> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                if (running) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        Map<Integer, List<OutboxEvent>> eventsByShard = new LinkedHashMap<>();
+        for (PendingWrite pendingWrite : batch) {
+            for (OutboxEvent event : pendingWrite.events) {
+                eventsByShard.computeIfAbsent(accountShards.shardOf(event.getAccountId()), shard -> new ArrayList<>())
+                        .add(event);
+            }
+        }
+
+        try {
+            for (Map.Entry<Integer, List<OutboxEvent>> shardEvents : eventsByShard.entrySet()) {
+                accountShards.onShard(shardEvents.getKey(), () -> {
+                    write(shardEvents.getValue());
+                    return null;
+                });
+            }
+            for (PendingWrite pendingWrite : batch) {
+                pendingWrite.acknowledgement.complete(null);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Failed to write ledger rows for {} requests", batch.size(), e);
+            for (PendingWrite pendingWrite : batch) {
+                pendingWrite.acknowledgement.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void write(List<OutboxEvent> events) {
+        transactionOperations.executeWithoutResult(status -> {
+            List<Long> eventIds = new ArrayList<>(events.size());
+            for (OutboxEvent event : events) {
+                eventIds.add(event.getId());
+            }
+            Set<Long> written = new HashSet<>(transactionRepository.findSourceEventIdsIn(eventIds));
+
+            List<Transaction> rows = new ArrayList<>(events.size());
+            for (OutboxEvent event : events) {
+                if (!written.contains(event.getId())) {
+                    rows.add(ledgerRow(event));
+                }
+            }
+            if (!rows.isEmpty()) {
+                accountShards.allocatingIds(() -> transactionRepository.saveAll(rows));
+            }
+        });
+    }
+
+    private Transaction ledgerRow(OutboxEvent event) {
+        Transaction transaction = new Transaction();
+        transaction.setAccount(accountRepository.getReferenceById(event.getAccountId()));
+        transaction.setAmount(event.getAmount());
+        transaction.setTransactionType(event.getEventType());
+        transaction.setCreatedAt(event.getCreatedAt());
+        transaction.setSourceEventId(event.getId());
+        return transaction;
+    }
+
+    private static TransactionOperations requiresNew(PlatformTransactionManager transactionManager) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return transactionTemplate;
+    }
+
+    private static final class PendingWrite {
+
+        private final List<OutboxEvent> events;
+
+        private final CompletableFuture<Void> acknowledgement = new CompletableFuture<>();
+
+        private PendingWrite(List<OutboxEvent> events) {
+            this.events = events;
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package io.github.msj.swiftbank.service;
+
+import io.github.msj.swiftbank.dto.AccountSummary;
+import io.github.msj.swiftbank.dto.LiveFeedEvent;
+import io.github.msj.swiftbank.entity.OutboxEvent;
+import io.github.msj.swiftbank.repository.AccountRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+public class LiveFeedService implements OutboxEventSubscriber, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(LiveFeedService.class);
+
+    static final String EVENT_NAME = "transaction";
+
+    static final String SUBSCRIBER_NAME = "live-feed";
+
+    private final Map<SseEmitter, Connection> connections = new ConcurrentHashMap<>();
+
+    private final Map<Long, Set<Connection>> connectionsByAccount = new ConcurrentHashMap<>();
+
+    private final AtomicLong slowConnectionsClosed = new AtomicLong();
+
+    private final AccountRepository accountRepository;
+
+    private final long timeoutMillis;
+
+    private final int maxConnections;
+
+    private final int sendQueueSize;
+
+    private final Executor senderExecutor;
+
+    @Autowired
+    public LiveFeedService(MeterRegistry meterRegistry, AccountRepository accountRepository,
+                           @Value("${swiftbank.live-feed.timeout-ms:1800000}") long timeoutMillis,
+                           @Value("${swiftbank.live-feed.max-connections:10000}") int maxConnections,
+                           @Value("${swiftbank.live-feed.send-queue-size:64}") int sendQueueSize,
+                           @Value("${swiftbank.live-feed.sender-threads:4}") int senderThreads) {
+        this(accountRepository, timeoutMillis, maxConnections, sendQueueSize, senderPool(senderThreads));
+        Gauge.builder("swiftbank.live-feed.connections", connections, Map::size)
+                .description("Open live feed connections")
+                .register(meterRegistry);
+        FunctionCounter.builder("swiftbank.live-feed.slow-connections-closed", slowConnectionsClosed, AtomicLong::get)
+                .description("Live feed connections closed because their send queue overflowed")
+                .register(meterRegistry);
+    }
+
+    LiveFeedService(AccountRepository accountRepository, long timeoutMillis, int maxConnections, int sendQueueSize,
+                    Executor senderExecutor) {
+        this.accountRepository = accountRepository;
+        this.timeoutMillis = timeoutMillis;
+        this.maxConnections = maxConnections;
+        this.sendQueueSize = Math.max(1, sendQueueSize);
+        this.senderExecutor = senderExecutor;
+    }
+
+    @Override
+    public String getName() {
+        return SUBSCRIBER_NAME;
+    }
+
+    @Override
+    public boolean isDurable() {
+        return false;
+    }
+
+    public Optional<SseEmitter> subscribe(Collection<Long> accountIds) {
+        if (connections.size() >= maxConnections) {
+            return Optional.empty();
+        }
+
+        SseEmitter emitter = createEmitter(timeoutMillis);
+        Connection connection = new Connection(emitter,
+                Collections.unmodifiableSet(new LinkedHashSet<>(accountIds)), sendQueueSize);
+        connections.put(emitter, connection);
+        for (Long accountId : connection.accounts) {
+            connectionsByAccount.compute(accountId, (id, registered) -> {
+                Set<Connection> watching = registered != null ? registered : ConcurrentHashMap.newKeySet();
+                watching.add(connection);
+                return watching;
+            });
+        }
+
+        emitter.onCompletion(() -> unregister(connection));
+        emitter.onTimeout(() -> unregister(connection));
+        emitter.onError(error -> unregister(connection));
+        enqueue(connection, SseEmitter.event().comment("connected"));
+        return Optional.of(emitter);
+    }
+
+    @Override
+    public void onEvents(List<OutboxEvent> events) {
+        // runs on the outbox relay thread, so it only queues; sender threads do the socket writes
+        Set<Long> watchedAccounts = new HashSet<>();
+        for (OutboxEvent event : events) {
+            if (connectionsByAccount.containsKey(event.getAccountId())) {
+                watchedAccounts.add(event.getAccountId());
+            }
+        }
+        if (watchedAccounts.isEmpty()) {
+            return;
+        }
+
+        // pages add up current balances rather than amounts, so an event relayed after the page rendered
+        // can never be counted twice
+        Map<Long, BigDecimal> balances = new HashMap<>();
+        for (AccountSummary account : accountRepository.findSummariesByIdIn(watchedAccounts)) {
+            balances.put(account.getId(), account.getBalance());
+        }
+
+        for (OutboxEvent event : events) {
+            Set<Connection> watching = connectionsByAccount.get(event.getAccountId());
+            if (watching == null) {
+                continue;
+            }
+            LiveFeedEvent payload = LiveFeedEvent.from(event, balances.get(event.getAccountId()));
+            for (Connection connection : new ArrayList<>(watching)) {
+                enqueue(connection, SseEmitter.event()
+                        .id(String.valueOf(event.getId()))
+                        .name(EVENT_NAME)
+                        .data(payload, MediaType.APPLICATION_JSON));
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${swiftbank.live-feed.heartbeat-ms:25000}",
+            initialDelayString = "${swiftbank.live-feed.heartbeat-ms:25000}")
+    public void sendHeartbeats() {
+        for (Connection connection : new ArrayList<>(connections.values())) {
+            enqueue(connection, SseEmitter.event().comment("heartbeat"));
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (senderExecutor instanceof ExecutorService) {
+            ((ExecutorService) senderExecutor).shutdownNow();
+        }
+    }
+
+    int getConnectionCount() {
+        return connections.size();
+    }
+
+    SseEmitter createEmitter(long timeoutMillis) {
+        return new SseEmitter(timeoutMillis);
+    }
+
+    private void enqueue(Connection connection, SseEmitter.SseEventBuilder event) {
+        if (connection.closed) {
+            return;
+        }
+        if (!connection.queue.offer(event)) {
+            logger.debug("Closing live feed connection that fell {} events behind", sendQueueSize);
+            slowConnectionsClosed.incrementAndGet();
+            unregister(connection);
+            connection.closed = true;
+            connection.queue.clear();
+        }
+        scheduleDrain(connection);
+    }
+
+    private void scheduleDrain(Connection connection) {
+        if (!connection.draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            senderExecutor.execute(() -> drain(connection));
+        } catch (RejectedExecutionException e) {
+            connection.draining.set(false);
+        }
+    }
+
+    private void drain(Connection connection) {
+        try {
+            SseEmitter.SseEventBuilder event;
+            while (!connection.closed && (event = connection.queue.poll()) != null) {
+                send(connection, event);
+            }
+            if (connection.closed) {
+                connection.queue.clear();
+                if (connection.finished.compareAndSet(false, true)) {
+                    connection.emitter.complete();
+                }
+            }
+        } finally {
+            connection.draining.set(false);
+        }
+        if (!connection.queue.isEmpty()) {
+            scheduleDrain(connection);
+        }
+    }
+
+    private void send(Connection connection, SseEmitter.SseEventBuilder event) {
+        try {
+            connection.emitter.send(event);
+        } catch (IOException e) {
+            unregister(connection);
+            connection.closed = true;
+            if (connection.finished.compareAndSet(false, true)) {
+                connection.emitter.completeWithError(e);
+            }
+        } catch (IllegalStateException e) {
+            unregister(connection);
+            connection.closed = true;
+            connection.finished.set(true);
+        }
+    }
+
+    private void unregister(Connection connection) {
+        if (!connections.remove(connection.emitter, connection)) {
+            return;
+        }
+        for (Long accountId : connection.accounts) {
+            connectionsByAccount.computeIfPresent(accountId, (id, watching) -> {
+                watching.remove(connection);
+                return watching.isEmpty() ? null : watching;
+            });
+        }
+    }
+
+    private static ExecutorService senderPool(int senderThreads) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, senderThreads), runnable -> {
+            Thread thread = new Thread(runnable, "live-feed-sender-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static final class Connection {
+
+        private final SseEmitter emitter;
+
+        private final Set<Long> accounts;
+
+        private final BlockingQueue<SseEmitter.SseEventBuilder> queue;
+
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        private volatile boolean closed;
+
+        private Connection(SseEmitter emitter, Set<Long> accounts, int queueSize) {
+            this.emitter = emitter;
+            this.accounts = accounts;
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package io.github.msj.swiftbank.service;
+
+import io.github.msj.swiftbank.entity.OutboxEvent;
+
+import java.util.List;
+
+public interface OutboxEventSubscriber {
+
+    String getName();
+
+    default boolean isEnabled() {
+        return true;
+    }
+
+    default boolean isDurable() {
+        return true;
+    }
+
+    void onEvents(List<OutboxEvent> events);
+}
@@ -0,0 +1,25 @@
+package io.github.msj.swiftbank.service;
+
+import io.github.msj.swiftbank.entity.OutboxEvent;
+import io.github.msj.swiftbank.repository.OutboxEventRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+
+@Component
+public class OutboxPublisher {
+
+    private final OutboxEventRepository outboxEventRepository;
+
+    public OutboxPublisher(OutboxEventRepository outboxEventRepository) {
+        this.outboxEventRepository = outboxEventRepository;
+    }
+
+    public OutboxEvent publish(String eventType, Long accountId, Long counterpartyAccountId, BigDecimal amount) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Outbox events must be written in the transaction that moves the money");
+        }
+        return outboxEventRepository.save(new OutboxEvent(eventType, accountId, counterpartyAccountId, amount));
+    }
+}
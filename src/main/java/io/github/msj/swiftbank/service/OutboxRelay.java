@@ -0,0 +1,237 @@
+package io.github.msj.swiftbank.service;
+
+import io.github.msj.swiftbank.entity.OutboxCheckpoint;
+import io.github.msj.swiftbank.entity.OutboxEvent;
+import io.github.msj.swiftbank.repository.OutboxCheckpointRepository;
+import io.github.msj.swiftbank.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@Component
+public class OutboxRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private final OutboxEventRepository outboxEventRepository;
+
+    private final OutboxCheckpointRepository outboxCheckpointRepository;
+
+    private final List<OutboxEventSubscriber> subscribers;
+
+    private final AccountShards accountShards;
+
+    private final MeterRegistry meterRegistry;
+
+    private final boolean enabled;
+
+    private final long pollIntervalMillis;
+
+    private final int batchSize;
+
+    private final long retentionMillis;
+
+    private final Map<String, Long> transientPositions = new ConcurrentHashMap<>();
+
+    private volatile boolean running;
+
+    private Thread relayThread;
+
+    @Autowired
+    public OutboxRelay(OutboxEventRepository outboxEventRepository,
+                       OutboxCheckpointRepository outboxCheckpointRepository,
+                       ObjectProvider<OutboxEventSubscriber> subscribers, AccountShards accountShards,
+                       MeterRegistry meterRegistry,
+                       @Value("${swiftbank.outbox.relay.enabled:true}") boolean enabled,
+                       @Value("${swiftbank.outbox.relay.poll-interval-ms:200}") long pollIntervalMillis,
+                       @Value("${swiftbank.outbox.relay.batch-size:100}") int batchSize,
+                       @Value("${swiftbank.outbox.retention-ms:604800000}") long retentionMillis) {
+        this(outboxEventRepository, outboxCheckpointRepository,
+                subscribers.orderedStream().filter(OutboxEventSubscriber::isEnabled).collect(Collectors.toList()),
+                accountShards, meterRegistry, enabled, pollIntervalMillis, batchSize, retentionMillis);
+    }
+
+    OutboxRelay(OutboxEventRepository outboxEventRepository, OutboxCheckpointRepository outboxCheckpointRepository,
+                List<OutboxEventSubscriber> subscribers, AccountShards accountShards, MeterRegistry meterRegistry,
+                boolean enabled, long pollIntervalMillis, int batchSize, long retentionMillis) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.outboxCheckpointRepository = outboxCheckpointRepository;
+        this.subscribers = Collections.unmodifiableList(new ArrayList<>(subscribers));
+        this.accountShards = accountShards;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.pollIntervalMillis = Math.max(1, pollIntervalMillis);
+        this.batchSize = Math.max(1, batchSize);
+        this.retentionMillis = retentionMillis;
+    }
+
+    @PostConstruct
+    public synchronized void start() {
+        if (!enabled || subscribers.isEmpty() || running) {
+            return;
+        }
+        running = true;
+        relayThread = new Thread(this::relayLoop, "outbox-relay");
+        relayThread.setDaemon(true);
+        relayThread.start();
+    }
+
+    @PreDestroy
+    public synchronized void stop() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        relayThread.interrupt();
+        relayThread.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    @Scheduled(fixedDelayString = "${swiftbank.outbox.purge-interval-ms:3600000}",
+            initialDelayString = "${swiftbank.outbox.purge-interval-ms:3600000}")
+    public void purgeDeliveredEvents() {
+        LocalDateTime threshold = LocalDateTime.now().minusNanos(TimeUnit.MILLISECONDS.toNanos(retentionMillis));
+        for (int shard = 0; shard < accountShards.getShardCount(); shard++) {
+            Integer purged = accountShards.inTransactionOn(shard,
+                    () -> outboxEventRepository.deleteDelivered(lowestCheckpoint(), threshold));
+            if (purged != null && purged > 0) {
+                logger.info("Purged {} delivered outbox events from shard {}", purged, shard);
+            }
+        }
+    }
+
+    boolean relayOnce() {
+        boolean moreAvailable = false;
+        for (int shard = 0; shard < accountShards.getShardCount(); shard++) {
+            moreAvailable |= sequence(shard);
+            for (OutboxEventSubscriber subscriber : subscribers) {
+                moreAvailable |= relay(shard, subscriber);
+            }
+        }
+        return moreAvailable;
+    }
+
+    private void relayLoop() {
+        while (running) {
+            try {
+                if (!relayOnce()) {
+                    Thread.sleep(pollIntervalMillis);
+                }
+            } catch (InterruptedException e) {
+                if (running) {
+                    Thread.currentThread().interrupt();
+                }
+                break;
+            } catch (RuntimeException e) {
+                logger.error("Outbox relay pass failed", e);
+                try {
+                    Thread.sleep(pollIntervalMillis);
+                } catch (InterruptedException interrupted) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private boolean sequence(int shard) {
+        Integer sequenced = accountShards.inTransactionOn(shard, () -> {
+            Long nextSequenceNumber = outboxEventRepository.lockNextSequenceNumber();
+            List<OutboxEvent> events = outboxEventRepository.findUnsequenced(Limit.of(batchSize));
+            if (events.isEmpty()) {
+                return 0;
+            }
+            for (OutboxEvent event : events) {
+                event.setSequenceNumber(nextSequenceNumber++);
+            }
+            outboxEventRepository.updateNextSequenceNumber(nextSequenceNumber);
+            return events.size();
+        });
+        return sequenced != null && sequenced == batchSize;
+    }
+
+    private boolean relay(int shard, OutboxEventSubscriber subscriber) {
+        return accountShards.onShard(shard, () -> {
+            String positionKey = subscriber.getName() + "@" + shard;
+            OutboxCheckpoint checkpoint = subscriber.isDurable()
+                    ? outboxCheckpointRepository.findById(subscriber.getName()).orElse(null)
+                    : null;
+            long lastSequenceNumber;
+            if (subscriber.isDurable()) {
+                lastSequenceNumber = checkpoint != null ? checkpoint.getLastSequenceNumber() : 0L;
+            } else {
+                // a subscriber without a checkpoint only wants what happens after this instance started
+                lastSequenceNumber = transientPositions.computeIfAbsent(positionKey,
+                        key -> outboxEventRepository.findLastSequenceNumber());
+            }
+            List<OutboxEvent> events = outboxEventRepository.findAfter(lastSequenceNumber, Limit.of(batchSize));
+            if (events.isEmpty()) {
+                return false;
+            }
+
+            try {
+                subscriber.onEvents(events);
+            } catch (RuntimeException e) {
+                logger.warn("Outbox subscriber {} failed on shard {}, retrying after sequence number {}",
+                        subscriber.getName(), shard, lastSequenceNumber, e);
+                counter("swiftbank.outbox.failures", "Outbox batches rejected by a subscriber", subscriber)
+                        .increment();
+                return false;
+            }
+
+            Long deliveredUpTo = events.get(events.size() - 1).getSequenceNumber();
+            if (subscriber.isDurable()) {
+                accountShards.inTransactionOn(shard, () -> saveCheckpoint(checkpoint, subscriber.getName(), deliveredUpTo));
+            } else {
+                transientPositions.put(positionKey, deliveredUpTo);
+            }
+            counter("swiftbank.outbox.delivered", "Outbox events delivered to a subscriber", subscriber)
+                    .increment(events.size());
+            return events.size() == batchSize;
+        });
+    }
+
+    private OutboxCheckpoint saveCheckpoint(OutboxCheckpoint checkpoint, String subscriber, Long lastSequenceNumber) {
+        if (checkpoint == null) {
+            return outboxCheckpointRepository.save(new OutboxCheckpoint(subscriber, lastSequenceNumber));
+        }
+        checkpoint.setLastSequenceNumber(lastSequenceNumber);
+        return outboxCheckpointRepository.save(checkpoint);
+    }
+
+    private long lowestCheckpoint() {
+        long lowest = Long.MAX_VALUE;
+        for (OutboxEventSubscriber subscriber : subscribers) {
+            if (!subscriber.isDurable()) {
+                continue;
+            }
+            lowest = Math.min(lowest, outboxCheckpointRepository.findById(subscriber.getName())
+                    .map(OutboxCheckpoint::getLastSequenceNumber)
+                    .orElse(0L));
+        }
+        return lowest;
+    }
+
+    private Counter counter(String name, String description, OutboxEventSubscriber subscriber) {
+        return Counter.builder(name)
+                .description(description)
+                .tag("subscriber", subscriber.getName())
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,212 @@
+package io.github.msj.swiftbank.service;
+
+import io.github.msj.swiftbank.entity.ShardTransfer;
+import io.github.msj.swiftbank.exception.InsufficientFundsException;
+import io.github.msj.swiftbank.repository.AccountRepository;
+import io.github.msj.swiftbank.repository.ShardTransferRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class ShardTransferCoordinator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardTransferCoordinator.class);
+
+    static final String DEBIT_STEP = "DEBIT";
+
+    static final String CREDIT_STEP = "CREDIT";
+
+    static final String REFUND_STEP = "REFUND";
+
+    private static final String CONFLICT_MESSAGE = "Conflito detectado ao tentar realizar a transferência. Tente novamente.";
+
+    private static final List<ShardTransfer.Status> UNFINISHED =
+            Arrays.asList(ShardTransfer.Status.PENDING, ShardTransfer.Status.DEBITED);
+
+    private final ShardTransferRepository shardTransferRepository;
+
+    private final AccountRepository accountRepository;
+
+    private final AccountShards accountShards;
+
+    private final ConflictRetryExecutor conflictRetryExecutor;
+
+    private final LedgerRecorder ledgerRecorder;
+
+    private final MeterRegistry meterRegistry;
+
+    private final long stallMillis;
+
+    private final int recoveryBatchSize;
+
+    public ShardTransferCoordinator(ShardTransferRepository shardTransferRepository, AccountRepository accountRepository,
+                                    AccountShards accountShards, ConflictRetryExecutor conflictRetryExecutor,
+                                    LedgerRecorder ledgerRecorder, MeterRegistry meterRegistry,
+                                    @Value("${swiftbank.sharding.transfer-stall-ms:30000}") long stallMillis,
+                                    @Value("${swiftbank.sharding.recovery-batch-size:100}") int recoveryBatchSize) {
+        this.shardTransferRepository = shardTransferRepository;
+        this.accountRepository = accountRepository;
+        this.accountShards = accountShards;
+        this.conflictRetryExecutor = conflictRetryExecutor;
+        this.ledgerRecorder = ledgerRecorder;
+        this.meterRegistry = meterRegistry;
+        this.stallMillis = stallMillis;
+        this.recoveryBatchSize = recoveryBatchSize;
+    }
+
+    public boolean transfer(Long sourceAccountId, Long targetAccountId, BigDecimal amount) {
+        ShardTransfer transfer = accountShards.inTransactionOn(AccountShards.HOME_SHARD,
+                () -> shardTransferRepository.save(new ShardTransfer(sourceAccountId, targetAccountId, amount)));
+
+        try {
+            debit(transfer);
+        } catch (IllegalArgumentException e) {
+            finish(transfer, ShardTransfer.Status.FAILED);
+            throw e;
+        }
+
+        try {
+            updateStatus(transfer, ShardTransfer.Status.DEBITED);
+            completeOrCompensate(transfer);
+            return true;
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            // the debit is committed, so an error here would invite a retry that debits again;
+            // the recovery pass completes or compensates the transfer instead
+            logger.warn("Cross-shard transfer {} left for recovery after the debit: {}", transfer.getId(), e.getMessage());
+            return false;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${swiftbank.sharding.recovery-interval-ms:60000}",
+            initialDelayString = "${swiftbank.sharding.recovery-interval-ms:60000}")
+    public void recoverStalledTransfers() {
+        if (!accountShards.isSharded()) {
+            return;
+        }
+
+        LocalDateTime threshold = LocalDateTime.now().minusNanos(TimeUnit.MILLISECONDS.toNanos(stallMillis));
+        List<ShardTransfer> stalled = accountShards.onShard(AccountShards.HOME_SHARD,
+                () -> shardTransferRepository.findStalled(UNFINISHED, threshold, PageRequest.of(0, recoveryBatchSize)));
+
+        for (ShardTransfer transfer : stalled) {
+            try {
+                resume(transfer);
+            } catch (RuntimeException e) {
+                logger.warn("Could not resume cross-shard transfer {}: {}", transfer.getId(), e.getMessage());
+            }
+        }
+    }
+
+    void resume(ShardTransfer transfer) {
+        if (transfer.getStatus() == ShardTransfer.Status.PENDING) {
+            if (!debitWasApplied(transfer)) {
+                finish(transfer, ShardTransfer.Status.FAILED);
+                return;
+            }
+            updateStatus(transfer, ShardTransfer.Status.DEBITED);
+        }
+        completeOrCompensate(transfer);
+    }
+
+    private void completeOrCompensate(ShardTransfer transfer) {
+        try {
+            credit(transfer);
+        } catch (IllegalArgumentException e) {
+            refund(transfer);
+            finish(transfer, ShardTransfer.Status.COMPENSATED);
+            throw e;
+        }
+        finish(transfer, ShardTransfer.Status.COMPLETED);
+    }
+
+    private void debit(ShardTransfer transfer) {
+        Long accountId = transfer.getSourceAccountId();
+        accountShards.runOnAccount(accountId, () -> conflictRetryExecutor.run("transfer", CONFLICT_MESSAGE, () -> {
+            shardTransferRepository.insertStep(transfer.getId(), DEBIT_STEP, true);
+            Long ownerId = accountRepository.findOwnerIdById(accountId)
+                    .orElseThrow(() -> new IllegalArgumentException("Conta de origem não encontrada."));
+            if (accountRepository.debitBalanceIfSufficient(accountId, transfer.getAmount()) == 0) {
+                throw new InsufficientFundsException("Saldo insuficiente na conta de origem.");
+            }
+            ledgerRecorder.record(accountId, ownerId, transfer.getTargetAccountId(), transfer.getAmount().negate(),
+                    "TRANSFER_OUT");
+        }));
+    }
+
+    private void credit(ShardTransfer transfer) {
+        applyOnce(transfer, transfer.getTargetAccountId(), transfer.getSourceAccountId(), CREDIT_STEP,
+                transfer.getAmount(), "TRANSFER_IN",
+                "Conta de destino não encontrada.");
+    }
+
+    private void refund(ShardTransfer transfer) {
+        applyOnce(transfer, transfer.getSourceAccountId(), transfer.getTargetAccountId(), REFUND_STEP,
+                transfer.getAmount(), "TRANSFER_REVERSAL",
+                "Conta de origem não encontrada.");
+    }
+
+    private void applyOnce(ShardTransfer transfer, Long accountId, Long counterpartyAccountId, String step,
+                           BigDecimal amount, String transactionType, String notFoundMessage) {
+        try {
+            accountShards.runOnAccount(accountId, () -> conflictRetryExecutor.run("transfer", CONFLICT_MESSAGE, () -> {
+                shardTransferRepository.insertStep(transfer.getId(), step, true);
+                if (accountRepository.creditBalance(accountId, amount) == 0) {
+                    throw new IllegalArgumentException(notFoundMessage);
+                }
+                Long ownerId = accountRepository.findOwnerIdById(accountId)
+                        .orElseThrow(() -> new IllegalArgumentException(notFoundMessage));
+                ledgerRecorder.record(accountId, ownerId, counterpartyAccountId, amount, transactionType);
+            }));
+        } catch (DataIntegrityViolationException e) {
+            if (!stepApplied(accountId, transfer.getId(), step)) {
+                throw e;
+            }
+        }
+    }
+
+    private boolean debitWasApplied(ShardTransfer transfer) {
+        Long accountId = transfer.getSourceAccountId();
+        try {
+            accountShards.inTransactionOn(accountShards.shardOf(accountId),
+                    () -> shardTransferRepository.insertStep(transfer.getId(), DEBIT_STEP, false));
+            return false;
+        } catch (DataIntegrityViolationException e) {
+            return stepApplied(accountId, transfer.getId(), DEBIT_STEP);
+        }
+    }
+
+    private boolean stepApplied(Long accountId, Long transferId, String step) {
+        return accountShards.onAccount(accountId, () -> shardTransferRepository.findStepApplied(transferId, step))
+                .orElse(false);
+    }
+
+    private void finish(ShardTransfer transfer, ShardTransfer.Status status) {
+        updateStatus(transfer, status);
+        Counter.builder("swiftbank.shard.transfers")
+                .description("Cross-shard transfers by final status")
+                .tag("status", status.name().toLowerCase(Locale.ROOT))
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private void updateStatus(ShardTransfer transfer, ShardTransfer.Status status) {
+        accountShards.inTransactionOn(AccountShards.HOME_SHARD,
+                () -> shardTransferRepository.updateStatus(transfer.getId(), status, LocalDateTime.now()));
+    }
+}
@@ -0,0 +1,76 @@
+package io.github.msj.swiftbank.service;
+
+import io.github.msj.swiftbank.dto.TransactionView;
+
+import java.io.IOException;
+import java.io.Writer;
+
+public enum TransactionExportFormat {
+
+    CSV("text/csv", "csv") {
+        @Override
+        void writeHeader(Writer writer) throws IOException {
+            writer.write("id,account_id,transaction_type,amount,created_at\n");
+        }
+
+        @Override
+        void writeRow(Writer writer, Long accountId, TransactionView transaction) throws IOException {
+            writer.write(String.valueOf(transaction.getId()));
+            writer.write(',');
+            writer.write(String.valueOf(accountId));
+            writer.write(',');
+            writer.write(transaction.getTransactionType());
+            writer.write(',');
+            writer.write(transaction.getAmount().toPlainString());
+            writer.write(',');
+            writer.write(transaction.getCreatedAt() != null ? transaction.getCreatedAt().toString() : "");
+            writer.write('\n');
+        }
+    },
+
+    NDJSON("application/x-ndjson", "ndjson") {
+        @Override
+        void writeHeader(Writer writer) {
+        }
+
+        @Override
+        void writeRow(Writer writer, Long accountId, TransactionView transaction) throws IOException {
+            writer.write("{\"id\":");
+            writer.write(String.valueOf(transaction.getId()));
+            writer.write(",\"accountId\":");
+            writer.write(String.valueOf(accountId));
+            writer.write(",\"transactionType\":\"");
+            writer.write(escapeJson(transaction.getTransactionType()));
+            writer.write("\",\"amount\":");
+            writer.write(transaction.getAmount().toPlainString());
+            writer.write(",\"createdAt\":");
+            writer.write(transaction.getCreatedAt() != null ? "\"" + transaction.getCreatedAt() + "\"" : "null");
+            writer.write("}\n");
+        }
+    };
+
+    private final String contentType;
+
+    private final String fileExtension;
+
+    TransactionExportFormat(String contentType, String fileExtension) {
+        this.contentType = contentType;
+        this.fileExtension = fileExtension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String fileName(Long accountId) {
+        return "extrato-conta-" + accountId + "." + fileExtension;
+    }
+
+    abstract void writeHeader(Writer writer) throws IOException;
+
+    abstract void writeRow(Writer writer, Long accountId, TransactionView transaction) throws IOException;
+
+    private static String escapeJson(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -1,25 +1,85 @@
 package io.github.msj.swiftbank.service;
 
+import io.github.msj.swiftbank.dto.TransactionCursor;
+import io.github.msj.swiftbank.dto.TransactionPage;
+import io.github.msj.swiftbank.dto.TransactionView;
 import io.github.msj.swiftbank.entity.Transaction;
 import io.github.msj.swiftbank.repository.TransactionRepository;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Service
 public class TransactionService {
 
+    static final int PAGE_SIZE = 50;
+
     private final TransactionRepository transactionRepository;
 
-    public TransactionService(TransactionRepository transactionRepository) {
+    private final AccountShards accountShards;
+
+    public TransactionService(TransactionRepository transactionRepository, AccountShards accountShards) {
         this.transactionRepository = transactionRepository;
+        this.accountShards = accountShards;
     }
 
     public Transaction save(Transaction transaction) {
         return transactionRepository.save(transaction);
     }
 
-    public List<Transaction> getTransactionsByAccount(Long accountId) {
-        return transactionRepository.findByAccountId(accountId);
+    public List<Transaction> saveAll(List<Transaction> transactions) {
+        return transactionRepository.saveAll(transactions);
+    }
+
+    @Transactional(readOnly = true)
+    public TransactionPage getTransactionPage(Long accountId, String cursor, TransactionPage.Direction direction) {
+        Limit limit = Limit.of(PAGE_SIZE + 1);
+
+        if (cursor == null || cursor.isEmpty()) {
+            List<TransactionView> rows = accountShards.onAccount(accountId,
+                    () -> transactionRepository.findLatestByAccountId(accountId, limit));
+            return new TransactionPage(trim(rows), rows.size() > PAGE_SIZE, false);
+        }
+
+        TransactionCursor position = TransactionCursor.decode(cursor);
+
+        if (direction == TransactionPage.Direction.PREVIOUS) {
+            List<TransactionView> rows = accountShards.onAccount(accountId, () -> transactionRepository.findNewerByAccountId(
+                    accountId, position.getCreatedAt(), position.getId(), limit));
+            List<TransactionView> page = new ArrayList<>(trim(rows));
+            Collections.reverse(page);
+            return new TransactionPage(page, true, rows.size() > PAGE_SIZE);
+        }
+
+        List<TransactionView> rows = accountShards.onAccount(accountId, () -> transactionRepository.findOlderByAccountId(
+                accountId, position.getCreatedAt(), position.getId(), limit));
+        return new TransactionPage(trim(rows), rows.size() > PAGE_SIZE, true);
+    }
+
+    @Transactional(readOnly = true)
+    public void exportTransactions(Long accountId, TransactionExportFormat format, Writer writer) throws IOException {
+        format.writeHeader(writer);
+
+        try (Stream<TransactionView> transactions = accountShards.onAccount(accountId,
+                () -> transactionRepository.streamByAccountId(accountId))) {
+            Iterator<TransactionView> iterator = transactions.iterator();
+            while (iterator.hasNext()) {
+                format.writeRow(writer, accountId, iterator.next());
+            }
+        }
+
+        writer.flush();
+    }
+
+    private List<TransactionView> trim(List<TransactionView> rows) {
+        return rows.size() > PAGE_SIZE ? rows.subList(0, PAGE_SIZE) : rows;
     }
 }
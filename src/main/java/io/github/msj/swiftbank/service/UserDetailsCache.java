@@ -0,0 +1,41 @@
+package io.github.msj.swiftbank.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.github.msj.swiftbank.dto.SwiftBankUserDetails;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+@Component
+public class UserDetailsCache {
+
+    private final Cache<String, SwiftBankUserDetails> cache;
+
+    public UserDetailsCache(MeterRegistry meterRegistry,
+                            @Value("${swiftbank.user-details-cache.max-size:10000}") long maxSize,
+                            @Value("${swiftbank.user-details-cache.ttl-ms:300000}") long ttlMillis) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "userDetails");
+    }
+
+    public SwiftBankUserDetails get(String username, Function<String, SwiftBankUserDetails> loader) {
+        return cache.get(username, loader).copy();
+    }
+
+    public void evict(String username) {
+        cache.invalidate(username);
+    }
+
+    public void evictAll() {
+        cache.invalidateAll();
+    }
+}
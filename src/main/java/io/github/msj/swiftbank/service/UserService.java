@@ -3,6 +3,8 @@ package io.github.msj.swiftbank.service;
 import io.github.msj.swiftbank.entity.User;
 import io.github.msj.swiftbank.repository.UserRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
 
@@ -11,8 +13,11 @@ public class UserService {
 
     private final UserRepository userRepository;
 
-    public UserService(UserRepository userRepository) {
+    private final UserDetailsCache userDetailsCache;
+
+    public UserService(UserRepository userRepository, UserDetailsCache userDetailsCache) {
         this.userRepository = userRepository;
+        this.userDetailsCache = userDetailsCache;
     }
 
     public List<User> findAll() {
@@ -27,4 +32,16 @@ public class UserService {
         return userRepository.findByUsername(username)
                 .orElseThrow(() -> new IllegalArgumentException("Usuário nao encontrado."));
     }
+
+    public void evictUserDetails(String username) {
+        userDetailsCache.evict(username);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    userDetailsCache.evict(username);
+                }
+            });
+        }
+    }
 }
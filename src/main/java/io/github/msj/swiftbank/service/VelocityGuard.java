@@ -0,0 +1,341 @@
+package io.github.msj.swiftbank.service;
+
+import io.github.msj.swiftbank.exception.VelocityLimitExceededException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+
+@Component
+public class VelocityGuard {
+
+    private static final Logger logger = LoggerFactory.getLogger(VelocityGuard.class);
+
+    static final String RULES_PREFIX = "swiftbank.velocity.rules";
+
+    private static final String BLOCKED_MESSAGE = "Operação bloqueada por excesso de movimentações na conta. Tente novamente mais tarde.";
+
+    private final MeterRegistry meterRegistry;
+
+    private final int bucketsPerWindow;
+
+    private final LongSupplier clock;
+
+    private final Path rulesFile;
+
+    private volatile Rules rules;
+
+    private long rulesFileModifiedAt;
+
+    @Autowired
+    public VelocityGuard(Environment environment, MeterRegistry meterRegistry,
+                         @Value("${swiftbank.velocity.enabled:true}") boolean enabled,
+                         @Value("${swiftbank.velocity.buckets:60}") int bucketsPerWindow,
+                         @Value("${swiftbank.velocity.rules-file:}") String rulesFile) {
+        this(enabled ? bindRules(Binder.get(environment)) : Collections.<String, VelocityRule>emptyMap(),
+                bucketsPerWindow, System::currentTimeMillis, meterRegistry,
+                enabled && !rulesFile.trim().isEmpty() ? Paths.get(rulesFile.trim()) : null);
+        reloadRules();
+    }
+
+    VelocityGuard(Map<String, VelocityRule> rules, int bucketsPerWindow, LongSupplier clock,
+                  MeterRegistry meterRegistry, Path rulesFile) {
+        this.meterRegistry = meterRegistry;
+        this.bucketsPerWindow = Math.max(1, bucketsPerWindow);
+        this.clock = clock;
+        this.rulesFile = rulesFile;
+        this.rules = compile(rules, Collections.<Duration, SlidingWindow>emptyMap());
+    }
+
+    public void withinLimits(Long accountId, BigDecimal amount, Runnable outflow) {
+        Rules current = rules;
+        if (current.rules.isEmpty()) {
+            outflow.run();
+            return;
+        }
+
+        long now = clock.getAsLong();
+        for (CompiledRule rule : current.rules) {
+            if (rule.isExceededBy(accountId, amount, now)) {
+                Counter.builder("swiftbank.velocity.blocked")
+                        .description("Outflows rejected by velocity rules")
+                        .tag("rule", rule.name)
+                        .register(meterRegistry)
+                        .increment();
+                throw new VelocityLimitExceededException(BLOCKED_MESSAGE);
+            }
+        }
+
+        List<Recorded> recorded = new ArrayList<>(current.windows.size());
+        for (SlidingWindow window : current.windows.values()) {
+            recorded.add(window.record(accountId, amount, now));
+        }
+        try {
+            outflow.run();
+        } catch (RuntimeException e) {
+            for (Recorded entry : recorded) {
+                entry.release();
+            }
+            throw e;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${swiftbank.velocity.reload-interval-ms:10000}",
+            initialDelayString = "${swiftbank.velocity.reload-interval-ms:10000}")
+    public synchronized void reloadRules() {
+        if (rulesFile == null || !Files.isRegularFile(rulesFile)) {
+            return;
+        }
+
+        try {
+            long modifiedAt = Files.getLastModifiedTime(rulesFile).toMillis();
+            if (modifiedAt == rulesFileModifiedAt) {
+                return;
+            }
+            Properties properties = new Properties();
+            try (InputStream input = Files.newInputStream(rulesFile)) {
+                properties.load(input);
+            }
+            replaceRules(bindRules(new Binder(new MapConfigurationPropertySource(properties))));
+            rulesFileModifiedAt = modifiedAt;
+            logger.info("Loaded {} velocity rules from {}", rules.rules.size(), rulesFile);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Could not reload velocity rules from {}, keeping the current rules", rulesFile, e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${swiftbank.velocity.sweep-interval-ms:300000}",
+            initialDelayString = "${swiftbank.velocity.sweep-interval-ms:300000}")
+    public void evictIdleAccounts() {
+        long now = clock.getAsLong();
+        for (SlidingWindow window : rules.windows.values()) {
+            window.evictIdle(now);
+        }
+    }
+
+    void replaceRules(Map<String, VelocityRule> definitions) {
+        rules = compile(definitions, rules.windows);
+    }
+
+    private Rules compile(Map<String, VelocityRule> definitions, Map<Duration, SlidingWindow> previousWindows) {
+        Map<Duration, SlidingWindow> windows = new LinkedHashMap<>();
+        List<CompiledRule> compiled = new ArrayList<>();
+        for (Map.Entry<String, VelocityRule> definition : definitions.entrySet()) {
+            VelocityRule rule = definition.getValue();
+            if (rule.getWindow() == null || rule.getWindow().isNegative() || rule.getWindow().isZero()
+                    || (rule.getMaxCount() == null && rule.getMaxAmount() == null)) {
+                logger.warn("Ignoring velocity rule {}: it needs a positive window and max-count or max-amount",
+                        definition.getKey());
+                continue;
+            }
+            SlidingWindow window = windows.get(rule.getWindow());
+            if (window == null) {
+                window = previousWindows.containsKey(rule.getWindow())
+                        ? previousWindows.get(rule.getWindow())
+                        : new SlidingWindow(rule.getWindow(), bucketsPerWindow);
+                windows.put(rule.getWindow(), window);
+            }
+            compiled.add(new CompiledRule(definition.getKey(), window, rule.getMaxCount(), rule.getMaxAmount()));
+        }
+        return new Rules(compiled, windows);
+    }
+
+    private static Map<String, VelocityRule> bindRules(Binder binder) {
+        return binder.bind(RULES_PREFIX, Bindable.mapOf(String.class, VelocityRule.class))
+                .orElseGet(HashMap::new);
+    }
+
+    private static final class Rules {
+
+        private final List<CompiledRule> rules;
+
+        private final Map<Duration, SlidingWindow> windows;
+
+        private Rules(List<CompiledRule> rules, Map<Duration, SlidingWindow> windows) {
+            this.rules = Collections.unmodifiableList(rules);
+            this.windows = Collections.unmodifiableMap(windows);
+        }
+    }
+
+    private static final class CompiledRule {
+
+        private final String name;
+
+        private final SlidingWindow window;
+
+        private final Integer maxCount;
+
+        private final BigDecimal maxAmount;
+
+        private CompiledRule(String name, SlidingWindow window, Integer maxCount, BigDecimal maxAmount) {
+            this.name = name;
+            this.window = window;
+            this.maxCount = maxCount;
+            this.maxAmount = maxAmount;
+        }
+
+        private boolean isExceededBy(Long accountId, BigDecimal amount, long now) {
+            Bucket totals = window.totals(accountId, now);
+            return (maxCount != null && totals.count + 1 > maxCount)
+                    || (maxAmount != null && totals.amount.add(amount).compareTo(maxAmount) > 0);
+        }
+    }
+
+    private static final class SlidingWindow {
+
+        private final long bucketMillis;
+
+        private final long lengthMillis;
+
+        private final int buckets;
+
+        private final ConcurrentHashMap<Long, Ring> rings = new ConcurrentHashMap<>();
+
+        private SlidingWindow(Duration length, int buckets) {
+            this.lengthMillis = length.toMillis();
+            this.bucketMillis = Math.max(1, lengthMillis / buckets);
+            this.buckets = (int) Math.min(buckets, lengthMillis);
+        }
+
+        private Bucket totals(Long accountId, long now) {
+            Ring ring = rings.get(accountId);
+            return ring != null ? ring.sum(now / bucketMillis) : Bucket.EMPTY;
+        }
+
+        private Recorded record(Long accountId, BigDecimal amount, long now) {
+            // updates and eviction run under the map's lock for the account, so a sweep can never drop a ring
+            // between it being looked up and the outflow landing in it
+            long epoch = now / bucketMillis;
+            rings.compute(accountId, (id, ring) -> {
+                Ring target = ring != null ? ring : new Ring(buckets);
+                target.lastActivity = now;
+                target.add(epoch, 1, amount);
+                return target;
+            });
+            return new Recorded(this, accountId, epoch, amount);
+        }
+
+        private void release(Long accountId, long epoch, BigDecimal amount) {
+            rings.computeIfPresent(accountId, (id, ring) -> {
+                ring.add(epoch, -1, amount.negate());
+                return ring;
+            });
+        }
+
+        private void evictIdle(long now) {
+            for (Long accountId : rings.keySet()) {
+                rings.computeIfPresent(accountId, (id, ring) -> now - ring.lastActivity > lengthMillis ? null : ring);
+            }
+        }
+    }
+
+    private static final class Ring {
+
+        private final AtomicReferenceArray<Bucket> buckets;
+
+        private long lastActivity;
+
+        private Ring(int size) {
+            this.buckets = new AtomicReferenceArray<>(size);
+        }
+
+        private Bucket sum(long epoch) {
+            int count = 0;
+            BigDecimal amount = BigDecimal.ZERO;
+            for (int i = 0; i < buckets.length(); i++) {
+                Bucket bucket = buckets.get(i);
+                if (bucket != null && bucket.epoch > epoch - buckets.length() && bucket.epoch <= epoch) {
+                    count += bucket.count;
+                    amount = amount.add(bucket.amount);
+                }
+            }
+            return new Bucket(epoch, count, amount);
+        }
+
+        private void add(long epoch, int count, BigDecimal amount) {
+            int index = (int) Math.floorMod(epoch, (long) buckets.length());
+            while (true) {
+                Bucket current = buckets.get(index);
+                Bucket next;
+                if (current != null && current.epoch == epoch) {
+                    next = new Bucket(epoch, current.count + count, current.amount.add(amount));
+                } else if (current == null || current.epoch < epoch) {
+                    if (count < 0) {
+                        return;
+                    }
+                    next = new Bucket(epoch, count, amount);
+                } else {
+                    return;
+                }
+                if (buckets.compareAndSet(index, current, next)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static final class Bucket {
+
+        private static final Bucket EMPTY = new Bucket(0, 0, BigDecimal.ZERO);
+
+        private final long epoch;
+
+        private final int count;
+
+        private final BigDecimal amount;
+
+        private Bucket(long epoch, int count, BigDecimal amount) {
+            this.epoch = epoch;
+            this.count = count;
+            this.amount = amount;
+        }
+    }
+
+    private static final class Recorded {
+
+        private final SlidingWindow window;
+
+        private final Long accountId;
+
+        private final long epoch;
+
+        private final BigDecimal amount;
+
+        private Recorded(SlidingWindow window, Long accountId, long epoch, BigDecimal amount) {
+            this.window = window;
+            this.accountId = accountId;
+            this.epoch = epoch;
+            this.amount = amount;
+        }
+
+        private void release() {
+            window.release(accountId, epoch, amount);
+        }
+    }
+}
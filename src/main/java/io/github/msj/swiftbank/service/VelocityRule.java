@@ -0,0 +1,46 @@
+package io.github.msj.swiftbank.service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+public class VelocityRule {
+
+    private Duration window;
+
+    private Integer maxCount;
+
+    private BigDecimal maxAmount;
+
+    public VelocityRule() {
+    }
+
+    public VelocityRule(Duration window, Integer maxCount, BigDecimal maxAmount) {
+        this.window = window;
+        this.maxCount = maxCount;
+        this.maxAmount = maxAmount;
+    }
+
+    public Duration getWindow() {
+        return window;
+    }
+
+    public void setWindow(Duration window) {
+        this.window = window;
+    }
+
+    public Integer getMaxCount() {
+        return maxCount;
+    }
+
+    public void setMaxCount(Integer maxCount) {
+        this.maxCount = maxCount;
+    }
+
+    public BigDecimal getMaxAmount() {
+        return maxAmount;
+    }
+
+    public void setMaxAmount(BigDecimal maxAmount) {
+        this.maxAmount = maxAmount;
+    }
+}
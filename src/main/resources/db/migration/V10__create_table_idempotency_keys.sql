@@ -0,0 +1,12 @@
+CREATE TABLE idempotency_keys
+(
+    idempotency_key VARCHAR(191) NOT NULL,
+    operation       VARCHAR(20)  NOT NULL,
+    status          VARCHAR(20)  NOT NULL,
+    result_message  VARCHAR(255) NULL,
+    request_hash    VARCHAR(64)  NULL,
+    created_at      datetime     NOT NULL,
+    CONSTRAINT pk_idempotency_keys PRIMARY KEY (idempotency_key)
+);
+
+CREATE INDEX idx_idempotency_keys_created_at ON idempotency_keys (created_at);
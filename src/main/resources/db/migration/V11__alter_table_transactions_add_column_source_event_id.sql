@@ -0,0 +1,4 @@
+ALTER TABLE transactions
+    ADD COLUMN source_event_id BIGINT NULL;
+
+CREATE UNIQUE INDEX idx_transactions_source_event_id ON transactions (source_event_id);
@@ -0,0 +1,2 @@
+CREATE INDEX idx_accounts_owner_name_id
+    ON accounts (owner_name, id);
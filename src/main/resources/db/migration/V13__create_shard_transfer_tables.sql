@@ -0,0 +1,22 @@
+CREATE TABLE shard_transfers
+(
+    id                BIGINT AUTO_INCREMENT NOT NULL,
+    source_account_id BIGINT                NOT NULL,
+    target_account_id BIGINT                NOT NULL,
+    amount            DECIMAL               NOT NULL,
+    status            VARCHAR(20)           NOT NULL,
+    created_at        datetime              NOT NULL,
+    updated_at        datetime              NOT NULL,
+    CONSTRAINT pk_shard_transfers PRIMARY KEY (id)
+);
+
+CREATE INDEX idx_shard_transfers_status_updated_at ON shard_transfers (status, updated_at);
+
+CREATE TABLE shard_transfer_steps
+(
+    transfer_id BIGINT      NOT NULL,
+    step        VARCHAR(20) NOT NULL,
+    applied     BOOLEAN     NOT NULL,
+    created_at  datetime    NOT NULL,
+    CONSTRAINT pk_shard_transfer_steps PRIMARY KEY (transfer_id, step)
+);
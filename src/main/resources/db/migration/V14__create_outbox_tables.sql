@@ -0,0 +1,24 @@
+CREATE TABLE outbox_events
+(
+    id                      BIGINT AUTO_INCREMENT NOT NULL,
+    sequence_number         BIGINT                NULL,
+    event_type              VARCHAR(40)           NOT NULL,
+    account_id              BIGINT                NOT NULL,
+    counterparty_account_id BIGINT                NULL,
+    amount                  DECIMAL               NOT NULL,
+    created_at              datetime              NOT NULL,
+    CONSTRAINT pk_outbox_events PRIMARY KEY (id)
+);
+
+CREATE UNIQUE INDEX idx_outbox_events_sequence_number ON outbox_events (sequence_number);
+
+CREATE TABLE outbox_checkpoints
+(
+    subscriber           VARCHAR(100) NOT NULL,
+    last_sequence_number BIGINT       NOT NULL,
+    updated_at           datetime     NOT NULL,
+    CONSTRAINT pk_outbox_checkpoints PRIMARY KEY (subscriber)
+);
+
+INSERT INTO id_sequences (sequence_name, next_val)
+VALUES ('outbox_events', 1);
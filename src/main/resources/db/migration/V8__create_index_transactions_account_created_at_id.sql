@@ -0,0 +1,2 @@
+CREATE INDEX idx_transactions_account_created_at_id
+    ON transactions (account_id, created_at, id);
@@ -0,0 +1,16 @@
+CREATE TABLE id_sequences
+(
+    sequence_name VARCHAR(64) NOT NULL,
+    next_val      BIGINT      NOT NULL,
+    CONSTRAINT pk_id_sequences PRIMARY KEY (sequence_name)
+);
+
+-- Hibernate's pooled optimizer hands out the block (next_val + 1 - 50, next_val + 1],
+-- so seeding with MAX(id) + 49 makes the first generated id MAX(id) + 1.
+INSERT INTO id_sequences (sequence_name, next_val)
+SELECT 'accounts', COALESCE(MAX(id), 0) + 49
+FROM accounts;
+
+INSERT INTO id_sequences (sequence_name, next_val)
+SELECT 'transactions', COALESCE(MAX(id), 0) + 49
+FROM transactions;
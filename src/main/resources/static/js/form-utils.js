@@ -27,4 +27,139 @@ function updateAccountOwner() {
     } else {
         console.error('Campo de texto com id "ownerName" não encontrado.');
     }
-}
\ No newline at end of file
+}
+
+function initTargetAccountTypeahead() {
+    const searchInput = document.getElementById('targetAccountSearch');
+    const hiddenInput = document.getElementById('targetAccountId');
+    const resultList = document.getElementById('targetAccountResults');
+    if (!searchInput || !hiddenInput || !resultList) {
+        return;
+    }
+
+    const searchUrl = searchInput.getAttribute('data-search-url');
+    let debounceTimer = null;
+    let pendingRequest = null;
+
+    function clearResults() {
+        resultList.innerHTML = '';
+    }
+
+    function selectAccount(account) {
+        hiddenInput.value = account.id;
+        searchInput.value = 'Conta ' + account.id + ' - Titular: ' + (account.ownerName || '');
+        searchInput.setCustomValidity('');
+        clearResults();
+    }
+
+    function renderResults(accounts) {
+        clearResults();
+        if (accounts.length === 0) {
+            const empty = document.createElement('div');
+            empty.className = 'list-group-item text-muted';
+            empty.textContent = 'Nenhuma conta encontrada.';
+            resultList.appendChild(empty);
+            return;
+        }
+        accounts.forEach(function (account) {
+            const item = document.createElement('button');
+            item.type = 'button';
+            item.className = 'list-group-item list-group-item-action';
+            item.textContent = 'Conta ' + account.id + ' - Titular: ' + (account.ownerName || '');
+            item.addEventListener('click', function () {
+                selectAccount(account);
+            });
+            resultList.appendChild(item);
+        });
+    }
+
+    function search(term) {
+        if (pendingRequest) {
+            pendingRequest.abort();
+        }
+        pendingRequest = new AbortController();
+        fetch(searchUrl + '?q=' + encodeURIComponent(term), {
+            headers: {'Accept': 'application/json'},
+            signal: pendingRequest.signal
+        })
+            .then(function (response) {
+                return response.ok ? response.json() : [];
+            })
+            .then(renderResults)
+            .catch(function (error) {
+                if (error.name !== 'AbortError') {
+                    console.error('Erro ao buscar contas de destino:', error);
+                }
+            });
+    }
+
+    searchInput.addEventListener('input', function () {
+        hiddenInput.value = '';
+        searchInput.setCustomValidity('Selecione uma conta de destino da lista.');
+        clearTimeout(debounceTimer);
+
+        const term = searchInput.value.trim();
+        if (term.length === 0) {
+            clearResults();
+            return;
+        }
+        debounceTimer = setTimeout(function () {
+            search(term);
+        }, 250);
+    });
+
+    searchInput.form.addEventListener('submit', function (event) {
+        if (!hiddenInput.value) {
+            event.preventDefault();
+            searchInput.reportValidity();
+        }
+    });
+}
+
+document.addEventListener('DOMContentLoaded', initTargetAccountTypeahead);
+
+function initLiveFeed() {
+    const balance = document.querySelector('[data-live-balance]');
+    const transactions = document.querySelector('[data-live-account]');
+    const source = balance || transactions;
+    if (!source || !window.EventSource) {
+        return;
+    }
+    if (transactions && transactions.getAttribute('data-live-enabled') !== 'true') {
+        return;
+    }
+
+    const feed = new EventSource(source.getAttribute('data-feed-url'));
+    feed.addEventListener('transaction', function (message) {
+        const event = JSON.parse(message.data);
+
+        const account = document.querySelector('[data-account-balance="' + event.accountId + '"]');
+        if (balance && account && event.balance != null) {
+            account.setAttribute('data-balance', event.balance);
+            let total = 0;
+            document.querySelectorAll('[data-account-balance]').forEach(function (element) {
+                total += parseFloat(element.getAttribute('data-balance'));
+            });
+            balance.setAttribute('data-balance', total);
+            balance.textContent = total.toLocaleString('pt-BR', {minimumFractionDigits: 2, maximumFractionDigits: 2});
+        }
+
+        if (transactions && String(event.accountId) === transactions.getAttribute('data-live-account')) {
+            const row = document.createElement('tr');
+            const createdAt = new Date(event.createdAt);
+            [
+                '-',
+                event.transactionType,
+                event.amount,
+                createdAt.toLocaleDateString('pt-BR') + ' ' + createdAt.toLocaleTimeString('pt-BR', {hour: '2-digit', minute: '2-digit'})
+            ].forEach(function (value) {
+                const cell = document.createElement('td');
+                cell.textContent = value;
+                row.appendChild(cell);
+            });
+            transactions.insertBefore(row, transactions.firstChild);
+        }
+    });
+}
+
+document.addEventListener('DOMContentLoaded', initLiveFeed);
@@ -0,0 +1,157 @@
+package io.github.msj.swiftbank.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BoundedPasswordEncoderTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private BoundedPasswordEncoder passwordEncoder;
+
+    @AfterEach
+    void tearDown() {
+        passwordEncoder.destroy();
+    }
+
+    @Test
+    void shouldHashAndVerifyOnDedicatedExecutor() {
+        passwordEncoder = new BoundedPasswordEncoder(4, 1, 4, 5000, meterRegistry);
+
+        String encoded = passwordEncoder.encode("senha123");
+
+        assertTrue(encoded.startsWith("$2a$04$"));
+        assertTrue(passwordEncoder.matches("senha123", encoded));
+        assertFalse(passwordEncoder.matches("outra", encoded));
+    }
+
+    @Test
+    void shouldRequestRehashWhenCostFactorDiffers() {
+        passwordEncoder = new BoundedPasswordEncoder(12, 1, 4, 5000, meterRegistry);
+
+        assertTrue(passwordEncoder.upgradeEncoding(new BCryptPasswordEncoder(10).encode("senha123")));
+        assertTrue(passwordEncoder.upgradeEncoding("$2a$14$abcdefghijklmnopqrstuu"));
+        assertFalse(passwordEncoder.upgradeEncoding("$2a$12$abcdefghijklmnopqrstuu"));
+        assertFalse(passwordEncoder.upgradeEncoding(null));
+    }
+
+    @Test
+    void shouldRejectFastWhenExecutorIsSaturated() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder blockingDelegate = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                return rawPassword.toString();
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return true;
+            }
+        };
+        passwordEncoder = new BoundedPasswordEncoder(blockingDelegate, 10, 1, 1, 5000, meterRegistry);
+
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            callers.submit(() -> passwordEncoder.matches("a", "a"));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            callers.submit(() -> passwordEncoder.matches("b", "b"));
+            waitForQueuedTask();
+
+            assertThrows(AuthenticationServiceException.class, () -> passwordEncoder.matches("c", "c"));
+            assertEquals(1.0, meterRegistry.get("swiftbank.password.hashing.rejected").counter().count());
+        } finally {
+            release.countDown();
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldFreeTheQueueSlotOfAHashThatTimedOut() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder blockingDelegate = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                return rawPassword.toString();
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return true;
+            }
+        };
+        passwordEncoder = new BoundedPasswordEncoder(blockingDelegate, 10, 1, 4, 200, meterRegistry);
+
+        ExecutorService callers = Executors.newSingleThreadExecutor();
+        try {
+            callers.submit(() -> passwordEncoder.matches("a", "a"));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            assertThrows(AuthenticationServiceException.class, () -> passwordEncoder.matches("b", "b"));
+            assertEquals(0.0, meterRegistry.get("executor.queued").tag("name", "passwordHashing").gauge().value());
+        } finally {
+            release.countDown();
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldNotQueueMoreHashesThanTheTimeoutLeavesRoomFor() {
+        PasswordEncoder slowDelegate = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return rawPassword.toString();
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return true;
+            }
+        };
+        passwordEncoder = new BoundedPasswordEncoder(slowDelegate, 10, 1, 64, 140, meterRegistry);
+
+        assertEquals(1.0, meterRegistry.get("executor.queue.remaining").tag("name", "passwordHashing").gauge().value());
+    }
+
+    private void waitForQueuedTask() throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            if (meterRegistry.get("executor.queued").tag("name", "passwordHashing").gauge().value() >= 1) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package io.github.msj.swiftbank.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RateLimitFilterTest {
+
+    private final TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(
+            Collections.singletonMap(TokenBucketRateLimiter.Endpoint.CREDIT, new TokenBucketRateLimiter.Limit(1, 0.1)),
+            new SimpleMeterRegistry(), true, 100, 60000, System::nanoTime);
+
+    private final RateLimitFilter filter = new RateLimitFilter(rateLimiter);
+
+    @BeforeEach
+    void setUp() {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                "one_user@email.com", null, AuthorityUtils.createAuthorityList("ROLE_USER")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void shouldAnswerTooManyRequestsWithRetryAfterOnceBucketIsEmpty() throws Exception {
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        MockFilterChain firstChain = new MockFilterChain();
+        filter.doFilter(new MockHttpServletRequest("POST", "/user/accounts/credit"), first, firstChain);
+
+        MockHttpServletResponse second = new MockHttpServletResponse();
+        MockFilterChain secondChain = new MockFilterChain();
+        filter.doFilter(new MockHttpServletRequest("POST", "/user/accounts/credit"), second, secondChain);
+
+        assertNotNull(firstChain.getRequest());
+        assertEquals(200, first.getStatus());
+        assertNull(secondChain.getRequest());
+        assertEquals(429, second.getStatus());
+        assertEquals("10", second.getHeader("Retry-After"));
+    }
+
+    @Test
+    void shouldNotThrottleReadOnlyRequests() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            MockFilterChain chain = new MockFilterChain();
+            filter.doFilter(new MockHttpServletRequest("GET", "/user/accounts/credit"), response, chain);
+
+            assertNotNull(chain.getRequest());
+        }
+        assertEquals(0, rateLimiter.getBucketCount());
+    }
+}
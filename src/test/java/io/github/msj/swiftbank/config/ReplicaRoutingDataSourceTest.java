@@ -0,0 +1,146 @@
+package io.github.msj.swiftbank.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReplicaRoutingDataSourceTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private DataSource primary;
+
+    private DataSource replica;
+
+    @BeforeEach
+    void setUp() {
+        primary = database("primary");
+        replica = database("replica");
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+        new JdbcTemplate(primary).execute("DROP ALL OBJECTS");
+        new JdbcTemplate(replica).execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    void shouldSendReadOnlyTransactionsToReplicaAndEverythingElseToPrimary() {
+        Routed routed = routed(replicas(replica), 0);
+
+        assertEquals("replica", routed.read());
+        assertEquals("primary", routed.write());
+        assertEquals("primary", routed.jdbc.queryForObject("SELECT name FROM instance", String.class));
+        assertEquals(1.0, meterRegistry.get("swiftbank.datasource.routes").tag("route", "read").counter().count());
+    }
+
+    @Test
+    void shouldPinSessionToPrimaryAfterCommittedWrite() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        Routed routed = routed(replicas(replica), 60000);
+
+        assertEquals("replica", routed.read());
+        routed.write();
+
+        assertEquals("primary", routed.read());
+        assertEquals(1.0, meterRegistry.get("swiftbank.datasource.routes").tag("route", "pinned").counter().count());
+    }
+
+    @Test
+    void shouldNotPinWhenReadYourWritesWindowIsDisabled() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        Routed routed = routed(replicas(replica), 0);
+
+        routed.write();
+
+        assertEquals("replica", routed.read());
+    }
+
+    @Test
+    void shouldFallBackToPrimaryWithoutReplicas() {
+        Routed routed = routed(Collections.<String, DataSource>emptyMap(), 0);
+
+        assertEquals("primary", routed.read());
+    }
+
+    @Test
+    void shouldRoundRobinAcrossReplicas() {
+        DataSource secondReplica = database("replica-2");
+        Map<String, DataSource> replicas = replicas(replica);
+        replicas.put("replica-2", secondReplica);
+        Routed routed = routed(replicas, 0);
+
+        assertEquals("replica", routed.read());
+        assertEquals("replica-2", routed.read());
+        assertEquals("replica", routed.read());
+        new JdbcTemplate(secondReplica).execute("DROP ALL OBJECTS");
+    }
+
+    private Routed routed(Map<String, DataSource> replicas, long readYourWritesMillis) {
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, replicas, readYourWritesMillis,
+                meterRegistry);
+        routing.afterPropertiesSet();
+        return new Routed(new LazyConnectionDataSourceProxy(routing));
+    }
+
+    private static Map<String, DataSource> replicas(DataSource replica) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-1", replica);
+        return replicas;
+    }
+
+    private static DataSource database(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE instance (name VARCHAR(32))");
+        jdbc.update("INSERT INTO instance (name) VALUES (?)", name);
+        return dataSource;
+    }
+
+    private static final class Routed {
+
+        private final JdbcTemplate jdbc;
+
+        private final TransactionTemplate readOnly;
+
+        private final TransactionTemplate readWrite;
+
+        private Routed(DataSource dataSource) {
+            DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+            this.jdbc = new JdbcTemplate(dataSource);
+            this.readOnly = new TransactionTemplate(transactionManager);
+            this.readOnly.setReadOnly(true);
+            this.readWrite = new TransactionTemplate(transactionManager);
+        }
+
+        private String read() {
+            return readOnly.execute(status -> jdbc.queryForObject("SELECT name FROM instance", String.class));
+        }
+
+        private String write() {
+            return readWrite.execute(status -> {
+                jdbc.update("UPDATE instance SET name = name");
+                return jdbc.queryForObject("SELECT name FROM instance", String.class);
+            });
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package io.github.msj.swiftbank.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.junit.jupiter.api.Test;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class SecondLevelCacheConfigTest {
+
+    private final SecondLevelCacheConfig config = new SecondLevelCacheConfig();
+
+    @Test
+    void shouldCreateBoundedRegionsForUsersRolesAndQueries() {
+        try (CacheManager cacheManager = config.hibernateCacheManager(500, 10, 200, 60000)) {
+            assertEquals(OptionalLong.of(500), maximumSize(cacheManager, "users"));
+            assertEquals(OptionalLong.of(500), maximumSize(cacheManager, "users.roles"));
+            assertEquals(OptionalLong.of(10), maximumSize(cacheManager, "roles"));
+            assertEquals(OptionalLong.of(200),
+                    maximumSize(cacheManager, RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME));
+            assertFalse(maximumSize(cacheManager, RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME).isPresent());
+        }
+    }
+
+    @Test
+    void shouldHandCacheManagerToHibernateAndFailOnUnknownRegions() {
+        try (CacheManager cacheManager = config.hibernateCacheManager(500, 10, 200, 60000)) {
+            Map<String, Object> properties = new HashMap<>();
+            config.secondLevelCacheCustomizer(cacheManager).customize(properties);
+
+            assertSame(cacheManager, properties.get(ConfigSettings.CACHE_MANAGER));
+            assertEquals("fail", properties.get(ConfigSettings.MISSING_CACHE_STRATEGY));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static OptionalLong maximumSize(CacheManager cacheManager, String region) {
+        Cache<Object, Object> cache = cacheManager.getCache(region);
+        assertNotNull(cache);
+        return cache.getConfiguration(CaffeineConfiguration.class).getMaximumSize();
+    }
+}
@@ -0,0 +1,83 @@
+package io.github.msj.swiftbank.config;
+
+import io.github.msj.swiftbank.exception.ConcurrentUpdateException;
+import io.github.msj.swiftbank.exception.InsufficientFundsException;
+import io.github.msj.swiftbank.service.AccountService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+class ServiceMetricsAspectTest {
+
+    private MeterRegistry meterRegistry;
+
+    private AccountService target;
+
+    private AccountService accountService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        target = mock(AccountService.class);
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(target);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAspect(new ServiceMetricsAspect(meterRegistry));
+        accountService = proxyFactory.getProxy();
+    }
+
+    @Test
+    void shouldTimeSuccessfulCallsAndRecordAmounts() {
+        accountService.transferBetweenAccounts(1L, 2L, new BigDecimal("150.00"));
+        accountService.transferBetweenAccounts(1L, 2L, new BigDecimal("50.00"));
+
+        assertEquals(2, callCount("transferBetweenAccounts", "success"));
+        DistributionSummary amounts = meterRegistry.get(ServiceMetricsAspect.AMOUNT_METRIC)
+                .tag("operation", "transfer")
+                .summary();
+        assertEquals(2, amounts.count());
+        assertEquals(200.0, amounts.totalAmount(), 0.001);
+    }
+
+    @Test
+    void shouldTagFailuresByOutcome() {
+        doThrow(new InsufficientFundsException("Saldo insuficiente para realizar o débito."))
+                .when(target).debitAccount(1L, new BigDecimal("10"));
+        doThrow(new ConcurrentUpdateException("Conflito"))
+                .when(target).creditAccount(1L, new BigDecimal("10"));
+        doThrow(new IllegalArgumentException("Conta não encontrada."))
+                .when(target).findById(9L);
+
+        assertThrows(InsufficientFundsException.class, () -> accountService.debitAccount(1L, new BigDecimal("10")));
+        assertThrows(ConcurrentUpdateException.class, () -> accountService.creditAccount(1L, new BigDecimal("10")));
+        assertThrows(IllegalArgumentException.class, () -> accountService.findById(9L));
+
+        assertEquals(1, callCount("debitAccount", "insufficient_funds"));
+        assertEquals(1, callCount("creditAccount", "conflict"));
+        assertEquals(1, callCount("findById", "rejected"));
+        assertEquals(0, meterRegistry.get(ServiceMetricsAspect.AMOUNT_METRIC)
+                .tag("operation", "debit")
+                .summary()
+                .count());
+        assertNull(meterRegistry.find(ServiceMetricsAspect.AMOUNT_METRIC).tag("operation", "findById").summary());
+    }
+
+    private long callCount(String method, String outcome) {
+        return meterRegistry.get(ServiceMetricsAspect.CALLS_METRIC)
+                .tag("class", "AccountService")
+                .tag("method", method)
+                .tag("outcome", outcome)
+                .timer()
+                .count();
+    }
+}
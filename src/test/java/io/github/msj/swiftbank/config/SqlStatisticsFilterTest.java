@@ -0,0 +1,167 @@
+package io.github.msj.swiftbank.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SqlStatisticsFilterTest {
+
+    private final SqlStatisticsListener listener = new SqlStatisticsListener();
+
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void shouldReportStatementsAndRowsInServerTimingHeader() throws Exception {
+        SqlStatisticsFilter filter = new SqlStatisticsFilter(meterRegistry, true, 25, false);
+        MockHttpServletRequest request = request("/user/accounts/list");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, executing(3, 2));
+
+        String serverTiming = response.getHeader(SqlStatisticsFilter.SERVER_TIMING_HEADER);
+        assertTrue(serverTiming.startsWith("db;dur="));
+        assertTrue(serverTiming.endsWith("desc=\"3 statements, 6 rows\""));
+        assertEquals("pagina", response.getContentAsString());
+        assertEquals(3.0, meterRegistry.get("swiftbank.request.sql.statements")
+                .tag("handler", "/user/accounts/list")
+                .summary()
+                .totalAmount());
+        assertNull(meterRegistry.find("swiftbank.request.sql.budget.exceeded").counter());
+    }
+
+    @Test
+    void shouldFlagRequestsOverStatementBudget() throws Exception {
+        SqlStatisticsFilter filter = new SqlStatisticsFilter(meterRegistry, true, 2, false);
+
+        filter.doFilter(request("/user/accounts/transfer"), new MockHttpServletResponse(), executing(5, 0));
+
+        assertEquals(1.0, meterRegistry.get("swiftbank.request.sql.budget.exceeded")
+                .tag("handler", "/user/accounts/transfer")
+                .counter()
+                .count());
+    }
+
+    @Test
+    void shouldFailRequestOverBudgetInStrictMode() {
+        SqlStatisticsFilter filter = new SqlStatisticsFilter(meterRegistry, true, 2, true);
+
+        assertThrows(IllegalStateException.class,
+                () -> filter.doFilter(request("/admin/accounts/list"), new MockHttpServletResponse(), executing(3, 0)));
+    }
+
+    @Test
+    void shouldOnlyFlagStateChangingRequestsOverBudgetInStrictMode() throws Exception {
+        SqlStatisticsFilter filter = new SqlStatisticsFilter(meterRegistry, true, 2, true);
+        MockHttpServletRequest request = request("/user/accounts/transfer");
+        request.setMethod("POST");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, executing(3, 0));
+
+        assertEquals("pagina", response.getContentAsString());
+        assertEquals(1.0, meterRegistry.get("swiftbank.request.sql.budget.exceeded")
+                .tag("method", "POST")
+                .counter()
+                .count());
+    }
+
+    @Test
+    void shouldAddHeaderBeforeTheBodyIsCommittedWithoutBufferingIt() throws Exception {
+        SqlStatisticsFilter filter = new SqlStatisticsFilter(meterRegistry, true, 25, false);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        AtomicBoolean streamedThrough = new AtomicBoolean();
+
+        filter.doFilter(request("/user/accounts/list"), response, (servletRequest, servletResponse) -> {
+            executing(1, 0).doFilter(servletRequest, servletResponse);
+            servletResponse.flushBuffer();
+            streamedThrough.set(response.isCommitted() && "pagina".equals(response.getContentAsString()));
+            executing(1, 0).doFilter(servletRequest, servletResponse);
+        });
+
+        assertTrue(streamedThrough.get());
+        assertTrue(response.getHeader(SqlStatisticsFilter.SERVER_TIMING_HEADER).endsWith("desc=\"1 statements, 0 rows\""));
+        assertEquals(2.0, meterRegistry.get("swiftbank.request.sql.statements").summary().totalAmount());
+    }
+
+    @Test
+    void shouldCountStatementsIssuedOnBoundWorkerThreads() throws Exception {
+        SqlStatisticsFilter filter = new SqlStatisticsFilter(meterRegistry, true, 25, false);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request("/admin/accounts/list"), response, (servletRequest, servletResponse) -> {
+            Thread worker = new Thread(SqlStatistics.bind(() -> {
+                try {
+                    executing(2, 1).doFilter(servletRequest, new MockHttpServletResponse());
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+            worker.start();
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            executing(1, 0).doFilter(servletRequest, servletResponse);
+        });
+
+        assertTrue(response.getHeader(SqlStatisticsFilter.SERVER_TIMING_HEADER).endsWith("desc=\"3 statements, 2 rows\""));
+    }
+
+    @Test
+    void shouldSkipStreamingExports() throws Exception {
+        SqlStatisticsFilter filter = new SqlStatisticsFilter(meterRegistry, true, 25, false);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request("/user/transactions/export"), response, executing(1, 0));
+
+        assertNull(response.getHeader(SqlStatisticsFilter.SERVER_TIMING_HEADER));
+    }
+
+    @Test
+    void shouldSkipLiveFeedStream() throws Exception {
+        SqlStatisticsFilter filter = new SqlStatisticsFilter(meterRegistry, true, 25, false);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request("/user/events"), response, executing(1, 0));
+
+        assertNull(response.getHeader(SqlStatisticsFilter.SERVER_TIMING_HEADER));
+    }
+
+    private FilterChain executing(int statements, int affectedRowsPerStatement) {
+        return (request, response) -> {
+            for (int i = 0; i < statements; i++) {
+                ExecutionInfo executionInfo = new ExecutionInfo();
+                executionInfo.setResult(affectedRowsPerStatement);
+                listener.beforeQuery(executionInfo, Collections.emptyList());
+                listener.afterQuery(executionInfo, Collections.emptyList());
+            }
+            response.getWriter().write("pagina");
+        };
+    }
+
+    private static MockHttpServletRequest request(String uri) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, uri);
+        return request;
+    }
+}
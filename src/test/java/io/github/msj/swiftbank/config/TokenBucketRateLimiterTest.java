@@ -0,0 +1,92 @@
+package io.github.msj.swiftbank.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketRateLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong(TimeUnit.SECONDS.toNanos(100));
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void shouldAllowBurstUpToCapacityThenAskToRetryLater() {
+        TokenBucketRateLimiter limiter = limiter(10);
+
+        assertTrue(limiter.tryAcquire("user", TokenBucketRateLimiter.Endpoint.TRANSFER).isAllowed());
+        assertTrue(limiter.tryAcquire("user", TokenBucketRateLimiter.Endpoint.TRANSFER).isAllowed());
+        TokenBucketRateLimiter.Decision rejected = limiter.tryAcquire("user", TokenBucketRateLimiter.Endpoint.TRANSFER);
+
+        assertFalse(rejected.isAllowed());
+        assertEquals(2, rejected.getRetryAfterSeconds());
+        assertEquals(1.0, meterRegistry.counter("swiftbank.rate-limit.rejected",
+                "endpoint", "transfer", "reason", "rate").count());
+    }
+
+    @Test
+    void shouldKeepSeparateBucketsPerUserAndEndpoint() {
+        TokenBucketRateLimiter limiter = limiter(10);
+        limiter.tryAcquire("user", TokenBucketRateLimiter.Endpoint.TRANSFER);
+        limiter.tryAcquire("user", TokenBucketRateLimiter.Endpoint.TRANSFER);
+
+        assertTrue(limiter.tryAcquire("user", TokenBucketRateLimiter.Endpoint.CREDIT).isAllowed());
+        assertTrue(limiter.tryAcquire("other", TokenBucketRateLimiter.Endpoint.TRANSFER).isAllowed());
+    }
+
+    @Test
+    void shouldRefillTokensOverTime() {
+        TokenBucketRateLimiter limiter = limiter(10);
+        limiter.tryAcquire("user", TokenBucketRateLimiter.Endpoint.TRANSFER);
+        limiter.tryAcquire("user", TokenBucketRateLimiter.Endpoint.TRANSFER);
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+
+        assertTrue(limiter.tryAcquire("user", TokenBucketRateLimiter.Endpoint.TRANSFER).isAllowed());
+        assertFalse(limiter.tryAcquire("user", TokenBucketRateLimiter.Endpoint.TRANSFER).isAllowed());
+    }
+
+    @Test
+    void shouldEvictABucketInsteadOfRejectingNewUsersWhenBucketTableIsFull() {
+        TokenBucketRateLimiter limiter = limiter(1);
+        limiter.tryAcquire("user", TokenBucketRateLimiter.Endpoint.TRANSFER);
+
+        assertTrue(limiter.tryAcquire("other", TokenBucketRateLimiter.Endpoint.TRANSFER).isAllowed());
+        assertEquals(1, limiter.getBucketCount());
+    }
+
+    @Test
+    void shouldExpireIdleBuckets() {
+        TokenBucketRateLimiter limiter = limiter(10);
+        limiter.tryAcquire("user", TokenBucketRateLimiter.Endpoint.TRANSFER);
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(20));
+        assertEquals(1, limiter.getBucketCount());
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(20));
+        assertEquals(0, limiter.getBucketCount());
+    }
+
+    @Test
+    void shouldOnlyMatchMutationEndpoints() {
+        assertEquals(TokenBucketRateLimiter.Endpoint.DEBIT,
+                TokenBucketRateLimiter.Endpoint.match("POST", "/user/accounts/debit"));
+        assertNull(TokenBucketRateLimiter.Endpoint.match("GET", "/user/accounts/debit"));
+        assertNull(TokenBucketRateLimiter.Endpoint.match("POST", "/user/transactions"));
+    }
+
+    private TokenBucketRateLimiter limiter(int maxBuckets) {
+        return new TokenBucketRateLimiter(
+                Collections.singletonMap(TokenBucketRateLimiter.Endpoint.TRANSFER, new TokenBucketRateLimiter.Limit(2, 0.5)),
+                meterRegistry, true, maxBuckets, 30000, clock::get);
+    }
+}
@@ -1,9 +1,13 @@
 package io.github.msj.swiftbank.controller;
 
-import io.github.msj.swiftbank.entity.Account;
-import io.github.msj.swiftbank.entity.Transaction;
+import io.github.msj.swiftbank.dto.AccountOverview;
+import io.github.msj.swiftbank.dto.AccountPage;
+import io.github.msj.swiftbank.dto.AccountSearchCriteria;
+import io.github.msj.swiftbank.dto.TransactionPage;
+import io.github.msj.swiftbank.dto.TransactionView;
 import io.github.msj.swiftbank.entity.User;
 import io.github.msj.swiftbank.service.AccountService;
+import io.github.msj.swiftbank.service.TransactionExportFormat;
 import io.github.msj.swiftbank.service.TransactionService;
 import io.github.msj.swiftbank.service.UserService;
 import org.junit.jupiter.api.Test;
@@ -11,9 +15,12 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.ui.ExtendedModelMap;
 import org.springframework.ui.Model;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.Collections;
@@ -22,6 +29,8 @@ import java.util.Objects;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -43,23 +52,25 @@ class AdminAccountControllerTest {
 
     @Test
     void shouldListAllAccounts() {
-        Account account1 = new Account();
-        account1.setId(1L);
-        account1.setOwnerName("User1");
+        AccountOverview account1 = new AccountOverview(1L, "User1", BigDecimal.ZERO, 3L, "User1");
 
-        Account account2 = new Account();
-        account2.setId(2L);
-        account2.setOwnerName("User2");
+        AccountOverview account2 = new AccountOverview(2L, "User2", BigDecimal.ZERO, 3L, "User2");
 
-        when(accountService.findAll()).thenReturn(Arrays.asList(account1, account2));
+        AccountSearchCriteria criteria = new AccountSearchCriteria();
+        when(accountService.searchAccounts(criteria))
+                .thenReturn(new AccountPage(Arrays.asList(account1, account2), false, false, false));
+        when(accountService.countAccounts(criteria)).thenReturn(2L);
 
         Model model = new ExtendedModelMap();
-        String viewName = adminAccountController.listAllAccounts(model);
+        String viewName = adminAccountController.listAllAccounts(criteria, model);
 
         assertEquals("admin-account-list", viewName);
         assertNotNull(model.getAttribute("accounts"));
         assertEquals(2, ((List<?>) Objects.requireNonNull(model.getAttribute("accounts"))).size());
-        verify(accountService, times(1)).findAll();
+        assertEquals(2L, model.getAttribute("approximateTotal"));
+        assertNotNull(model.getAttribute("page"));
+        verify(accountService, times(1)).searchAccounts(criteria);
+        verify(accountService, times(1)).countAccounts(criteria);
     }
 
     @Test
@@ -79,47 +90,58 @@ class AdminAccountControllerTest {
 
     @Test
     void shouldShowTransactionSelection() {
-        Account account1 = new Account();
-        account1.setId(1L);
+        AccountOverview account1 = new AccountOverview(1L, null, BigDecimal.ZERO, 3L, null);
 
-        Account account2 = new Account();
-        account2.setId(2L);
+        AccountOverview account2 = new AccountOverview(2L, null, BigDecimal.ZERO, 3L, null);
 
-        when(accountService.findAll()).thenReturn(Arrays.asList(account1, account2));
+        AccountSearchCriteria criteria = new AccountSearchCriteria();
+        criteria.setOwnerName("User");
+        when(accountService.searchAccounts(criteria))
+                .thenReturn(new AccountPage(Arrays.asList(account1, account2), true, false, false));
 
         Model model = new ExtendedModelMap();
-        String viewName = adminAccountController.showTransactionSelection(model);
+        String viewName = adminAccountController.showTransactionSelection(criteria, model);
 
         assertEquals("admin-transaction-selection", viewName);
         assertNotNull(model.getAttribute("accounts"));
-        verify(accountService, times(1)).findAll();
+        verify(accountService, times(1)).searchAccounts(criteria);
     }
 
     @Test
     void shouldListAdminTransactions() {
-        Account account = new Account();
-        account.setId(1L);
-        account.setOwnerName("User1");
+        AccountOverview account = new AccountOverview(1L, "User1", new BigDecimal("100"), 3L, "User One");
 
-        Transaction transaction1 = new Transaction();
-        transaction1.setId(1L);
-        transaction1.setAmount(new BigDecimal("100"));
+        TransactionView transaction1 = new TransactionView(1L, "CREDIT", new BigDecimal("100"), null);
 
-        Transaction transaction2 = new Transaction();
-        transaction2.setId(2L);
-        transaction2.setAmount(new BigDecimal("200"));
+        TransactionView transaction2 = new TransactionView(2L, "CREDIT", new BigDecimal("200"), null);
 
-        when(accountService.findById(1L)).thenReturn(account);
-        when(transactionService.getTransactionsByAccount(1L)).thenReturn(Arrays.asList(transaction1, transaction2));
+        when(accountService.findOverviewById(1L)).thenReturn(account);
+        when(transactionService.getTransactionPage(1L, null, TransactionPage.Direction.NEXT))
+                .thenReturn(new TransactionPage(Arrays.asList(transaction1, transaction2), false, false));
 
         Model model = new ExtendedModelMap();
-        String viewName = adminAccountController.listAdminTransactions(1L, model);
+        String viewName = adminAccountController.listAdminTransactions(1L, null, TransactionPage.Direction.NEXT, model);
 
         assertEquals("admin-transaction-list", viewName);
         assertNotNull(model.getAttribute("transactions"));
+        assertNotNull(model.getAttribute("page"));
         assertEquals(account, model.getAttribute("selectedAccount"));
-        verify(accountService, times(1)).findById(1L);
-        verify(transactionService, times(1)).getTransactionsByAccount(1L);
+        verify(accountService, times(1)).findOverviewById(1L);
+        verify(transactionService, times(1)).getTransactionPage(1L, null, TransactionPage.Direction.NEXT);
+    }
+
+    @Test
+    void shouldExportAdminTransactions() throws IOException {
+        AccountOverview account = new AccountOverview(1L, "User1", new BigDecimal("100"), 3L, "User One");
+
+        when(accountService.findOverviewById(1L)).thenReturn(account);
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        adminAccountController.exportAdminTransactions(1L, TransactionExportFormat.NDJSON, response);
+
+        assertEquals("application/x-ndjson;charset=UTF-8", response.getContentType());
+        assertEquals("attachment; filename=\"extrato-conta-1.ndjson\"", response.getHeader("Content-Disposition"));
+        verify(transactionService, times(1)).exportTransactions(eq(1L), eq(TransactionExportFormat.NDJSON), any(Writer.class));
     }
 
     @Test
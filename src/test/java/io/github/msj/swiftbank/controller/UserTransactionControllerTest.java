@@ -1,32 +1,52 @@
 package io.github.msj.swiftbank.controller;
 
-import io.github.msj.swiftbank.entity.Account;
-import io.github.msj.swiftbank.entity.Transaction;
+import io.github.msj.swiftbank.dto.AccountOverview;
+import io.github.msj.swiftbank.dto.AccountSummary;
+import io.github.msj.swiftbank.dto.SwiftBankUserDetails;
+import io.github.msj.swiftbank.dto.TargetAccount;
+import io.github.msj.swiftbank.dto.TransactionPage;
+import io.github.msj.swiftbank.dto.TransactionView;
 import io.github.msj.swiftbank.entity.User;
+import io.github.msj.swiftbank.repository.IdempotencyRecordRepository;
 import io.github.msj.swiftbank.service.AccountService;
+import io.github.msj.swiftbank.service.IdempotencyService;
+import io.github.msj.swiftbank.service.LiveFeedService;
+import io.github.msj.swiftbank.service.TransactionExportFormat;
 import io.github.msj.swiftbank.service.TransactionService;
-import io.github.msj.swiftbank.service.UserService;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.access.AccessDeniedException;
-import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.ui.ExtendedModelMap;
 import org.springframework.ui.Model;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -41,10 +61,16 @@ class UserTransactionControllerTest {
     private AccountService accountService;
 
     @Mock
-    private UserService userService;
+    private TransactionService transactionService;
 
     @Mock
-    private TransactionService transactionService;
+    private LiveFeedService liveFeedService;
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository = mock(IdempotencyRecordRepository.class);
+
+    @Spy
+    private IdempotencyService idempotencyService = new IdempotencyService(idempotencyRecordRepository,
+            TransactionOperations.withoutTransaction(), 100, 60000);
 
     @InjectMocks
     private UserTransactionController userTransactionController;
@@ -60,17 +86,17 @@ class UserTransactionControllerTest {
 
             BigDecimal totalBalance = new BigDecimal("1000");
 
-            when(userService.findByUsername("testuser")).thenReturn(user);
             when(accountService.calculateTotalBalanceByUser(1L)).thenReturn(totalBalance);
 
             Model model = new ExtendedModelMap();
-            Authentication authentication = mockAuthentication("testuser");
-            String viewName = userTransactionController.showDashboard(model, authentication);
+            SwiftBankUserDetails principal = principal();
+            String viewName = userTransactionController.showDashboard(model, principal);
 
             assertEquals("user-dashboard", viewName);
             assertEquals(totalBalance, model.getAttribute("totalBalance"));
-            verify(userService, times(1)).findByUsername("testuser");
+            assertNotNull(model.getAttribute("accounts"));
             verify(accountService, times(1)).calculateTotalBalanceByUser(1L);
+            verify(accountService, times(1)).getAccountsByUser(1L);
         }
 
         @Test
@@ -79,16 +105,14 @@ class UserTransactionControllerTest {
             user.setId(1L);
             user.setUsername("testuser");
 
-            when(userService.findByUsername("testuser")).thenReturn(user);
             when(accountService.calculateTotalBalanceByUser(1L)).thenReturn(null);
 
             Model model = new ExtendedModelMap();
-            Authentication authentication = mockAuthentication("testuser");
-            String viewName = userTransactionController.showDashboard(model, authentication);
+            SwiftBankUserDetails principal = principal();
+            String viewName = userTransactionController.showDashboard(model, principal);
 
             assertEquals("user-dashboard", viewName);
             assertEquals(BigDecimal.ZERO, model.getAttribute("totalBalance"));
-            verify(userService, times(1)).findByUsername("testuser");
             verify(accountService, times(1)).calculateTotalBalanceByUser(1L);
         }
 
@@ -98,31 +122,22 @@ class UserTransactionControllerTest {
             user.setId(1L);
             user.setUsername("testuser");
 
-            Account account1 = new Account();
-            account1.setId(1L);
+            AccountSummary account1 = new AccountSummary(1L, "testuser", BigDecimal.ZERO);
 
-            Account account2 = new Account();
-            account2.setId(2L);
+            AccountSummary account2 = new AccountSummary(2L, "testuser", BigDecimal.ZERO);
 
-            when(userService.findByUsername("testuser")).thenReturn(user);
             when(accountService.getAccountsByUser(1L)).thenReturn(Arrays.asList(account1, account2));
 
             Model model = new ExtendedModelMap();
-            Authentication authentication = mockAuthentication("testuser");
-            String viewName = userTransactionController.showTransactionSelection(model, authentication);
+            SwiftBankUserDetails principal = principal();
+            String viewName = userTransactionController.showTransactionSelection(model, principal);
 
             assertEquals("user-transaction-selection", viewName);
             assertNotNull(model.getAttribute("accounts"));
             assertEquals(2, ((List<?>) model.getAttribute("accounts")).size());
-            verify(userService, times(1)).findByUsername("testuser");
             verify(accountService, times(1)).getAccountsByUser(1L);
         }
 
-        private Authentication mockAuthentication(String username) {
-            Authentication authentication = mock(Authentication.class);
-            when(authentication.getName()).thenReturn(username);
-            return authentication;
-        }
 
     }
 
@@ -135,23 +150,19 @@ class UserTransactionControllerTest {
             user.setId(1L);
             user.setUsername("testuser");
 
-            Account account1 = new Account();
-            account1.setId(1L);
+            AccountSummary account1 = new AccountSummary(1L, "testuser", BigDecimal.ZERO);
 
-            Account account2 = new Account();
-            account2.setId(2L);
+            AccountSummary account2 = new AccountSummary(2L, "testuser", BigDecimal.ZERO);
 
-            when(userService.findByUsername("testuser")).thenReturn(user);
             when(accountService.getAccountsByUser(1L)).thenReturn(Arrays.asList(account1, account2));
 
             Model model = new ExtendedModelMap();
-            Authentication authentication = mockAuthentication("testuser");
-            String viewName = userTransactionController.listUserAccounts(model, authentication);
+            SwiftBankUserDetails principal = principal();
+            String viewName = userTransactionController.listUserAccounts(model, principal);
 
             assertEquals("user-account-list", viewName);
             assertNotNull(model.getAttribute("accounts"));
             assertEquals(2, ((List<?>) Objects.requireNonNull(model.getAttribute("accounts"))).size());
-            verify(userService, times(1)).findByUsername("testuser");
             verify(accountService, times(1)).getAccountsByUser(1L);
         }
 
@@ -161,34 +172,28 @@ class UserTransactionControllerTest {
             user.setId(1L);
             user.setUsername("testuser");
 
-            Account account = new Account();
-            account.setId(1L);
-            account.setUser(user);
+            AccountOverview account = new AccountOverview(1L, null, BigDecimal.ZERO, 1L, "testuser");
 
-            Transaction transaction1 = new Transaction();
-            transaction1.setId(1L);
-            transaction1.setAmount(new BigDecimal("100"));
+            TransactionView transaction1 = new TransactionView(1L, "CREDIT", new BigDecimal("100"), null);
 
-            Transaction transaction2 = new Transaction();
-            transaction2.setId(2L);
-            transaction2.setAmount(new BigDecimal("200"));
+            TransactionView transaction2 = new TransactionView(2L, "CREDIT", new BigDecimal("200"), null);
 
-            when(userService.findByUsername("testuser")).thenReturn(user);
-            when(accountService.findById(1L)).thenReturn(account);
-            when(transactionService.getTransactionsByAccount(1L)).thenReturn(Arrays.asList(transaction1, transaction2));
+            when(accountService.findOverviewById(1L)).thenReturn(account);
+            when(transactionService.getTransactionPage(1L, null, TransactionPage.Direction.NEXT))
+                    .thenReturn(new TransactionPage(Arrays.asList(transaction1, transaction2), false, false));
 
             Model model = new ExtendedModelMap();
-            Authentication authentication = mockAuthentication("testuser");
-            String viewName = userTransactionController.listUserTransactions(1L, model, authentication);
+            SwiftBankUserDetails principal = principal();
+            String viewName = userTransactionController.listUserTransactions(1L, null, TransactionPage.Direction.NEXT, model, principal);
 
             assertEquals("user-transaction-list", viewName);
             assertNotNull(model.getAttribute("transactions"));
             assertNotNull(model.getAttribute("selectedAccount"));
             assertEquals(2, ((List<?>) model.getAttribute("transactions")).size());
             assertEquals(account, model.getAttribute("selectedAccount"));
-            verify(userService, times(1)).findByUsername("testuser");
-            verify(accountService, times(1)).findById(1L);
-            verify(transactionService, times(1)).getTransactionsByAccount(1L);
+            assertNotNull(model.getAttribute("page"));
+            verify(accountService, times(1)).findOverviewById(1L);
+            verify(transactionService, times(1)).getTransactionPage(1L, null, TransactionPage.Direction.NEXT);
         }
 
         @Test
@@ -200,25 +205,21 @@ class UserTransactionControllerTest {
             User otherUser = new User();
             otherUser.setId(2L);
 
-            Account account = new Account();
-            account.setId(1L);
-            account.setUser(otherUser);
+            AccountOverview account = new AccountOverview(1L, null, BigDecimal.ZERO, 2L, "otheruser");
 
-            when(userService.findByUsername("testuser")).thenReturn(user);
-            when(accountService.findById(1L)).thenReturn(account);
+            when(accountService.findOverviewById(1L)).thenReturn(account);
 
             Model model = new ExtendedModelMap();
-            Authentication authentication = mockAuthentication("testuser");
+            SwiftBankUserDetails principal = principal();
 
             AccessDeniedException exception = assertThrows(
                     AccessDeniedException.class,
-                    () -> userTransactionController.listUserTransactions(1L, model, authentication)
+                    () -> userTransactionController.listUserTransactions(1L, null, TransactionPage.Direction.NEXT, model, principal)
             );
 
             assertEquals("Acesso negado: esta conta não pertence ao usuário logado.", exception.getMessage());
-            verify(userService, times(1)).findByUsername("testuser");
-            verify(accountService, times(1)).findById(1L);
-            verify(transactionService, never()).getTransactionsByAccount(anyLong());
+            verify(accountService, times(1)).findOverviewById(1L);
+            verify(transactionService, never()).getTransactionPage(anyLong(), any(), any());
         }
 
         @Test
@@ -227,28 +228,104 @@ class UserTransactionControllerTest {
             user.setId(1L);
             user.setUsername("testuser");
 
-            when(userService.findByUsername("testuser")).thenReturn(user);
-            when(accountService.findById(1L)).thenThrow(new IllegalArgumentException("Conta não encontrada."));
+            when(accountService.findOverviewById(1L)).thenThrow(new IllegalArgumentException("Conta não encontrada."));
 
             Model model = new ExtendedModelMap();
-            Authentication authentication = mockAuthentication("testuser");
+            SwiftBankUserDetails principal = principal();
 
             IllegalArgumentException exception = assertThrows(
                     IllegalArgumentException.class,
-                    () -> userTransactionController.listUserTransactions(1L, model, authentication)
+                    () -> userTransactionController.listUserTransactions(1L, null, TransactionPage.Direction.NEXT, model, principal)
             );
 
             assertEquals("Conta não encontrada.", exception.getMessage());
-            verify(userService, times(1)).findByUsername("testuser");
-            verify(accountService, times(1)).findById(1L);
-            verify(transactionService, never()).getTransactionsByAccount(anyLong());
+            verify(accountService, times(1)).findOverviewById(1L);
+            verify(transactionService, never()).getTransactionPage(anyLong(), any(), any());
+        }
+
+    }
+
+    @Nested
+    class StreamEvents {
+
+        @Test
+        void shouldSubscribeToLiveFeedForUserAccounts() {
+            SseEmitter emitter = new SseEmitter();
+            when(accountService.getAccountsByUser(1L)).thenReturn(Arrays.asList(
+                    new AccountSummary(1L, "testuser", BigDecimal.ZERO),
+                    new AccountSummary(2L, "testuser", BigDecimal.ZERO)));
+            when(liveFeedService.subscribe(Arrays.asList(1L, 2L))).thenReturn(Optional.of(emitter));
+
+            ResponseEntity<SseEmitter> response = userTransactionController.streamEvents(principal());
+
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+            assertEquals(emitter, response.getBody());
+        }
+
+        @Test
+        void shouldAnswerServiceUnavailableWhenFeedIsFull() {
+            when(accountService.getAccountsByUser(1L)).thenReturn(Collections.emptyList());
+            when(liveFeedService.subscribe(Collections.emptyList())).thenReturn(Optional.empty());
+
+            ResponseEntity<SseEmitter> response = userTransactionController.streamEvents(principal());
+
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+            assertEquals("30", response.getHeaders().getFirst("Retry-After"));
         }
+    }
+
+    @Nested
+    class ExportUserTransactions {
+
+        @Test
+        void shouldExportOwnedAccountTransactions() throws IOException {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            userTransactionController.exportUserTransactions(1L, TransactionExportFormat.CSV, principal(1L), response);
+
+            assertEquals("text/csv;charset=UTF-8", response.getContentType());
+            assertEquals("attachment; filename=\"extrato-conta-1.csv\"", response.getHeader("Content-Disposition"));
+            verify(transactionService, times(1)).exportTransactions(eq(1L), eq(TransactionExportFormat.CSV), any(Writer.class));
+            verify(accountService, never()).findOverviewById(anyLong());
+        }
+
+        @Test
+        void shouldExportAccountCreatedAfterLogin() throws IOException {
+            User user = new User();
+            user.setId(1L);
+
+            AccountOverview account = new AccountOverview(3L, null, BigDecimal.ZERO, 1L, "testuser");
+
+            when(accountService.findOverviewById(3L)).thenReturn(account);
+
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            userTransactionController.exportUserTransactions(3L, TransactionExportFormat.CSV, principal(1L), response);
+
+            verify(transactionService, times(1)).exportTransactions(eq(3L), eq(TransactionExportFormat.CSV), any(Writer.class));
+        }
+
+        @Test
+        void shouldDenyExportOfAnotherUsersAccount() throws IOException {
+            User user = new User();
+            user.setId(1L);
+            user.setUsername("testuser");
+
+            User otherUser = new User();
+            otherUser.setId(2L);
+
+            AccountOverview account = new AccountOverview(1L, null, BigDecimal.ZERO, 2L, "otheruser");
 
-        private Authentication mockAuthentication(String username) {
-            Authentication authentication = mock(Authentication.class);
-            when(authentication.getName()).thenReturn(username);
-            return authentication;
+            when(accountService.findOverviewById(1L)).thenReturn(account);
+
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            SwiftBankUserDetails principal = principal();
+
+            assertThrows(
+                    AccessDeniedException.class,
+                    () -> userTransactionController.exportUserTransactions(1L, TransactionExportFormat.CSV, principal, response)
+            );
+            verify(transactionService, never()).exportTransactions(anyLong(), any(), any());
         }
+
     }
 
     @Nested
@@ -260,23 +337,19 @@ class UserTransactionControllerTest {
             user.setId(1L);
             user.setUsername("testuser");
 
-            Account account1 = new Account();
-            account1.setId(1L);
+            AccountSummary account1 = new AccountSummary(1L, "testuser", BigDecimal.ZERO);
 
-            Account account2 = new Account();
-            account2.setId(2L);
+            AccountSummary account2 = new AccountSummary(2L, "testuser", BigDecimal.ZERO);
 
-            when(userService.findByUsername("testuser")).thenReturn(user);
             when(accountService.getAccountsByUser(1L)).thenReturn(Arrays.asList(account1, account2));
 
             Model model = new ExtendedModelMap();
-            Authentication authentication = mockAuthentication("testuser");
-            String viewName = userTransactionController.showCreditForm(model, authentication);
+            SwiftBankUserDetails principal = principal();
+            String viewName = userTransactionController.showCreditForm(model, principal);
 
             assertEquals("credit-account", viewName);
             assertNotNull(model.getAttribute("accounts"));
             assertEquals(2, ((List<?>) Objects.requireNonNull(model.getAttribute("accounts"))).size());
-            verify(userService, times(1)).findByUsername("testuser");
             verify(accountService, times(1)).getAccountsByUser(1L);
         }
 
@@ -286,18 +359,15 @@ class UserTransactionControllerTest {
             user.setId(1L);
             user.setUsername("testuser");
 
-            Account account1 = new Account();
-            account1.setId(1L);
+            AccountSummary account1 = new AccountSummary(1L, "testuser", BigDecimal.ZERO);
 
-            Account account2 = new Account();
-            account2.setId(2L);
+            AccountSummary account2 = new AccountSummary(2L, "testuser", BigDecimal.ZERO);
 
-            when(userService.findByUsername("testuser")).thenReturn(user);
             when(accountService.getAccountsByUser(1L)).thenReturn(Arrays.asList(account1, account2));
 
             Model model = new ExtendedModelMap();
-            Authentication authentication = mockAuthentication("testuser");
-            String viewName = userTransactionController.creditAccount(1L, new BigDecimal("200"), model, authentication);
+            SwiftBankUserDetails principal = principal();
+            String viewName = userTransactionController.creditAccount(1L, new BigDecimal("200"), UUID.randomUUID().toString(), model, principal);
 
             assertEquals("credit-account", viewName);
             assertNotNull(model.getAttribute("successMessage"));
@@ -305,29 +375,46 @@ class UserTransactionControllerTest {
             assertNotNull(model.getAttribute("accounts"));
             assertEquals(2, ((List<?>) Objects.requireNonNull(model.getAttribute("accounts"))).size());
             verify(accountService, times(1)).creditAccount(1L, new BigDecimal("200"));
-            verify(userService, times(1)).findByUsername("testuser");
             verify(accountService, times(1)).getAccountsByUser(1L);
         }
 
+        @Test
+        void shouldReplayCreditWithSameIdempotencyKey() {
+            User user = new User();
+            user.setId(1L);
+            user.setUsername("testuser");
+
+            when(accountService.getAccountsByUser(1L)).thenReturn(Collections.emptyList());
+
+            SwiftBankUserDetails principal = principal();
+            String idempotencyKey = UUID.randomUUID().toString();
+            userTransactionController.creditAccount(1L, new BigDecimal("200"), idempotencyKey, new ExtendedModelMap(), principal);
+
+            Model model = new ExtendedModelMap();
+            userTransactionController.creditAccount(1L, new BigDecimal("200"), idempotencyKey, model, principal);
+
+            assertEquals("Valor creditado com sucesso!", model.getAttribute("successMessage"));
+            assertNotNull(model.getAttribute("idempotencyKey"));
+            verify(accountService, times(1)).creditAccount(1L, new BigDecimal("200"));
+            verify(idempotencyRecordRepository, times(1)).saveAndFlush(any());
+        }
+
         @Test
         void shouldHandleCreditAccountError() {
             User user = new User();
             user.setId(1L);
             user.setUsername("testuser");
 
-            Account account1 = new Account();
-            account1.setId(1L);
+            AccountSummary account1 = new AccountSummary(1L, "testuser", BigDecimal.ZERO);
 
-            Account account2 = new Account();
-            account2.setId(2L);
+            AccountSummary account2 = new AccountSummary(2L, "testuser", BigDecimal.ZERO);
 
-            when(userService.findByUsername("testuser")).thenReturn(user);
             when(accountService.getAccountsByUser(1L)).thenReturn(Arrays.asList(account1, account2));
             doThrow(new IllegalArgumentException("Erro ao creditar o valor.")).when(accountService).creditAccount(1L, new BigDecimal("200"));
 
             Model model = new ExtendedModelMap();
-            Authentication authentication = mockAuthentication("testuser");
-            String viewName = userTransactionController.creditAccount(1L, new BigDecimal("200"), model, authentication);
+            SwiftBankUserDetails principal = principal();
+            String viewName = userTransactionController.creditAccount(1L, new BigDecimal("200"), UUID.randomUUID().toString(), model, principal);
 
             assertEquals("credit-account", viewName);
             assertNotNull(model.getAttribute("errorMessage"));
@@ -335,15 +422,9 @@ class UserTransactionControllerTest {
             assertNotNull(model.getAttribute("accounts"));
             assertEquals(2, ((List<?>) Objects.requireNonNull(model.getAttribute("accounts"))).size());
             verify(accountService, times(1)).creditAccount(1L, new BigDecimal("200"));
-            verify(userService, times(1)).findByUsername("testuser");
             verify(accountService, times(1)).getAccountsByUser(1L);
         }
 
-        private Authentication mockAuthentication(String username) {
-            Authentication authentication = mock(Authentication.class);
-            when(authentication.getName()).thenReturn(username);
-            return authentication;
-        }
 
     }
 
@@ -356,23 +437,19 @@ class UserTransactionControllerTest {
             user.setId(1L);
             user.setUsername("testuser");
 
-            Account account1 = new Account();
-            account1.setId(1L);
+            AccountSummary account1 = new AccountSummary(1L, "testuser", BigDecimal.ZERO);
 
-            Account account2 = new Account();
-            account2.setId(2L);
+            AccountSummary account2 = new AccountSummary(2L, "testuser", BigDecimal.ZERO);
 
-            when(userService.findByUsername("testuser")).thenReturn(user);
             when(accountService.getAccountsByUser(1L)).thenReturn(Arrays.asList(account1, account2));
 
             Model model = new ExtendedModelMap();
-            Authentication authentication = mockAuthentication("testuser");
-            String viewName = userTransactionController.showDebitForm(model, authentication);
+            SwiftBankUserDetails principal = principal();
+            String viewName = userTransactionController.showDebitForm(model, principal);
 
             assertEquals("debit-account", viewName);
             assertNotNull(model.getAttribute("accounts"));
             assertEquals(2, ((List<?>) Objects.requireNonNull(model.getAttribute("accounts"))).size());
-            verify(userService, times(1)).findByUsername("testuser");
             verify(accountService, times(1)).getAccountsByUser(1L);
         }
 
@@ -382,18 +459,15 @@ class UserTransactionControllerTest {
             user.setId(1L);
             user.setUsername("testuser");
 
-            Account account1 = new Account();
-            account1.setId(1L);
+            AccountSummary account1 = new AccountSummary(1L, "testuser", BigDecimal.ZERO);
 
-            Account account2 = new Account();
-            account2.setId(2L);
+            AccountSummary account2 = new AccountSummary(2L, "testuser", BigDecimal.ZERO);
 
-            when(userService.findByUsername("testuser")).thenReturn(user);
             when(accountService.getAccountsByUser(1L)).thenReturn(Arrays.asList(account1, account2));
 
             Model model = new ExtendedModelMap();
-            Authentication authentication = mockAuthentication("testuser");
-            String viewName = userTransactionController.debitAccount(1L, new BigDecimal("200"), model, authentication);
+            SwiftBankUserDetails principal = principal();
+            String viewName = userTransactionController.debitAccount(1L, new BigDecimal("200"), UUID.randomUUID().toString(), model, principal);
 
             assertEquals("debit-account", viewName);
             assertNotNull(model.getAttribute("successMessage"));
@@ -401,7 +475,6 @@ class UserTransactionControllerTest {
             assertNotNull(model.getAttribute("accounts"));
             assertEquals(2, ((List<?>) Objects.requireNonNull(model.getAttribute("accounts"))).size());
             verify(accountService, times(1)).debitAccount(1L, new BigDecimal("200"));
-            verify(userService, times(1)).findByUsername("testuser");
             verify(accountService, times(1)).getAccountsByUser(1L);
         }
 
@@ -411,19 +484,16 @@ class UserTransactionControllerTest {
             user.setId(1L);
             user.setUsername("testuser");
 
-            Account account1 = new Account();
-            account1.setId(1L);
+            AccountSummary account1 = new AccountSummary(1L, "testuser", BigDecimal.ZERO);
 
-            Account account2 = new Account();
-            account2.setId(2L);
+            AccountSummary account2 = new AccountSummary(2L, "testuser", BigDecimal.ZERO);
 
-            when(userService.findByUsername("testuser")).thenReturn(user);
             when(accountService.getAccountsByUser(1L)).thenReturn(Arrays.asList(account1, account2));
             doThrow(new IllegalArgumentException("Erro ao debitar o valor.")).when(accountService).debitAccount(1L, new BigDecimal("200"));
 
             Model model = new ExtendedModelMap();
-            Authentication authentication = mockAuthentication("testuser");
-            String viewName = userTransactionController.debitAccount(1L, new BigDecimal("200"), model, authentication);
+            SwiftBankUserDetails principal = principal();
+            String viewName = userTransactionController.debitAccount(1L, new BigDecimal("200"), UUID.randomUUID().toString(), model, principal);
 
             assertEquals("debit-account", viewName);
             assertNotNull(model.getAttribute("errorMessage"));
@@ -431,16 +501,10 @@ class UserTransactionControllerTest {
             assertNotNull(model.getAttribute("accounts"));
             assertEquals(2, ((List<?>) Objects.requireNonNull(model.getAttribute("accounts"))).size());
             verify(accountService, times(1)).debitAccount(1L, new BigDecimal("200"));
-            verify(userService, times(1)).findByUsername("testuser");
             verify(accountService, times(1)).getAccountsByUser(1L);
         }
 
         // Método auxiliar para criar autenticação mockada
-        private Authentication mockAuthentication(String username) {
-            Authentication authentication = mock(Authentication.class);
-            when(authentication.getName()).thenReturn(username);
-            return authentication;
-        }
 
     }
 
@@ -453,31 +517,33 @@ class UserTransactionControllerTest {
             user.setId(1L);
             user.setUsername("testuser");
 
-            Account account1 = new Account();
-            account1.setId(1L);
-
-            Account account2 = new Account();
-            account2.setId(2L);
+            AccountSummary account1 = new AccountSummary(1L, "testuser", BigDecimal.ZERO);
 
-            Account otherUserAccount = new Account();
-            otherUserAccount.setId(3L);
+            AccountSummary account2 = new AccountSummary(2L, "testuser", BigDecimal.ZERO);
 
-            when(userService.findByUsername("testuser")).thenReturn(user);
             when(accountService.getAccountsByUser(1L)).thenReturn(Arrays.asList(account1, account2));
-            when(accountService.getAccountsExcludingUser(1L)).thenReturn(Collections.singletonList(otherUserAccount));
 
             Model model = new ExtendedModelMap();
-            Authentication authentication = mockAuthentication("testuser");
-            String viewName = userTransactionController.showTransferForm(model, authentication);
+            SwiftBankUserDetails principal = principal();
+            String viewName = userTransactionController.showTransferForm(model, principal);
 
             assertEquals("transfer-account", viewName);
             assertNotNull(model.getAttribute("accounts"));
-            assertNotNull(model.getAttribute("targetAccounts"));
             assertEquals(2, ((List<?>) model.getAttribute("accounts")).size());
-            assertEquals(1, ((List<?>) model.getAttribute("targetAccounts")).size());
-            verify(userService, times(1)).findByUsername("testuser");
+            assertNull(model.getAttribute("targetAccounts"));
             verify(accountService, times(1)).getAccountsByUser(1L);
-            verify(accountService, times(1)).getAccountsExcludingUser(1L);
+        }
+
+        @Test
+        void shouldSearchTargetAccountsForLoggedUser() {
+            when(accountService.searchTransferTargets(1L, "Mar"))
+                    .thenReturn(Collections.singletonList(new TargetAccount(3L, "Maria")));
+
+            List<TargetAccount> targets = userTransactionController.searchTargetAccounts("Mar", principal());
+
+            assertEquals(1, targets.size());
+            assertEquals(3L, targets.get(0).getId());
+            verify(accountService, times(1)).searchTransferTargets(1L, "Mar");
         }
 
         @Test
@@ -486,32 +552,39 @@ class UserTransactionControllerTest {
             user.setId(1L);
             user.setUsername("testuser");
 
-            Account sourceAccount = new Account();
-            sourceAccount.setId(1L);
-
-            Account targetAccount = new Account();
-            targetAccount.setId(2L);
+            AccountSummary sourceAccount = new AccountSummary(1L, "testuser", BigDecimal.ZERO);
 
-            Account otherUserAccount = new Account();
-            otherUserAccount.setId(3L);
+            AccountSummary targetAccount = new AccountSummary(2L, "testuser", BigDecimal.ZERO);
 
-            when(userService.findByUsername("testuser")).thenReturn(user);
             when(accountService.getAccountsByUser(1L)).thenReturn(Collections.singletonList(sourceAccount));
-            when(accountService.getAccountsExcludingUser(1L)).thenReturn(Collections.singletonList(otherUserAccount));
+            when(accountService.transferBetweenAccounts(1L, 2L, new BigDecimal("500"))).thenReturn(true);
 
             Model model = new ExtendedModelMap();
-            Authentication authentication = mockAuthentication("testuser");
-            String viewName = userTransactionController.transferBetweenAccounts(1L, 2L, new BigDecimal("500"), model, authentication);
+            SwiftBankUserDetails principal = principal();
+            String viewName = userTransactionController.transferBetweenAccounts(1L, 2L, new BigDecimal("500"), UUID.randomUUID().toString(), model, principal);
 
             assertEquals("transfer-account", viewName);
             assertNotNull(model.getAttribute("successMessage"));
             assertEquals("Transferência realizada com sucesso!", model.getAttribute("successMessage"));
             assertNotNull(model.getAttribute("accounts"));
-            assertNotNull(model.getAttribute("targetAccounts"));
             verify(accountService, times(1)).transferBetweenAccounts(1L, 2L, new BigDecimal("500"));
-            verify(userService, times(1)).findByUsername("testuser");
             verify(accountService, times(1)).getAccountsByUser(1L);
-            verify(accountService, times(1)).getAccountsExcludingUser(1L);
+        }
+
+        @Test
+        void shouldReportTransferStillInProgressAsAccepted() {
+            AccountSummary sourceAccount = new AccountSummary(1L, "testuser", BigDecimal.ZERO);
+
+            when(accountService.getAccountsByUser(1L)).thenReturn(Collections.singletonList(sourceAccount));
+            when(accountService.transferBetweenAccounts(1L, 2L, new BigDecimal("500"))).thenReturn(false);
+
+            Model model = new ExtendedModelMap();
+            String viewName = userTransactionController.transferBetweenAccounts(1L, 2L, new BigDecimal("500"), UUID.randomUUID().toString(), model, principal());
+
+            assertEquals("transfer-account", viewName);
+            assertEquals("Transferência recebida e em processamento. Consulte o extrato em instantes.",
+                    model.getAttribute("successMessage"));
+            assertNull(model.getAttribute("errorMessage"));
         }
 
         @Test
@@ -520,42 +593,31 @@ class UserTransactionControllerTest {
             user.setId(1L);
             user.setUsername("testuser");
 
-            Account sourceAccount = new Account();
-            sourceAccount.setId(1L);
-
-            Account targetAccount = new Account();
-            targetAccount.setId(2L);
+            AccountSummary sourceAccount = new AccountSummary(1L, "testuser", BigDecimal.ZERO);
 
-            Account otherUserAccount = new Account();
-            otherUserAccount.setId(3L);
+            AccountSummary targetAccount = new AccountSummary(2L, "testuser", BigDecimal.ZERO);
 
-            when(userService.findByUsername("testuser")).thenReturn(user);
             when(accountService.getAccountsByUser(1L)).thenReturn(Collections.singletonList(sourceAccount));
-            when(accountService.getAccountsExcludingUser(1L)).thenReturn(Collections.singletonList(otherUserAccount));
             doThrow(new IllegalArgumentException("Erro ao realizar a transferência."))
                     .when(accountService).transferBetweenAccounts(1L, 2L, new BigDecimal("500"));
 
             Model model = new ExtendedModelMap();
-            Authentication authentication = mockAuthentication("testuser");
-            String viewName = userTransactionController.transferBetweenAccounts(1L, 2L, new BigDecimal("500"), model, authentication);
+            SwiftBankUserDetails principal = principal();
+            String viewName = userTransactionController.transferBetweenAccounts(1L, 2L, new BigDecimal("500"), UUID.randomUUID().toString(), model, principal);
 
             assertEquals("transfer-account", viewName);
             assertNotNull(model.getAttribute("errorMessage"));
             assertEquals("Erro ao realizar a transferência.", model.getAttribute("errorMessage"));
             assertNotNull(model.getAttribute("accounts"));
-            assertNotNull(model.getAttribute("targetAccounts"));
             verify(accountService, times(1)).transferBetweenAccounts(1L, 2L, new BigDecimal("500"));
-            verify(userService, times(1)).findByUsername("testuser");
             verify(accountService, times(1)).getAccountsByUser(1L);
-            verify(accountService, times(1)).getAccountsExcludingUser(1L);
         }
 
-        private Authentication mockAuthentication(String username) {
-            Authentication authentication = mock(Authentication.class);
-            when(authentication.getName()).thenReturn(username);
-            return authentication;
-        }
 
     }
 
+    private static SwiftBankUserDetails principal(Long... accountIds) {
+        return new SwiftBankUserDetails(1L, "testuser", "password", true,
+                Collections.singletonList(new SimpleGrantedAuthority("ROLE_USER")), Arrays.asList(accountIds));
+    }
 }
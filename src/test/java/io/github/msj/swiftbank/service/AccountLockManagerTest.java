@@ -0,0 +1,92 @@
+package io.github.msj.swiftbank.service;
+
+import io.github.msj.swiftbank.exception.ConcurrentUpdateException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AccountLockManagerTest {
+
+    @Test
+    void shouldRoundStripeCountUpToPowerOfTwo() {
+        assertEquals(16, new AccountLockManager(16, 100).stripeCount());
+        assertEquals(32, new AccountLockManager(20, 100).stripeCount());
+    }
+
+    @Test
+    void shouldTimeOutWhenAccountIsHeldByAnotherThread() throws Exception {
+        AccountLockManager lockManager = new AccountLockManager(16, 50);
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            Future<?> holder = executor.submit(() -> {
+                try (AccountLockManager.AccountLocks ignored = lockManager.lock(1L)) {
+                    locked.countDown();
+                    release.await();
+                }
+                return null;
+            });
+            assertTrue(locked.await(1, TimeUnit.SECONDS));
+
+            ConcurrentUpdateException exception = assertThrows(
+                    ConcurrentUpdateException.class,
+                    () -> lockManager.lock(1L)
+            );
+            assertEquals("Conta ocupada com outra operação. Tente novamente.", exception.getMessage());
+
+            release.countDown();
+            holder.get(1, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldAllowSameAccountTwiceInOneRequest() {
+        AccountLockManager lockManager = new AccountLockManager(16, 50);
+
+        assertDoesNotThrow(() -> {
+            try (AccountLockManager.AccountLocks outer = lockManager.lock(7L, 7L);
+                 AccountLockManager.AccountLocks nested = lockManager.lock(7L)) {
+                assertTrue(outer != nested);
+            }
+        });
+    }
+
+    @Test
+    void shouldSerializeOpposingTransfersWithoutDeadlock() throws Exception {
+        AccountLockManager lockManager = new AccountLockManager(1024, 5000);
+        AtomicInteger inside = new AtomicInteger();
+        AtomicInteger maxInside = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            for (int i = 0; i < 400; i++) {
+                final boolean forward = i % 2 == 0;
+                executor.submit(() -> {
+                    try (AccountLockManager.AccountLocks ignored = forward ? lockManager.lock(1L, 2L) : lockManager.lock(2L, 1L)) {
+                        maxInside.accumulateAndGet(inside.incrementAndGet(), Math::max);
+                        inside.decrementAndGet();
+                    }
+                });
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            assertEquals(1, maxInside.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
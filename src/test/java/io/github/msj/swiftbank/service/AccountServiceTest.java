@@ -1,32 +1,60 @@
 package io.github.msj.swiftbank.service;
 
+import io.github.msj.swiftbank.dto.AccountOverview;
+import io.github.msj.swiftbank.dto.AccountPage;
+import io.github.msj.swiftbank.dto.AccountSearchCriteria;
+import io.github.msj.swiftbank.dto.AccountSummary;
+import io.github.msj.swiftbank.dto.TargetAccount;
 import io.github.msj.swiftbank.entity.Account;
 import io.github.msj.swiftbank.entity.Transaction;
 import io.github.msj.swiftbank.entity.User;
+import io.github.msj.swiftbank.exception.ConcurrentUpdateException;
+import io.github.msj.swiftbank.exception.VelocityLimitExceededException;
 import io.github.msj.swiftbank.repository.AccountRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.persistence.OptimisticLockException;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionOperations;
 
 import java.math.BigDecimal;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -41,32 +69,151 @@ class AccountServiceTest {
     @Mock
     UserService userService;
 
-    @InjectMocks
+    @Mock
+    BalanceAggregateService balanceAggregateService;
+
+    @Spy
+    AccountLockManager accountLockManager = new AccountLockManager(16, 1000);
+
+    @Spy
+    AccountCountCache accountCountCache = new AccountCountCache(new SimpleMeterRegistry(), 100, 60000);
+
+    @Spy
+    ConflictRetryExecutor conflictRetryExecutor = new ConflictRetryExecutor(TransactionOperations.withoutTransaction(), 3, 0, 0);
+
+    @Spy
+    AccountShards accountShards = AccountShards.single(TransactionOperations.withoutTransaction());
+
+    @Mock
+    ShardTransferCoordinator shardTransferCoordinator;
+
+    @Mock
+    OutboxPublisher outboxPublisher;
+
+    @Mock
+    LedgerWriter ledgerWriter;
+
+    @Spy
+    VelocityGuard velocityGuard = new VelocityGuard(Collections.<String, VelocityRule>emptyMap(), 60,
+            System::currentTimeMillis, new SimpleMeterRegistry(), null);
+
     AccountService accountService;
 
+    @BeforeEach
+    void setUp() {
+        accountService = new AccountService(accountRepository, userService, balanceAggregateService,
+                accountLockManager, conflictRetryExecutor, accountCountCache, accountShards, shardTransferCoordinator,
+                new LedgerRecorder(accountRepository, transactionService, balanceAggregateService, accountShards,
+                        outboxPublisher, ledgerWriter),
+                velocityGuard);
+    }
+
     @Nested
     class FindAccounts {
 
         @Test
-        void shouldFindAllAccounts() {
-            Account mockAccount = new Account();
-            mockAccount.setBalance(new BigDecimal("1000"));
-            mockAccount.setId(1L);
-            mockAccount.setUser(new User());
+        void shouldSearchFirstAccountsPageWithFiltersAndWhitelistedSort() {
+            AccountOverview mockAccount = new AccountOverview(1L, "Joana", new BigDecimal("1000"), 3L, "Joana");
 
-            Account mockAccount2 = new Account();
-            mockAccount.setBalance(new BigDecimal("2000"));
-            mockAccount.setId(1L);
-            mockAccount.setUser(new User());
+            AccountSearchCriteria criteria = new AccountSearchCriteria();
+            criteria.setOwnerName(" Jo%");
+            criteria.setMinBalance(new BigDecimal("100"));
+            criteria.setSort("balance");
+            criteria.setSize(1000);
 
-            List<Account> mockAccounts = Arrays.asList(mockAccount, mockAccount2);
+            when(accountRepository.searchAccounts("Jo!%%", null, new BigDecimal("100"), null,
+                    Sort.by(Sort.Direction.ASC, "id"), Limit.of(AccountSearchCriteria.MAX_PAGE_SIZE + 1)))
+                    .thenReturn(Collections.singletonList(mockAccount));
 
-            when(accountRepository.findAll()).thenReturn(mockAccounts);
+            AccountPage page = accountService.searchAccounts(criteria);
 
-            List<Account> accounts = accountService.findAll();
+            assertEquals(1, page.getAccounts().size());
+            assertFalse(page.hasNext());
+            assertFalse(page.hasPrevious());
+        }
 
-            assertEquals(2, accounts.size());
-            verify(accountRepository, times(1)).findAll();
+        @Test
+        void shouldSeekPastCursorByOwnerNameInsteadOfSkippingRows() {
+            AccountOverview first = new AccountOverview(5L, "Maria", BigDecimal.TEN, 3L, "Maria");
+            AccountOverview second = new AccountOverview(2L, "Jose", BigDecimal.TEN, 3L, "Jose");
+
+            AccountSearchCriteria criteria = new AccountSearchCriteria();
+            criteria.setSort("ownerName");
+            criteria.setDirection(Sort.Direction.DESC);
+            criteria.setSize(1);
+            criteria.setCursor("7_Maria");
+
+            when(accountRepository.searchAccountsBeforeOwnerName(null, null, null, null, "Maria", 7L,
+                    Sort.by(Sort.Direction.DESC, "ownerName").and(Sort.by(Sort.Direction.DESC, "id")), Limit.of(2)))
+                    .thenReturn(Arrays.asList(first, second));
+
+            AccountPage page = accountService.searchAccounts(criteria);
+
+            assertEquals(Collections.singletonList(first), page.getAccounts());
+            assertEquals("5_Maria", page.getNextCursor());
+            assertEquals("5_Maria", page.getPreviousCursor());
+        }
+
+        @Test
+        void shouldWalkBackwardsFromPreviousCursor() {
+            AccountSearchCriteria criteria = new AccountSearchCriteria();
+            criteria.setSize(2);
+            criteria.setCursor("10");
+            criteria.setPageDirection(AccountPage.Direction.PREVIOUS);
+
+            when(accountRepository.searchAccountsBeforeId(null, null, null, null, 10L,
+                    Sort.by(Sort.Direction.DESC, "id"), Limit.of(3)))
+                    .thenReturn(Arrays.asList(new AccountOverview(9L, "B", BigDecimal.ONE, 3L, "B"),
+                            new AccountOverview(8L, "A", BigDecimal.ONE, 3L, "A")));
+
+            AccountPage page = accountService.searchAccounts(criteria);
+
+            assertEquals(8L, page.getAccounts().get(0).getId());
+            assertEquals(9L, page.getAccounts().get(1).getId());
+            assertEquals("9", page.getNextCursor());
+            assertFalse(page.hasPrevious());
+        }
+
+        @Test
+        void shouldMergeShardPagesInSortOrder() {
+            AccountShards twoShards = new AccountShards(TransactionOperations.withoutTransaction(), 2,
+                    AccountShards.Strategy.HASH, 1000);
+            try {
+                AccountService shardedService = new AccountService(accountRepository, userService,
+                        balanceAggregateService, accountLockManager, conflictRetryExecutor, accountCountCache,
+                        twoShards, shardTransferCoordinator, new LedgerRecorder(accountRepository, transactionService,
+                        balanceAggregateService, twoShards, outboxPublisher, ledgerWriter), velocityGuard);
+                AccountSearchCriteria criteria = new AccountSearchCriteria();
+                criteria.setSize(2);
+
+                when(accountRepository.searchAccounts(null, null, null, null, Sort.by(Sort.Direction.ASC, "id"), Limit.of(3)))
+                        .thenAnswer(invocation -> AccountShards.currentShard() == 0
+                                ? Arrays.asList(new AccountOverview(2L, "B", BigDecimal.ONE, 3L, "B"),
+                                new AccountOverview(4L, "D", BigDecimal.ONE, 3L, "D"))
+                                : Arrays.asList(new AccountOverview(1L, "A", BigDecimal.ONE, 3L, "A"),
+                                new AccountOverview(3L, "C", BigDecimal.ONE, 3L, "C")));
+
+                AccountPage page = shardedService.searchAccounts(criteria);
+
+                assertEquals(1L, page.getAccounts().get(0).getId());
+                assertEquals(2L, page.getAccounts().get(1).getId());
+                assertEquals("2", page.getNextCursor());
+            } finally {
+                twoShards.destroy();
+            }
+        }
+
+        @Test
+        void shouldCacheFilteredAccountCount() {
+            AccountSearchCriteria criteria = new AccountSearchCriteria();
+            criteria.setUserId(3L);
+
+            when(accountRepository.countAccounts(null, 3L, null, null)).thenReturn(42L);
+
+            assertEquals(42L, accountService.countAccounts(criteria));
+            assertEquals(42L, accountService.countAccounts(criteria));
+
+            verify(accountRepository, times(1)).countAccounts(null, 3L, null, null);
         }
 
         @Test
@@ -99,77 +246,101 @@ class AccountServiceTest {
 
         @Test
         void shouldGetAccountsByUser() {
-            Account mockAccount = new Account();
-            mockAccount.setBalance(new BigDecimal("1000"));
-            mockAccount.setId(1L);
-            mockAccount.setUser(new User());
+            AccountSummary mockAccount = new AccountSummary(1L, "John Doe", new BigDecimal("1000"));
+            AccountSummary mockAccount2 = new AccountSummary(2L, "John Doe", new BigDecimal("2000"));
 
+            List<AccountSummary> mockAccounts = Arrays.asList(mockAccount, mockAccount2);
 
-            Account mockAccount2 = new Account();
-            mockAccount.setBalance(new BigDecimal("2000"));
-            mockAccount.setId(1L);
-            mockAccount.setUser(new User());
+            when(accountRepository.findSummariesByUserId(1L)).thenReturn(mockAccounts);
 
-            List<Account> mockAccounts = Arrays.asList(mockAccount, mockAccount2);
+            List<AccountSummary> accounts = accountService.getAccountsByUser(1L);
 
-            when(accountRepository.findByUserId(1L)).thenReturn(mockAccounts);
+            assertEquals(2, accounts.size());
+            verify(accountRepository, times(1)).findSummariesByUserId(1L);
+        }
 
-            List<Account> accounts = accountService.getAccountsByUser(1L);
+        @Test
+        void shouldFindAccountOverviewById() {
+            AccountOverview overview = new AccountOverview(1L, "John Doe", new BigDecimal("1000"), 3L, "John");
+            when(accountRepository.findOverviewById(1L)).thenReturn(Optional.of(overview));
 
-            assertEquals(2, accounts.size());
-            verify(accountRepository, times(1)).findByUserId(1L);
+            assertEquals(3L, accountService.findOverviewById(1L).getUserId());
         }
 
         @Test
-        void shouldGetAccountsExcludingUser() {
-            Account mockAccount = new Account();
-            mockAccount.setBalance(new BigDecimal("1000"));
-            mockAccount.setId(1L);
-            mockAccount.setUser(new User());
+        void shouldThrowExceptionWhenAccountOverviewNotFound() {
+            when(accountRepository.findOverviewById(1L)).thenReturn(Optional.empty());
 
-            Account mockAccount2 = new Account();
-            mockAccount.setBalance(new BigDecimal("2000"));
-            mockAccount.setId(1L);
-            mockAccount.setUser(new User());
+            IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                    () -> accountService.findOverviewById(1L));
+            assertEquals("Conta não encontrada.", exception.getMessage());
+        }
 
-            List<Account> mockAccounts = Arrays.asList(mockAccount, mockAccount2);
+        @Test
+        void shouldSearchTransferTargetByAccountId() {
+            TargetAccount target = new TargetAccount(42L, "Maria Souza");
+            when(accountRepository.findTargetAccountById(42L, 1L)).thenReturn(Optional.of(target));
 
-            when(accountRepository.findAccountsExcludingUser(1L)).thenReturn(mockAccounts);
+            List<TargetAccount> targets = accountService.searchTransferTargets(1L, " 42 ");
 
-            List<Account> accounts = accountService.getAccountsExcludingUser(1L);
+            assertEquals(1, targets.size());
+            assertEquals(42L, targets.get(0).getId());
+            verify(accountRepository, never()).findTargetAccountsByOwnerNamePrefix(anyString(), anyLong(), any(Pageable.class));
+        }
 
-            assertEquals(2, accounts.size());
-            verify(accountRepository, times(1)).findAccountsExcludingUser(1L);
+        @Test
+        void shouldSearchTransferTargetsByEscapedOwnerNamePrefixWithLimit() {
+            when(accountRepository.findTargetAccountsByOwnerNamePrefix(eq("Ma!_ria!%%"), eq(1L), any(Pageable.class)))
+                    .thenReturn(Arrays.asList(new TargetAccount(3L, "Ma_ria%"), new TargetAccount(4L, "Ma_ria% Souza")));
+
+            List<TargetAccount> targets = accountService.searchTransferTargets(1L, "Ma_ria%");
+
+            assertEquals(2, targets.size());
+            ArgumentCaptor<Pageable> pageableCaptor = ArgumentCaptor.forClass(Pageable.class);
+            verify(accountRepository, times(1)).findTargetAccountsByOwnerNamePrefix(eq("Ma!_ria!%%"), eq(1L), pageableCaptor.capture());
+            assertEquals(10, pageableCaptor.getValue().getPageSize());
+        }
+
+        @Test
+        void shouldNotSearchTransferTargetsForShortOrBlankTerms() {
+            assertTrue(accountService.searchTransferTargets(1L, "  ").isEmpty());
+            assertTrue(accountService.searchTransferTargets(1L, "M").isEmpty());
+            assertTrue(accountService.searchTransferTargets(1L, null).isEmpty());
+
+            verify(accountRepository, never()).findTargetAccountsByOwnerNamePrefix(anyString(), anyLong(), any(Pageable.class));
+            verify(accountRepository, never()).findTargetAccountById(anyLong(), anyLong());
         }
 
         @Test
         void shouldCountAccounts() {
-            when(accountRepository.count()).thenReturn(5L);
+            when(accountRepository.countAccounts(null, null, null, null)).thenReturn(5L);
 
             Long accountCount = accountService.countAccounts();
 
             assertEquals(5L, accountCount);
-            verify(accountRepository, times(1)).count();
+            verify(accountRepository, times(1)).countAccounts(null, null, null, null);
         }
 
         @Test
         void shouldCalculateTotalBalance() {
-            when(accountRepository.calculateTotalBalance()).thenReturn(new BigDecimal("10000"));
+            when(balanceAggregateService.getTotalBalance()).thenReturn(new BigDecimal("10000"));
 
             BigDecimal totalBalance = accountService.calculateTotalBalance();
 
             assertEquals(new BigDecimal("10000"), totalBalance);
-            verify(accountRepository, times(1)).calculateTotalBalance();
+            verify(balanceAggregateService, times(1)).getTotalBalance();
+            verify(accountRepository, never()).calculateTotalBalance();
         }
 
         @Test
         void shouldCalculateTotalBalanceByUser() {
-            when(accountRepository.calculateTotalBalanceByUser(1L)).thenReturn(new BigDecimal("3000"));
+            when(balanceAggregateService.getTotalBalanceByUser(1L)).thenReturn(new BigDecimal("3000"));
 
             BigDecimal totalBalanceByUser = accountService.calculateTotalBalanceByUser(1L);
 
             assertEquals(new BigDecimal("3000"), totalBalanceByUser);
-            verify(accountRepository, times(1)).calculateTotalBalanceByUser(1L);
+            verify(balanceAggregateService, times(1)).getTotalBalanceByUser(1L);
+            verify(accountRepository, never()).calculateTotalBalanceByUser(anyLong());
         }
     }
 
@@ -193,6 +364,7 @@ class AccountServiceTest {
             mockAccount.setUser(user);
 
             when(userService.findById(1L)).thenReturn(user);
+            when(accountRepository.lockNextAccountId()).thenReturn(49L);
             when(accountRepository.save(any(Account.class))).thenReturn(mockAccount);
 
             Account createdAccount = accountService.createAccount("John Doe", new BigDecimal("1000"), 1L);
@@ -202,7 +374,11 @@ class AccountServiceTest {
             assertEquals(new BigDecimal("1000"), createdAccount.getBalance());
             assertEquals(1L, createdAccount.getUser().getId());
             verify(userService, times(1)).findById(1L);
-            verify(accountRepository, times(1)).save(any(Account.class));
+            verify(accountRepository, times(1)).updateNextAccountId(50L);
+            verify(accountRepository, times(1)).save(argThat(account -> account.getId() == 1L));
+            verify(balanceAggregateService, times(1)).recordBalanceChange(1L, new BigDecimal("1000"));
+            verify(accountCountCache, times(1)).evictAll();
+            verify(userService, times(1)).evictUserDetails("test@example.com");
         }
 
         @Test
@@ -258,6 +434,7 @@ class AccountServiceTest {
 
 
             when(userService.findById(1L)).thenReturn(user);
+            when(accountRepository.lockNextAccountId()).thenReturn(49L);
             when(accountRepository.save(any(Account.class))).thenReturn(mockAccount);
 
             Account createdAccount = accountService.createAccount("John Doe", BigDecimal.ZERO, 1L);
@@ -278,17 +455,22 @@ class AccountServiceTest {
         void shouldCreditAccountSuccessfully() {
             Account account = new Account();
             account.setId(1L);
-            account.setBalance(new BigDecimal("1000"));
 
-            when(accountRepository.findById(1L)).thenReturn(Optional.of(account));
-            when(accountRepository.save(any(Account.class))).thenReturn(account);
+            when(accountRepository.creditBalance(1L, new BigDecimal("200"))).thenReturn(1);
+            when(accountRepository.findOwnerIdById(1L)).thenReturn(Optional.of(1L));
+            when(accountRepository.getReferenceById(1L)).thenReturn(account);
 
             accountService.creditAccount(1L, new BigDecimal("200"));
 
-            assertEquals(new BigDecimal("1200"), account.getBalance());
-            verify(accountRepository, times(1)).findById(1L);
-            verify(accountRepository, times(1)).save(account);
-            verify(transactionService, times(1)).save(any(Transaction.class));
+            ArgumentCaptor<Transaction> captor = ArgumentCaptor.forClass(Transaction.class);
+            verify(transactionService, times(1)).save(captor.capture());
+            assertEquals(account, captor.getValue().getAccount());
+            assertEquals(new BigDecimal("200"), captor.getValue().getAmount());
+            assertEquals("CREDIT", captor.getValue().getTransactionType());
+            verify(outboxPublisher, times(1)).publish("CREDIT", 1L, null, new BigDecimal("200"));
+            verify(balanceAggregateService, times(1)).recordBalanceChange(1L, new BigDecimal("200"));
+            verify(accountRepository, never()).findById(anyLong());
+            verify(accountRepository, never()).save(any(Account.class));
         }
 
         @Test
@@ -308,22 +490,21 @@ class AccountServiceTest {
             );
             assertEquals("O valor do crédito deve ser maior que zero.", zeroException.getMessage());
 
-            verify(accountRepository, never()).findById(anyLong());
-            verify(accountRepository, never()).save(any(Account.class));
+            verify(accountRepository, never()).creditBalance(anyLong(), any(BigDecimal.class));
             verify(transactionService, never()).save(any(Transaction.class));
         }
 
         @Test
         void shouldThrowExceptionWhenAccountNotFound() {
-            when(accountRepository.findById(1L)).thenReturn(Optional.empty());
+            when(accountRepository.creditBalance(1L, new BigDecimal("200"))).thenReturn(0);
 
             IllegalArgumentException exception = assertThrows(
                     IllegalArgumentException.class,
                     () -> accountService.creditAccount(1L, new BigDecimal("200"))
             );
             assertEquals("Conta não encontrada.", exception.getMessage());
-            verify(accountRepository, times(1)).findById(1L);
-            verify(accountRepository, never()).save(any(Account.class));
+            verify(accountRepository, times(1)).creditBalance(1L, new BigDecimal("200"));
+            verify(balanceAggregateService, never()).recordBalanceChange(anyLong(), any(BigDecimal.class));
             verify(transactionService, never()).save(any(Transaction.class));
         }
     }
@@ -335,17 +516,33 @@ class AccountServiceTest {
         void shouldDebitAccountSuccessfully() {
             Account account = new Account();
             account.setId(1L);
-            account.setBalance(new BigDecimal("1000"));
 
-            when(accountRepository.findById(1L)).thenReturn(Optional.of(account));
-            when(accountRepository.save(any(Account.class))).thenReturn(account);
+            when(accountRepository.debitBalanceIfSufficient(1L, new BigDecimal("200"))).thenReturn(1);
+            when(accountRepository.findOwnerIdById(1L)).thenReturn(Optional.of(1L));
+            when(accountRepository.getReferenceById(1L)).thenReturn(account);
 
             accountService.debitAccount(1L, new BigDecimal("200"));
 
-            assertEquals(new BigDecimal("800"), account.getBalance());
-            verify(accountRepository, times(1)).findById(1L);
-            verify(accountRepository, times(1)).save(account);
-            verify(transactionService, times(1)).save(any(Transaction.class));
+            ArgumentCaptor<Transaction> captor = ArgumentCaptor.forClass(Transaction.class);
+            verify(transactionService, times(1)).save(captor.capture());
+            assertEquals(new BigDecimal("-200"), captor.getValue().getAmount());
+            assertEquals("DEBIT", captor.getValue().getTransactionType());
+            verify(outboxPublisher, times(1)).publish("DEBIT", 1L, null, new BigDecimal("-200"));
+            verify(balanceAggregateService, times(1)).recordBalanceChange(1L, new BigDecimal("-200"));
+            verify(accountRepository, never()).findById(anyLong());
+            verify(accountRepository, never()).save(any(Account.class));
+        }
+
+        @Test
+        void shouldNotTouchDatabaseWhenVelocityLimitIsExceeded() {
+            doThrow(new VelocityLimitExceededException("bloqueado"))
+                    .when(velocityGuard).withinLimits(eq(1L), eq(new BigDecimal("200")), any(Runnable.class));
+
+            assertThrows(VelocityLimitExceededException.class,
+                    () -> accountService.debitAccount(1L, new BigDecimal("200")));
+
+            verify(accountRepository, never()).debitBalanceIfSufficient(anyLong(), any(BigDecimal.class));
+            verifyNoInteractions(transactionService, outboxPublisher);
         }
 
         @Test
@@ -365,40 +562,36 @@ class AccountServiceTest {
             );
             assertEquals("O valor do débito deve ser maior que zero.", zeroException.getMessage());
 
-            verify(accountRepository, never()).findById(anyLong());
-            verify(accountRepository, never()).save(any(Account.class));
+            verify(accountRepository, never()).debitBalanceIfSufficient(anyLong(), any(BigDecimal.class));
             verify(transactionService, never()).save(any(Transaction.class));
         }
 
         @Test
         void shouldThrowExceptionWhenAccountNotFound() {
-            when(accountRepository.findById(1L)).thenReturn(Optional.empty());
+            when(accountRepository.debitBalanceIfSufficient(1L, new BigDecimal("200"))).thenReturn(0);
+            when(accountRepository.findOwnerIdById(1L)).thenReturn(Optional.empty());
 
             IllegalArgumentException exception = assertThrows(
                     IllegalArgumentException.class,
                     () -> accountService.debitAccount(1L, new BigDecimal("200"))
             );
             assertEquals("Conta não encontrada.", exception.getMessage());
-            verify(accountRepository, times(1)).findById(1L);
-            verify(accountRepository, never()).save(any(Account.class));
+            verify(balanceAggregateService, never()).recordBalanceChange(anyLong(), any(BigDecimal.class));
             verify(transactionService, never()).save(any(Transaction.class));
         }
 
         @Test
         void shouldThrowExceptionWhenInsufficientBalance() {
-            Account account = new Account();
-            account.setId(1L);
-            account.setBalance(new BigDecimal("100"));
-
-            when(accountRepository.findById(1L)).thenReturn(Optional.of(account));
+            when(accountRepository.debitBalanceIfSufficient(1L, new BigDecimal("200"))).thenReturn(0);
+            when(accountRepository.findOwnerIdById(1L)).thenReturn(Optional.of(1L));
 
             IllegalArgumentException exception = assertThrows(
                     IllegalArgumentException.class,
                     () -> accountService.debitAccount(1L, new BigDecimal("200"))
             );
             assertEquals("Saldo insuficiente para realizar o débito.", exception.getMessage());
-            verify(accountRepository, times(1)).findById(1L);
-            verify(accountRepository, never()).save(any(Account.class));
+            verify(accountRepository, times(1)).debitBalanceIfSufficient(1L, new BigDecimal("200"));
+            verify(balanceAggregateService, never()).recordBalanceChange(anyLong(), any(BigDecimal.class));
             verify(transactionService, never()).save(any(Transaction.class));
         }
 
@@ -412,23 +605,93 @@ class AccountServiceTest {
             Account sourceAccount = new Account();
             sourceAccount.setId(1L);
             sourceAccount.setBalance(new BigDecimal("1000"));
+            sourceAccount.setUser(userWithId(1L));
 
             Account targetAccount = new Account();
             targetAccount.setId(2L);
             targetAccount.setBalance(new BigDecimal("500"));
+            targetAccount.setUser(userWithId(2L));
 
             when(accountRepository.findById(1L)).thenReturn(Optional.of(sourceAccount));
             when(accountRepository.findById(2L)).thenReturn(Optional.of(targetAccount));
 
-            accountService.transferBetweenAccounts(1L, 2L, new BigDecimal("200"));
+            assertTrue(accountService.transferBetweenAccounts(1L, 2L, new BigDecimal("200")));
 
             assertEquals(new BigDecimal("800"), sourceAccount.getBalance());
             assertEquals(new BigDecimal("700"), targetAccount.getBalance());
+            verify(balanceAggregateService, times(1)).recordBalanceChange(1L, new BigDecimal("-200"));
+            verify(balanceAggregateService, times(1)).recordBalanceChange(2L, new BigDecimal("200"));
             verify(accountRepository, times(1)).findById(1L);
             verify(accountRepository, times(1)).findById(2L);
             verify(accountRepository, times(1)).save(sourceAccount);
             verify(accountRepository, times(1)).save(targetAccount);
-            verify(transactionService, times(2)).save(any(Transaction.class));
+            verify(transactionService, times(1)).saveAll(anyList());
+            verify(transactionService, never()).save(any(Transaction.class));
+            verify(outboxPublisher, times(1)).publish("TRANSFER_OUT", 1L, 2L, new BigDecimal("-200"));
+            verify(outboxPublisher, times(1)).publish("TRANSFER_IN", 2L, 1L, new BigDecimal("200"));
+            verify(velocityGuard, times(1)).withinLimits(eq(1L), eq(new BigDecimal("200")), any(Runnable.class));
+        }
+
+        @Test
+        void shouldDelegateTransferAcrossShardsToCoordinator() {
+            doReturn(0).when(accountShards).shardOf(1L);
+            doReturn(1).when(accountShards).shardOf(2L);
+            when(shardTransferCoordinator.transfer(1L, 2L, new BigDecimal("200"))).thenReturn(false);
+
+            assertFalse(accountService.transferBetweenAccounts(1L, 2L, new BigDecimal("200")));
+
+            verify(shardTransferCoordinator, times(1)).transfer(1L, 2L, new BigDecimal("200"));
+            verify(accountRepository, never()).findById(anyLong());
+            verify(transactionService, never()).saveAll(anyList());
+            verifyNoInteractions(outboxPublisher);
+        }
+
+        @Test
+        void shouldHoldBothAccountLocksDuringTransfer() {
+            Account sourceAccount = new Account();
+            sourceAccount.setId(1L);
+            sourceAccount.setBalance(new BigDecimal("1000"));
+            sourceAccount.setUser(userWithId(1L));
+
+            Account targetAccount = new Account();
+            targetAccount.setId(2L);
+            targetAccount.setBalance(new BigDecimal("500"));
+            targetAccount.setUser(userWithId(2L));
+
+            when(accountRepository.findById(1L)).thenReturn(Optional.of(sourceAccount));
+            when(accountRepository.findById(2L)).thenReturn(Optional.of(targetAccount));
+
+            accountService.transferBetweenAccounts(1L, 2L, new BigDecimal("200"));
+
+            verify(accountLockManager, times(1)).lock(1L, 2L);
+        }
+
+        @Test
+        void shouldFailFastWhenAccountStaysLocked() throws Exception {
+            CountDownLatch locked = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+
+            try {
+                executor.submit(() -> {
+                    try (AccountLockManager.AccountLocks ignored = accountLockManager.lock(2L)) {
+                        locked.countDown();
+                        release.await();
+                    }
+                    return null;
+                });
+                assertTrue(locked.await(1, TimeUnit.SECONDS));
+
+                ConcurrentUpdateException exception = assertThrows(
+                        ConcurrentUpdateException.class,
+                        () -> accountService.transferBetweenAccounts(1L, 2L, new BigDecimal("200"))
+                );
+                assertEquals("Conta ocupada com outra operação. Tente novamente.", exception.getMessage());
+                verify(accountRepository, never()).findById(anyLong());
+            } finally {
+                release.countDown();
+                executor.shutdown();
+            }
         }
 
         @Test
@@ -485,6 +748,7 @@ class AccountServiceTest {
             Account sourceAccount = new Account();
             sourceAccount.setId(1L);
             sourceAccount.setBalance(new BigDecimal("1000"));
+            sourceAccount.setUser(userWithId(1L));
 
             when(accountRepository.findById(1L)).thenReturn(Optional.of(sourceAccount));
             when(accountRepository.findById(2L)).thenReturn(Optional.empty());
@@ -505,10 +769,12 @@ class AccountServiceTest {
             Account sourceAccount = new Account();
             sourceAccount.setId(1L);
             sourceAccount.setBalance(new BigDecimal("100"));
+            sourceAccount.setUser(userWithId(1L));
 
             Account targetAccount = new Account();
             targetAccount.setId(2L);
             targetAccount.setBalance(new BigDecimal("500"));
+            targetAccount.setUser(userWithId(2L));
 
             when(accountRepository.findById(1L)).thenReturn(Optional.of(sourceAccount));
             when(accountRepository.findById(2L)).thenReturn(Optional.of(targetAccount));
@@ -529,10 +795,12 @@ class AccountServiceTest {
             Account sourceAccount = new Account();
             sourceAccount.setId(1L);
             sourceAccount.setBalance(new BigDecimal("1000"));
+            sourceAccount.setUser(userWithId(1L));
 
             Account targetAccount = new Account();
             targetAccount.setId(2L);
             targetAccount.setBalance(new BigDecimal("500"));
+            targetAccount.setUser(userWithId(2L));
 
             when(accountRepository.findById(1L)).thenReturn(Optional.of(sourceAccount));
             when(accountRepository.findById(2L)).thenReturn(Optional.of(targetAccount));
@@ -543,9 +811,37 @@ class AccountServiceTest {
                     () -> accountService.transferBetweenAccounts(1L, 2L, new BigDecimal("200"))
             );
             assertEquals("Conflito detectado ao tentar realizar a transferência. Tente novamente.", exception.getMessage());
-            verify(accountRepository, times(1)).findById(1L);
-            verify(accountRepository, times(1)).findById(2L);
-            verify(accountRepository, times(1)).save(sourceAccount);
+            verify(accountRepository, times(3)).findById(1L);
+            verify(accountRepository, times(3)).findById(2L);
+            verify(accountRepository, times(3)).save(sourceAccount);
+            assertEquals(2, conflictRetryExecutor.getRetryCount("transfer"));
+            assertEquals(1, conflictRetryExecutor.getExhaustedCount("transfer"));
+        }
+
+        @Test
+        void shouldRetryTransferAfterTransientConflict() {
+            Account sourceAccount = new Account();
+            sourceAccount.setId(1L);
+            sourceAccount.setBalance(new BigDecimal("1000"));
+            sourceAccount.setUser(userWithId(1L));
+
+            Account targetAccount = new Account();
+            targetAccount.setId(2L);
+            targetAccount.setBalance(new BigDecimal("500"));
+            targetAccount.setUser(userWithId(2L));
+
+            when(accountRepository.findById(1L)).thenAnswer(invocation -> Optional.of(copyOf(sourceAccount)));
+            when(accountRepository.findById(2L)).thenAnswer(invocation -> Optional.of(copyOf(targetAccount)));
+            when(accountRepository.save(any(Account.class)))
+                    .thenThrow(new ObjectOptimisticLockingFailureException(Account.class, 1L))
+                    .thenAnswer(invocation -> invocation.getArgument(0));
+
+            accountService.transferBetweenAccounts(1L, 2L, new BigDecimal("200"));
+
+            verify(accountRepository, times(2)).findById(1L);
+            verify(transactionService, times(1)).saveAll(anyList());
+            assertEquals(1, conflictRetryExecutor.getRetryCount("transfer"));
+            assertEquals(0, conflictRetryExecutor.getExhaustedCount("transfer"));
         }
 
         @Test
@@ -553,10 +849,12 @@ class AccountServiceTest {
             Account sourceAccount = new Account();
             sourceAccount.setId(1L);
             sourceAccount.setBalance(new BigDecimal("1000"));
+            sourceAccount.setUser(userWithId(1L));
 
             Account targetAccount = new Account();
             targetAccount.setId(2L);
             targetAccount.setBalance(new BigDecimal("500"));
+            targetAccount.setUser(userWithId(2L));
 
             when(accountRepository.findById(1L)).thenReturn(Optional.of(sourceAccount));
             when(accountRepository.findById(2L)).thenReturn(Optional.of(targetAccount));
@@ -574,4 +872,18 @@ class AccountServiceTest {
         }
     }
 
+    private static Account copyOf(Account account) {
+        Account copy = new Account();
+        copy.setId(account.getId());
+        copy.setBalance(account.getBalance());
+        copy.setUser(account.getUser());
+        return copy;
+    }
+
+    private static User userWithId(Long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+
 }
@@ -0,0 +1,122 @@
+package io.github.msj.swiftbank.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AccountShardsTest {
+
+    private AccountShards accountShards;
+
+    @AfterEach
+    void tearDown() {
+        if (accountShards != null) {
+            accountShards.destroy();
+        }
+    }
+
+    @Test
+    void shouldKeepEverythingOnHomeShardWhenDisabled() {
+        accountShards = new AccountShards(TransactionOperations.withoutTransaction(), false,
+                new String[]{"jdbc:h2:mem:shard1"}, "hash", 1000,
+                new StaticListableBeanFactory().getBeanProvider(TaskDecorator.class));
+
+        assertFalse(accountShards.isSharded());
+        assertEquals(AccountShards.HOME_SHARD, accountShards.shardOf(42L));
+        assertEquals(Collections.singletonList(AccountShards.HOME_SHARD),
+                accountShards.fanOut(AccountShards::currentShard));
+    }
+
+    @Test
+    void shouldSpreadAccountsByHash() {
+        accountShards = new AccountShards(TransactionOperations.withoutTransaction(), 3,
+                AccountShards.Strategy.HASH, 1000);
+
+        assertEquals(1, accountShards.shardOf(1L));
+        assertEquals(2, accountShards.shardOf(2L));
+        assertEquals(0, accountShards.shardOf(3L));
+    }
+
+    @Test
+    void shouldAssignAccountsByIdRangeWithLastShardOpenEnded() {
+        accountShards = new AccountShards(TransactionOperations.withoutTransaction(), 3,
+                AccountShards.Strategy.RANGE, 100);
+
+        assertEquals(0, accountShards.shardOf(100L));
+        assertEquals(1, accountShards.shardOf(101L));
+        assertEquals(2, accountShards.shardOf(250L));
+        assertEquals(2, accountShards.shardOf(10_000L));
+    }
+
+    @Test
+    void shouldRunWorkOnEveryShardInOrder() {
+        accountShards = new AccountShards(TransactionOperations.withoutTransaction(), 3,
+                AccountShards.Strategy.HASH, 1000);
+
+        List<Integer> shards = accountShards.fanOut(AccountShards::currentShard);
+
+        assertEquals(Arrays.asList(0, 1, 2), shards);
+    }
+
+    @Test
+    void shouldPropagateFanOutFailures() {
+        accountShards = new AccountShards(TransactionOperations.withoutTransaction(), 2,
+                AccountShards.Strategy.HASH, 1000);
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> accountShards.fanOut(() -> {
+                    if (AccountShards.currentShard() == 1) {
+                        throw new IllegalStateException("shard fora do ar");
+                    }
+                    return 0;
+                }));
+
+        assertEquals("shard fora do ar", exception.getMessage());
+    }
+
+    @Test
+    void shouldRestorePreviousShardAfterWork() {
+        accountShards = new AccountShards(TransactionOperations.withoutTransaction(), 2,
+                AccountShards.Strategy.HASH, 1000);
+
+        int inner = accountShards.onShard(1, () -> accountShards.allocatingIds(AccountShards::currentShard));
+        int afterCreate = accountShards.onShard(0, () -> {
+            accountShards.createAccount(() -> 7L, id -> id);
+            return AccountShards.currentShard();
+        });
+
+        assertEquals(AccountShards.HOME_SHARD, inner);
+        assertEquals(AccountShards.HOME_SHARD, afterCreate);
+        assertEquals(AccountShards.HOME_SHARD, AccountShards.currentShard());
+    }
+
+    @Test
+    void shouldAllocateNewAccountIdOnHomeShardBeforeOpeningTransactionOnOwningShard() {
+        List<Integer> shardAtBegin = new ArrayList<>();
+        TransactionOperations recording = new TransactionOperations() {
+            @Override
+            public <T> T execute(TransactionCallback<T> action) {
+                shardAtBegin.add(AccountShards.currentShard());
+                return action.doInTransaction(null);
+            }
+        };
+        accountShards = new AccountShards(recording, 2, AccountShards.Strategy.HASH, 1000);
+
+        int persistedOn = accountShards.createAccount(() -> 7L, id -> AccountShards.currentShard());
+
+        assertEquals(Arrays.asList(AccountShards.HOME_SHARD, 1), shardAtBegin);
+        assertEquals(1, persistedOn);
+    }
+}
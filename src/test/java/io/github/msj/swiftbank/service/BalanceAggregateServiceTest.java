@@ -0,0 +1,140 @@
+package io.github.msj.swiftbank.service;
+
+import io.github.msj.swiftbank.repository.AccountRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BalanceAggregateServiceTest {
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Spy
+    AccountShards accountShards = AccountShards.single(TransactionOperations.withoutTransaction());
+
+    @Spy
+    TransactionOperations transactionOperations = TransactionOperations.withoutTransaction();
+
+    @InjectMocks
+    private BalanceAggregateService balanceAggregateService;
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void shouldLoadTotalBalanceOnceAndServeFromMemory() {
+        when(accountRepository.calculateTotalBalance()).thenReturn(new BigDecimal("1000"));
+
+        assertEquals(new BigDecimal("1000"), balanceAggregateService.getTotalBalance());
+        assertEquals(new BigDecimal("1000"), balanceAggregateService.getTotalBalance());
+
+        verify(accountRepository, times(1)).calculateTotalBalance();
+        verify(transactionOperations, times(1)).execute(any());
+    }
+
+    @Test
+    void shouldApplyDeltasToLoadedAggregates() {
+        when(accountRepository.calculateTotalBalance()).thenReturn(new BigDecimal("1000"));
+        when(accountRepository.calculateTotalBalanceByUser(1L)).thenReturn(new BigDecimal("400"));
+
+        balanceAggregateService.getTotalBalance();
+        balanceAggregateService.getTotalBalanceByUser(1L);
+
+        balanceAggregateService.recordBalanceChange(1L, new BigDecimal("-150"));
+
+        assertEquals(new BigDecimal("850"), balanceAggregateService.getTotalBalance());
+        assertEquals(new BigDecimal("250"), balanceAggregateService.getTotalBalanceByUser(1L));
+        verify(accountRepository, times(1)).calculateTotalBalance();
+        verify(accountRepository, times(1)).calculateTotalBalanceByUser(1L);
+    }
+
+    @Test
+    void shouldApplyDeltaOnlyAfterCommit() {
+        when(accountRepository.calculateTotalBalance()).thenReturn(new BigDecimal("1000"));
+        balanceAggregateService.getTotalBalance();
+
+        TransactionSynchronizationManager.initSynchronization();
+        balanceAggregateService.recordBalanceChange(1L, new BigDecimal("200"));
+
+        assertEquals(new BigDecimal("1000"), balanceAggregateService.getTotalBalance());
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+
+        assertEquals(new BigDecimal("1200"), balanceAggregateService.getTotalBalance());
+    }
+
+    @Test
+    void shouldDiscardDeltaOnRollback() {
+        when(accountRepository.calculateTotalBalance()).thenReturn(new BigDecimal("1000"));
+        balanceAggregateService.getTotalBalance();
+
+        TransactionSynchronizationManager.initSynchronization();
+        balanceAggregateService.recordBalanceChange(1L, new BigDecimal("200"));
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+
+        assertEquals(new BigDecimal("1000"), balanceAggregateService.getTotalBalance());
+    }
+
+    @Test
+    void shouldNotCacheValueLoadedWhileMutationIsInFlight() {
+        when(accountRepository.calculateTotalBalance()).thenReturn(new BigDecimal("1000"), new BigDecimal("1200"));
+
+        TransactionSynchronizationManager.initSynchronization();
+        balanceAggregateService.recordBalanceChange(1L, new BigDecimal("200"));
+
+        assertEquals(new BigDecimal("1000"), balanceAggregateService.getTotalBalance());
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+
+        assertEquals(new BigDecimal("1200"), balanceAggregateService.getTotalBalance());
+        verify(accountRepository, times(2)).calculateTotalBalance();
+    }
+
+    @Test
+    void shouldReloadAggregatesWhenVerifierDetectsDrift() {
+        when(accountRepository.calculateTotalBalance())
+                .thenReturn(new BigDecimal("1000"), new BigDecimal("900"), new BigDecimal("900"));
+        when(accountRepository.calculateTotalBalanceByUser(1L)).thenReturn(new BigDecimal("400"));
+        when(accountRepository.calculateTotalBalancePerUser())
+                .thenReturn(Collections.singletonList(new Object[]{1L, new BigDecimal("400")}));
+
+        balanceAggregateService.getTotalBalance();
+        balanceAggregateService.getTotalBalanceByUser(1L);
+
+        balanceAggregateService.verifyAggregates();
+
+        assertEquals(new BigDecimal("900"), balanceAggregateService.getTotalBalance());
+        assertEquals(new BigDecimal("400"), balanceAggregateService.getTotalBalanceByUser(1L));
+        verify(accountRepository, times(3)).calculateTotalBalance();
+        verify(accountRepository, times(1)).calculateTotalBalanceByUser(1L);
+    }
+}
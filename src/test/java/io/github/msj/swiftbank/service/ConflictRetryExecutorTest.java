@@ -0,0 +1,76 @@
+package io.github.msj.swiftbank.service;
+
+import io.github.msj.swiftbank.exception.ConcurrentUpdateException;
+import jakarta.persistence.OptimisticLockException;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConflictRetryExecutorTest {
+
+    private final ConflictRetryExecutor executor =
+            new ConflictRetryExecutor(TransactionOperations.withoutTransaction(), 3, 0, 0);
+
+    @Test
+    void shouldRetryUntilWorkSucceeds() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = executor.execute("credit", "Conflito", () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new CannotAcquireLockException("deadlock");
+            }
+            return "ok";
+        });
+
+        assertEquals("ok", result);
+        assertEquals(3, attempts.get());
+        assertEquals(2, executor.getRetryCount("credit"));
+        assertEquals(0, executor.getExhaustedCount("credit"));
+    }
+
+    @Test
+    void shouldGiveUpAfterMaxAttempts() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        ConcurrentUpdateException exception = assertThrows(ConcurrentUpdateException.class,
+                () -> executor.run("debit", "Conflito detectado.", () -> {
+                    attempts.incrementAndGet();
+                    throw new IllegalStateException(new OptimisticLockException("stale"));
+                }));
+
+        assertEquals("Conflito detectado.", exception.getMessage());
+        assertEquals(3, attempts.get());
+        assertEquals(2, executor.getRetryCount("debit"));
+        assertEquals(1, executor.getExhaustedCount("debit"));
+    }
+
+    @Test
+    void shouldNotRetryOtherFailures() {
+        AtomicInteger attempts = new AtomicInteger();
+        IllegalArgumentException failure = new IllegalArgumentException("Saldo insuficiente");
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> executor.run("transfer", "Conflito", () -> {
+                    attempts.incrementAndGet();
+                    throw failure;
+                }));
+
+        assertSame(failure, exception);
+        assertEquals(1, attempts.get());
+        assertEquals(0, executor.getRetryCount("transfer"));
+    }
+
+    @Test
+    void shouldRecognizeConflictsInCauseChain() {
+        assertTrue(ConflictRetryExecutor.isConflict(new RuntimeException(new OptimisticLockException())));
+        assertFalse(ConflictRetryExecutor.isConflict(new RuntimeException("outro")));
+    }
+}
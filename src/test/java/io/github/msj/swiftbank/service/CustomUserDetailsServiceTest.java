@@ -1,16 +1,21 @@
 package io.github.msj.swiftbank.service;
 
+import io.github.msj.swiftbank.dto.SwiftBankUserDetails;
+import io.github.msj.swiftbank.repository.AccountRepository;
 import io.github.msj.swiftbank.repository.UserRepository;
 import io.github.msj.swiftbank.entity.Role;
 import io.github.msj.swiftbank.entity.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.transaction.support.TransactionOperations;
 
 import java.util.Arrays;
 import java.util.HashSet;
@@ -28,12 +33,22 @@ class CustomUserDetailsServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Spy
+    private UserDetailsCache userDetailsCache = new UserDetailsCache(new SimpleMeterRegistry(), 100, 60000);
+
+    @Spy
+    private AccountShards accountShards = AccountShards.single(TransactionOperations.withoutTransaction());
+
     @InjectMocks
     private CustomUserDetailsService customUserDetailsService;
 
     @Test
     void shouldLoadUserByUsernameSuccessfully() {
         User mockUser = new User();
+        mockUser.setId(7L);
         mockUser.setUsername("testuser");
         mockUser.setPassword("password123");
 
@@ -46,6 +61,7 @@ class CustomUserDetailsServiceTest {
         mockUser.setRoles(new HashSet<>(Arrays.asList(role1, role2)));
 
         when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(mockUser));
+        when(accountRepository.findIdsByUserId(7L)).thenReturn(Arrays.asList(10L, 11L));
 
         UserDetails userDetails = customUserDetailsService.loadUserByUsername("testuser");
 
@@ -57,9 +73,42 @@ class CustomUserDetailsServiceTest {
                 .collect(Collectors.toList())
                 .containsAll(Arrays.asList("ROLE_USER", "ROLE_ADMIN")));
 
+        SwiftBankUserDetails principal = (SwiftBankUserDetails) userDetails;
+        assertEquals(7L, principal.getUserId());
+        assertTrue(principal.ownsAccount(10L));
+        assertTrue(principal.ownsAccount(11L));
+        assertFalse(principal.ownsAccount(12L));
+
         verify(userRepository, times(1)).findByUsername("testuser");
     }
 
+    @Test
+    void shouldCollectOwnedAccountsFromEveryShard() {
+        AccountShards twoShards = new AccountShards(TransactionOperations.withoutTransaction(), 2,
+                AccountShards.Strategy.HASH, 1);
+        CustomUserDetailsService shardedService = new CustomUserDetailsService(userRepository, accountRepository,
+                userDetailsCache, twoShards);
+        User mockUser = new User();
+        mockUser.setId(7L);
+        mockUser.setUsername("testuser");
+        mockUser.setPassword("password123");
+        mockUser.setRoles(new HashSet<>());
+
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(mockUser));
+        when(accountRepository.findIdsByUserId(7L)).thenAnswer(invocation ->
+                AccountShards.currentShard() == 0 ? Arrays.asList(10L) : Arrays.asList(11L));
+
+        try {
+            SwiftBankUserDetails principal = (SwiftBankUserDetails) shardedService.loadUserByUsername("testuser");
+
+            assertTrue(principal.ownsAccount(10L));
+            assertTrue(principal.ownsAccount(11L));
+            verify(accountRepository, times(2)).findIdsByUserId(7L);
+        } finally {
+            twoShards.destroy();
+        }
+    }
+
     @Test
     void shouldThrowExceptionWhenUserNotFound() {
         when(userRepository.findByUsername("unknownuser")).thenReturn(Optional.empty());
@@ -72,4 +121,51 @@ class CustomUserDetailsServiceTest {
 
         verify(userRepository, times(1)).findByUsername("unknownuser");
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldServeRepeatedLoginsFromCacheWithIndependentCopies() {
+        User mockUser = new User();
+        mockUser.setId(7L);
+        mockUser.setUsername("testuser");
+        mockUser.setPassword("password123");
+        mockUser.setEnabled(true);
+        mockUser.setRoles(new HashSet<>());
+
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(mockUser));
+        when(accountRepository.findIdsByUserId(7L)).thenReturn(Arrays.asList(10L));
+
+        SwiftBankUserDetails first = (SwiftBankUserDetails) customUserDetailsService.loadUserByUsername("testuser");
+        first.eraseCredentials();
+        UserDetails second = customUserDetailsService.loadUserByUsername("testuser");
+
+        assertEquals("password123", second.getPassword());
+        verify(userRepository, times(1)).findByUsername("testuser");
+
+        userDetailsCache.evict("testuser");
+        customUserDetailsService.loadUserByUsername("testuser");
+
+        verify(userRepository, times(2)).findByUsername("testuser");
+    }
+
+    @Test
+    void shouldPersistRehashedPasswordAndEvictCachedEntry() {
+        User mockUser = new User();
+        mockUser.setId(7L);
+        mockUser.setUsername("testuser");
+        mockUser.setPassword("$2a$08$antigo");
+        mockUser.setEnabled(true);
+        mockUser.setRoles(new HashSet<>());
+
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(mockUser));
+        when(accountRepository.findIdsByUserId(7L)).thenReturn(Arrays.asList(10L));
+
+        UserDetails loaded = customUserDetailsService.loadUserByUsername("testuser");
+        UserDetails updated = customUserDetailsService.updatePassword(loaded, "$2a$10$novo");
+
+        assertEquals("$2a$10$novo", mockUser.getPassword());
+        assertEquals("$2a$10$novo", updated.getPassword());
+        assertTrue(((SwiftBankUserDetails) updated).ownsAccount(10L));
+        verify(userRepository, times(1)).save(mockUser);
+        verify(userDetailsCache, times(1)).evict("testuser");
+    }
+}
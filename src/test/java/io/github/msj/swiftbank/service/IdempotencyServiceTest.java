@@ -0,0 +1,137 @@
+package io.github.msj.swiftbank.service;
+
+import io.github.msj.swiftbank.dto.OperationOutcome;
+import io.github.msj.swiftbank.entity.IdempotencyRecord;
+import io.github.msj.swiftbank.exception.ConcurrentUpdateException;
+import io.github.msj.swiftbank.repository.IdempotencyRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyServiceTest {
+
+    @Mock
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    private IdempotencyService idempotencyService;
+
+    private static final List<Object> CREDIT_REQUEST = Arrays.asList(1L, new BigDecimal("100.00"));
+
+    @BeforeEach
+    void setUp() {
+        idempotencyService = new IdempotencyService(idempotencyRecordRepository,
+                TransactionOperations.withoutTransaction(), 100, 60000);
+    }
+
+    @Test
+    void shouldRunActionOnceAndReplayCachedOutcome() {
+        AtomicInteger executions = new AtomicInteger();
+
+        OperationOutcome first = idempotencyService.execute("testuser", "chave-1", "credit", CREDIT_REQUEST, () -> {
+            executions.incrementAndGet();
+            return "Valor creditado com sucesso!";
+        });
+        OperationOutcome replay = idempotencyService.execute("testuser", "chave-1", "credit", CREDIT_REQUEST, () -> {
+            executions.incrementAndGet();
+            return "Valor creditado com sucesso!";
+        });
+
+        assertEquals(OperationOutcome.success("Valor creditado com sucesso!"), first);
+        assertEquals(first, replay);
+        assertEquals(1, executions.get());
+        verify(idempotencyRecordRepository, times(1)).saveAndFlush(any(IdempotencyRecord.class));
+        verify(idempotencyRecordRepository, times(1)).complete("testuser:credit:chave-1",
+                IdempotencyRecord.Status.SUCCEEDED, "Valor creditado com sucesso!");
+    }
+
+    @Test
+    void shouldRejectReusedKeyWithDifferentParameters() {
+        idempotencyService.execute("testuser", "chave-1", "credit", CREDIT_REQUEST, () -> "Valor creditado com sucesso!");
+
+        OperationOutcome outcome = idempotencyService.execute("testuser", "chave-1", "credit",
+                Arrays.asList(1L, new BigDecimal("5000")), () -> {
+                    throw new AssertionError("Não deveria executar novamente");
+                });
+        OperationOutcome sameAmount = idempotencyService.execute("testuser", "chave-1", "credit",
+                Arrays.asList(1L, new BigDecimal("100")), () -> {
+                    throw new AssertionError("Não deveria executar novamente");
+                });
+
+        assertEquals(OperationOutcome.failure("Esta chave de idempotência já foi usada com outros dados. Recarregue o formulário e tente novamente."), outcome);
+        assertEquals(OperationOutcome.success("Valor creditado com sucesso!"), sameAmount);
+    }
+
+    @Test
+    void shouldReleaseKeyWhenActionIsRejectedBeforeAnyWrite() {
+        OperationOutcome outcome = idempotencyService.execute("testuser", "chave-2", "debit", CREDIT_REQUEST, () -> {
+            throw new IllegalArgumentException("Saldo insuficiente para realizar o débito.");
+        });
+
+        assertEquals(OperationOutcome.failure("Saldo insuficiente para realizar o débito."), outcome);
+        verify(idempotencyRecordRepository, times(1)).deleteById("testuser:debit:chave-2");
+        verify(idempotencyRecordRepository, never()).complete(anyString(), any(), any());
+    }
+
+    @Test
+    void shouldNotRunActionWhileDuplicateIsInFlight() {
+        when(idempotencyRecordRepository.saveAndFlush(any(IdempotencyRecord.class)))
+                .thenThrow(new DataIntegrityViolationException("duplicada"));
+        List<Object> request = Arrays.asList(1L, 2L, new BigDecimal("10"));
+        IdempotencyRecord stored = new IdempotencyRecord("testuser:transfer:chave-3", "transfer",
+                IdempotencyService.hash(request));
+        when(idempotencyRecordRepository.findById("testuser:transfer:chave-3")).thenReturn(Optional.of(stored));
+
+        OperationOutcome outcome = idempotencyService.execute("testuser", "chave-3", "transfer", request, () -> {
+            throw new AssertionError("Não deveria executar novamente");
+        });
+
+        assertEquals(OperationOutcome.failure("Esta operação já está sendo processada. Aguarde e consulte o extrato."), outcome);
+        verify(idempotencyRecordRepository, never()).complete(anyString(), any(), any());
+    }
+
+    @Test
+    void shouldKeepKeyWhenActionFailsAfterItMayHaveWritten() {
+        assertThrows(ConcurrentUpdateException.class,
+                () -> idempotencyService.execute("testuser", "chave-4", "credit", CREDIT_REQUEST, () -> {
+                    throw new ConcurrentUpdateException("Conflito");
+                }));
+        OperationOutcome retry = idempotencyService.execute("testuser", "chave-4", "credit", CREDIT_REQUEST, () -> {
+            throw new AssertionError("Não deveria executar novamente");
+        });
+
+        assertEquals(OperationOutcome.failure(IdempotencyService.UNCONFIRMED_MESSAGE), retry);
+        verify(idempotencyRecordRepository, never()).deleteById(anyString());
+        verify(idempotencyRecordRepository, times(1)).complete("testuser:credit:chave-4",
+                IdempotencyRecord.Status.FAILED, IdempotencyService.UNCONFIRMED_MESSAGE);
+    }
+
+    @Test
+    void shouldRunWithoutDeduplicationWhenKeyIsMissing() {
+        OperationOutcome outcome = idempotencyService.execute("testuser", null, "credit",
+                Collections.emptyList(), () -> "ok");
+
+        assertEquals(OperationOutcome.success("ok"), outcome);
+        verify(idempotencyRecordRepository, never()).saveAndFlush(any(IdempotencyRecord.class));
+    }
+}
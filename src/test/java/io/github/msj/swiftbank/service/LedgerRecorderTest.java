@@ -0,0 +1,118 @@
+package io.github.msj.swiftbank.service;
+
+import io.github.msj.swiftbank.entity.Account;
+import io.github.msj.swiftbank.entity.OutboxEvent;
+import io.github.msj.swiftbank.entity.Transaction;
+import io.github.msj.swiftbank.entity.User;
+import io.github.msj.swiftbank.repository.AccountRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class LedgerRecorderTest {
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private TransactionService transactionService;
+
+    @Mock
+    private BalanceAggregateService balanceAggregateService;
+
+    @Mock
+    private OutboxPublisher outboxPublisher;
+
+    @Mock
+    private LedgerWriter ledgerWriter;
+
+    private LedgerRecorder ledgerRecorder;
+
+    @BeforeEach
+    void setUp() {
+        ledgerRecorder = new LedgerRecorder(accountRepository, transactionService, balanceAggregateService,
+                AccountShards.single(TransactionOperations.withoutTransaction()), outboxPublisher, ledgerWriter);
+    }
+
+    @Test
+    void shouldRecordAggregateLedgerRowAndOutboxEventForOneEntry() {
+        Account account = new Account();
+        when(accountRepository.getReferenceById(2L)).thenReturn(account);
+        BigDecimal amount = new BigDecimal("-100");
+
+        ledgerRecorder.record(2L, 7L, 3L, amount, "TRANSFER_OUT");
+
+        verify(balanceAggregateService).recordBalanceChange(7L, amount);
+        ArgumentCaptor<Transaction> captor = ArgumentCaptor.forClass(Transaction.class);
+        verify(transactionService).save(captor.capture());
+        assertSame(account, captor.getValue().getAccount());
+        assertEquals(amount, captor.getValue().getAmount());
+        assertEquals("TRANSFER_OUT", captor.getValue().getTransactionType());
+        verify(outboxPublisher).publish("TRANSFER_OUT", 2L, 3L, amount);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldRecordBothLegsOfATransferInOneBatch() {
+        Account source = account(1L, 10L);
+        Account target = account(2L, 20L);
+        BigDecimal amount = new BigDecimal("50");
+
+        ledgerRecorder.recordTransfer(source, target, amount);
+
+        verify(balanceAggregateService).recordBalanceChange(10L, amount.negate());
+        verify(balanceAggregateService).recordBalanceChange(20L, amount);
+        ArgumentCaptor<List<Transaction>> captor = ArgumentCaptor.forClass(List.class);
+        verify(transactionService).saveAll(captor.capture());
+        assertEquals(2, captor.getValue().size());
+        assertSame(source, captor.getValue().get(0).getAccount());
+        assertEquals("TRANSFER_OUT", captor.getValue().get(0).getTransactionType());
+        assertSame(target, captor.getValue().get(1).getAccount());
+        assertEquals("TRANSFER_IN", captor.getValue().get(1).getTransactionType());
+        verify(outboxPublisher).publish("TRANSFER_OUT", 1L, 2L, amount.negate());
+        verify(outboxPublisher).publish("TRANSFER_IN", 2L, 1L, amount);
+    }
+
+    @Test
+    void shouldHandPublishedEventsToTheLedgerWriterWhenWriteBehindIsEnabled() {
+        Account source = account(1L, 10L);
+        Account target = account(2L, 20L);
+        BigDecimal amount = new BigDecimal("50");
+        OutboxEvent debitEvent = new OutboxEvent("TRANSFER_OUT", 1L, 2L, amount.negate());
+        OutboxEvent creditEvent = new OutboxEvent("TRANSFER_IN", 2L, 1L, amount);
+        when(ledgerWriter.isEnabled()).thenReturn(true);
+        when(outboxPublisher.publish("TRANSFER_OUT", 1L, 2L, amount.negate())).thenReturn(debitEvent);
+        when(outboxPublisher.publish("TRANSFER_IN", 2L, 1L, amount)).thenReturn(creditEvent);
+
+        ledgerRecorder.recordTransfer(source, target, amount);
+
+        verify(ledgerWriter).writeAfterCommit(Arrays.asList(debitEvent, creditEvent));
+        verify(balanceAggregateService).recordBalanceChange(10L, amount.negate());
+        verify(transactionService, never()).saveAll(anyList());
+    }
+
+    private static Account account(Long accountId, Long ownerId) {
+        User user = new User();
+        user.setId(ownerId);
+        Account account = new Account();
+        account.setId(accountId);
+        account.setUser(user);
+        return account;
+    }
+}
@@ -0,0 +1,166 @@
+package io.github.msj.swiftbank.service;
+
+import io.github.msj.swiftbank.entity.Account;
+import io.github.msj.swiftbank.entity.OutboxEvent;
+import io.github.msj.swiftbank.entity.Transaction;
+import io.github.msj.swiftbank.repository.AccountRepository;
+import io.github.msj.swiftbank.repository.TransactionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class LedgerWriterTest {
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    private LedgerWriter ledgerWriter;
+
+    @BeforeEach
+    void setUp() {
+        ledgerWriter = writer(true);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        ledgerWriter.stop();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void shouldWriteOneLedgerRowPerOutboxEvent() {
+        when(accountRepository.getReferenceById(anyLong())).thenReturn(new Account());
+        when(transactionRepository.findSourceEventIdsIn(Arrays.asList(10L, 11L))).thenReturn(Collections.<Long>emptyList());
+        OutboxEvent debit = event(10L, "TRANSFER_OUT", new BigDecimal("-30"));
+        OutboxEvent credit = event(11L, "TRANSFER_IN", new BigDecimal("30"));
+
+        ledgerWriter.onEvents(Arrays.asList(debit, credit));
+
+        List<Transaction> rows = savedRows();
+        assertEquals(2, rows.size());
+        assertEquals("TRANSFER_OUT", rows.get(0).getTransactionType());
+        assertEquals(new BigDecimal("-30"), rows.get(0).getAmount());
+        assertEquals(Long.valueOf(10L), rows.get(0).getSourceEventId());
+        assertEquals(debit.getCreatedAt(), rows.get(0).getCreatedAt());
+        assertEquals(Long.valueOf(11L), rows.get(1).getSourceEventId());
+    }
+
+    @Test
+    void shouldSkipEventsAlreadyWrittenWhenABatchIsRedelivered() {
+        when(accountRepository.getReferenceById(anyLong())).thenReturn(new Account());
+        when(transactionRepository.findSourceEventIdsIn(Arrays.asList(10L, 11L))).thenReturn(Collections.singletonList(10L));
+
+        ledgerWriter.onEvents(Arrays.asList(event(10L, "CREDIT", BigDecimal.TEN), event(11L, "DEBIT", BigDecimal.ONE.negate())));
+
+        List<Transaction> rows = savedRows();
+        assertEquals(1, rows.size());
+        assertEquals(Long.valueOf(11L), rows.get(0).getSourceEventId());
+    }
+
+    @Test
+    void shouldAcknowledgeRowsBeforeTheCommittingThreadReturns() {
+        when(accountRepository.getReferenceById(anyLong())).thenReturn(new Account());
+        when(transactionRepository.findSourceEventIdsIn(Arrays.asList(10L, 11L))).thenReturn(Collections.<Long>emptyList());
+        ledgerWriter.start();
+        TransactionSynchronizationManager.initSynchronization();
+
+        ledgerWriter.writeAfterCommit(Arrays.asList(event(10L, "TRANSFER_OUT", new BigDecimal("-30")),
+                event(11L, "TRANSFER_IN", new BigDecimal("30"))));
+        verify(transactionRepository, never()).saveAll(anyList());
+        commit();
+
+        assertEquals(2, savedRows().size());
+    }
+
+    @Test
+    void shouldLeaveRowsToTheRelayWhenTheGroupCommitFails() {
+        when(accountRepository.getReferenceById(anyLong())).thenReturn(new Account());
+        when(transactionRepository.findSourceEventIdsIn(Collections.singletonList(10L))).thenReturn(Collections.<Long>emptyList());
+        when(transactionRepository.saveAll(anyList())).thenThrow(new IllegalStateException("indisponível"));
+        ledgerWriter.start();
+        TransactionSynchronizationManager.initSynchronization();
+
+        ledgerWriter.writeAfterCommit(Collections.singletonList(event(10L, "CREDIT", BigDecimal.TEN)));
+
+        assertDoesNotThrow(this::commit);
+        verify(transactionRepository, times(1)).saveAll(anyList());
+    }
+
+    @Test
+    void shouldNotWaitForAStoppedWriter() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        ledgerWriter.writeAfterCommit(Collections.singletonList(event(10L, "CREDIT", BigDecimal.TEN)));
+
+        assertDoesNotThrow(this::commit);
+        verify(transactionRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void shouldRefuseToDeferRowsOutsideATransaction() {
+        assertThrows(IllegalStateException.class,
+                () -> ledgerWriter.writeAfterCommit(Collections.singletonList(event(10L, "CREDIT", BigDecimal.TEN))));
+        verify(transactionRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void shouldStayOutOfTheRelayWhenWriteBehindIsDisabled() {
+        assertFalse(writer(false).isEnabled());
+    }
+
+    private LedgerWriter writer(boolean enabled) {
+        return new LedgerWriter(transactionRepository, accountRepository,
+                TransactionOperations.withoutTransaction(), AccountShards.single(TransactionOperations.withoutTransaction()),
+                enabled, 16, 10, 2000);
+    }
+
+    private void commit() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Transaction> savedRows() {
+        ArgumentCaptor<List<Transaction>> captor = ArgumentCaptor.forClass(List.class);
+        verify(transactionRepository, times(1)).saveAll(captor.capture());
+        return captor.getValue();
+    }
+
+    private static OutboxEvent event(Long id, String type, BigDecimal amount) {
+        OutboxEvent event = new OutboxEvent(type, 1L, null, amount);
+        ReflectionTestUtils.setField(event, "id", id);
+        event.prePersist();
+        return event;
+    }
+}
@@ -0,0 +1,181 @@
+package io.github.msj.swiftbank.service;
+
+import io.github.msj.swiftbank.dto.AccountSummary;
+import io.github.msj.swiftbank.dto.LiveFeedEvent;
+import io.github.msj.swiftbank.entity.OutboxEvent;
+import io.github.msj.swiftbank.repository.AccountRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LiveFeedServiceTest {
+
+    private static final LocalDateTime STARTED_AT = LocalDateTime.of(2025, 1, 1, 10, 0);
+
+    private final AccountRepository accountRepository = mock(AccountRepository.class);
+
+    private final List<RecordingEmitter> emitters = new ArrayList<>();
+
+    private final List<Runnable> pendingSends = new ArrayList<>();
+
+    private final LiveFeedService liveFeedService = new LiveFeedService(accountRepository, 60000, 2, 3, pendingSends::add) {
+        @Override
+        SseEmitter createEmitter(long timeoutMillis) {
+            RecordingEmitter emitter = new RecordingEmitter();
+            emitters.add(emitter);
+            return emitter;
+        }
+    };
+
+    @Test
+    void shouldPushEventsOnlyToConnectionsWatchingTheAccount() {
+        liveFeedService.subscribe(Arrays.asList(1L, 2L));
+        liveFeedService.subscribe(Collections.singletonList(3L));
+
+        liveFeedService.onEvents(Arrays.asList(event(10L, 2L, STARTED_AT.plusSeconds(1)),
+                event(11L, 3L, STARTED_AT.plusSeconds(2))));
+        runSenders();
+
+        assertEquals(2, emitters.get(0).sent);
+        assertEquals(2, emitters.get(1).sent);
+    }
+
+    @Test
+    void shouldCarryTheCurrentAccountBalanceInEachEvent() {
+        when(accountRepository.findSummariesByIdIn(Collections.singleton(1L)))
+                .thenReturn(Collections.singletonList(new AccountSummary(1L, "Joana", new BigDecimal("250"))));
+        liveFeedService.subscribe(Collections.singletonList(1L));
+
+        liveFeedService.onEvents(Collections.singletonList(event(10L, 1L, STARTED_AT.plusSeconds(1))));
+        runSenders();
+
+        assertEquals(new BigDecimal("250"), emitters.get(0).lastEvent.getBalance());
+    }
+
+    @Test
+    void shouldNotLoadBalancesWhenNobodyWatchesTheAccounts() {
+        liveFeedService.subscribe(Collections.singletonList(1L));
+
+        liveFeedService.onEvents(Collections.singletonList(event(10L, 5L, STARTED_AT.plusSeconds(1))));
+
+        verify(accountRepository, never()).findSummariesByIdIn(anyCollection());
+    }
+
+    @Test
+    void shouldDropConnectionWhenClientIsGone() {
+        liveFeedService.subscribe(Collections.singletonList(1L));
+        emitters.get(0).broken = true;
+
+        liveFeedService.onEvents(Collections.singletonList(event(10L, 1L, STARTED_AT.plusSeconds(1))));
+        runSenders();
+
+        assertEquals(0, liveFeedService.getConnectionCount());
+    }
+
+    @Test
+    void shouldOnlyQueueEventsOnTheRelayThread() {
+        liveFeedService.subscribe(Collections.singletonList(1L));
+
+        liveFeedService.onEvents(Collections.singletonList(event(10L, 1L, STARTED_AT.plusSeconds(1))));
+
+        assertEquals(0, emitters.get(0).sent);
+        assertEquals(1, pendingSends.size());
+
+        runSenders();
+
+        assertEquals(2, emitters.get(0).sent);
+    }
+
+    @Test
+    void shouldCloseConnectionWhoseQueueOverflows() {
+        liveFeedService.subscribe(Collections.singletonList(1L));
+        liveFeedService.subscribe(Collections.singletonList(2L));
+
+        liveFeedService.onEvents(Arrays.asList(event(10L, 1L, STARTED_AT.plusSeconds(1)),
+                event(11L, 1L, STARTED_AT.plusSeconds(2)),
+                event(12L, 1L, STARTED_AT.plusSeconds(3)),
+                event(13L, 2L, STARTED_AT.plusSeconds(4))));
+
+        assertEquals(1, liveFeedService.getConnectionCount());
+
+        runSenders();
+
+        assertEquals(0, emitters.get(0).sent);
+        assertTrue(emitters.get(0).completed);
+        assertEquals(2, emitters.get(1).sent);
+        assertFalse(emitters.get(1).completed);
+    }
+
+    @Test
+    void shouldRefuseConnectionsBeyondTheLimit() {
+        assertTrue(liveFeedService.subscribe(Collections.singletonList(1L)).isPresent());
+        assertTrue(liveFeedService.subscribe(Collections.singletonList(1L)).isPresent());
+
+        Optional<SseEmitter> refused = liveFeedService.subscribe(Collections.singletonList(1L));
+
+        assertFalse(refused.isPresent());
+        assertEquals(2, liveFeedService.getConnectionCount());
+    }
+
+    private void runSenders() {
+        while (!pendingSends.isEmpty()) {
+            pendingSends.remove(0).run();
+        }
+    }
+
+    private static OutboxEvent event(Long id, Long accountId, LocalDateTime createdAt) {
+        OutboxEvent event = new OutboxEvent("CREDIT", accountId, null, new BigDecimal("10"));
+        ReflectionTestUtils.setField(event, "id", id);
+        ReflectionTestUtils.setField(event, "createdAt", createdAt);
+        return event;
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+
+        private int sent;
+
+        private boolean broken;
+
+        private boolean completed;
+
+        private LiveFeedEvent lastEvent;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (broken) {
+                throw new IOException("Broken pipe");
+            }
+            sent++;
+            for (ResponseBodyEmitter.DataWithMediaType data : builder.build()) {
+                if (data.getData() instanceof LiveFeedEvent) {
+                    lastEvent = (LiveFeedEvent) data.getData();
+                }
+            }
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+            super.complete();
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package io.github.msj.swiftbank.service;
+
+import io.github.msj.swiftbank.entity.OutboxCheckpoint;
+import io.github.msj.swiftbank.entity.OutboxEvent;
+import io.github.msj.swiftbank.repository.OutboxCheckpointRepository;
+import io.github.msj.swiftbank.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayTest {
+
+    @Mock
+    OutboxEventRepository outboxEventRepository;
+
+    @Mock
+    OutboxCheckpointRepository outboxCheckpointRepository;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final RecordingSubscriber subscriber = new RecordingSubscriber();
+
+    @Test
+    void shouldDeliverBatchAndAdvanceCheckpoint() {
+        when(outboxCheckpointRepository.findById("recorder")).thenReturn(Optional.empty());
+        when(outboxEventRepository.findAfter(0L, Limit.of(3))).thenReturn(events(1L, 2L, 3L));
+
+        boolean moreAvailable = relay(subscriber).relayOnce();
+
+        assertTrue(moreAvailable);
+        assertEquals(Arrays.asList(1L, 2L, 3L), subscriber.deliveredIds);
+        assertEquals(3L, savedCheckpoint().getLastSequenceNumber());
+        assertEquals(3.0, meterRegistry.counter("swiftbank.outbox.delivered", "subscriber", "recorder").count());
+    }
+
+    @Test
+    void shouldNumberCommittedEventsAfterEverythingAlreadyNumbered() {
+        List<OutboxEvent> unsequenced = events(4L, 6L);
+        for (OutboxEvent event : unsequenced) {
+            event.setSequenceNumber(null);
+        }
+        when(outboxEventRepository.lockNextSequenceNumber()).thenReturn(8L);
+        when(outboxEventRepository.findUnsequenced(Limit.of(3))).thenReturn(unsequenced);
+        when(outboxCheckpointRepository.findById("recorder")).thenReturn(Optional.empty());
+
+        relay(subscriber).relayOnce();
+
+        assertEquals(8L, unsequenced.get(0).getSequenceNumber());
+        assertEquals(9L, unsequenced.get(1).getSequenceNumber());
+        verify(outboxEventRepository, times(1)).updateNextSequenceNumber(10L);
+    }
+
+    @Test
+    void shouldDeliverEventsThatCommittedOutOfIdOrder() {
+        OutboxEvent lateCommit = events(3L).get(0);
+        lateCommit.setSequenceNumber(8L);
+        OutboxEvent earlyCommit = events(5L).get(0);
+        earlyCommit.setSequenceNumber(7L);
+        when(outboxCheckpointRepository.findById("recorder")).thenReturn(Optional.of(new OutboxCheckpoint("recorder", 6L)));
+        when(outboxEventRepository.findAfter(6L, Limit.of(3))).thenReturn(Arrays.asList(earlyCommit, lateCommit));
+
+        boolean moreAvailable = relay(subscriber).relayOnce();
+
+        assertFalse(moreAvailable);
+        assertEquals(Arrays.asList(5L, 3L), subscriber.deliveredIds);
+        assertEquals(8L, savedCheckpoint().getLastSequenceNumber());
+    }
+
+    @Test
+    void shouldKeepCheckpointWhenSubscriberFails() {
+        OutboxEventSubscriber failing = new RecordingSubscriber() {
+            @Override
+            public void onEvents(List<OutboxEvent> events) {
+                throw new IllegalStateException("indisponível");
+            }
+        };
+        when(outboxCheckpointRepository.findById("recorder")).thenReturn(Optional.empty());
+        when(outboxEventRepository.findAfter(0L, Limit.of(3))).thenReturn(events(1L));
+
+        boolean moreAvailable = relay(failing).relayOnce();
+
+        assertFalse(moreAvailable);
+        verify(outboxCheckpointRepository, never()).save(any(OutboxCheckpoint.class));
+        assertEquals(1.0, meterRegistry.counter("swiftbank.outbox.failures", "subscriber", "recorder").count());
+    }
+
+    @Test
+    void shouldStartTransientSubscriberAtTheCurrentEndWithoutCheckpointing() {
+        RecordingSubscriber transientSubscriber = new RecordingSubscriber() {
+            @Override
+            public boolean isDurable() {
+                return false;
+            }
+        };
+        when(outboxEventRepository.findLastSequenceNumber()).thenReturn(40L);
+        when(outboxEventRepository.findAfter(40L, Limit.of(3))).thenReturn(events(41L));
+        OutboxRelay relay = relay(transientSubscriber);
+
+        relay.relayOnce();
+        relay.relayOnce();
+
+        assertEquals(Collections.singletonList(41L), transientSubscriber.deliveredIds);
+        verify(outboxEventRepository, times(1)).findLastSequenceNumber();
+        verify(outboxEventRepository, times(1)).findAfter(41L, Limit.of(3));
+        verify(outboxCheckpointRepository, never()).findById("recorder");
+        verify(outboxCheckpointRepository, never()).save(any(OutboxCheckpoint.class));
+    }
+
+    @Test
+    void shouldLeaveTransientSubscribersOutOfThePurgeFloor() {
+        RecordingSubscriber transientSubscriber = new RecordingSubscriber() {
+            @Override
+            public String getName() {
+                return "live";
+            }
+
+            @Override
+            public boolean isDurable() {
+                return false;
+            }
+        };
+        when(outboxCheckpointRepository.findById("recorder")).thenReturn(Optional.of(new OutboxCheckpoint("recorder", 12L)));
+        OutboxRelay relay = new OutboxRelay(outboxEventRepository, outboxCheckpointRepository,
+                Arrays.<OutboxEventSubscriber>asList(subscriber, transientSubscriber),
+                AccountShards.single(TransactionOperations.withoutTransaction()), meterRegistry, true, 10, 3, 60000);
+
+        relay.purgeDeliveredEvents();
+
+        verify(outboxEventRepository, times(1)).deleteDelivered(eq(12L), any(LocalDateTime.class));
+        verify(outboxCheckpointRepository, never()).findById("live");
+    }
+
+    private OutboxRelay relay(OutboxEventSubscriber subscriber) {
+        return new OutboxRelay(outboxEventRepository, outboxCheckpointRepository, Collections.singletonList(subscriber),
+                AccountShards.single(TransactionOperations.withoutTransaction()), meterRegistry,
+                true, 10, 3, 60000);
+    }
+
+    private OutboxCheckpoint savedCheckpoint() {
+        ArgumentCaptor<OutboxCheckpoint> captor = ArgumentCaptor.forClass(OutboxCheckpoint.class);
+        verify(outboxCheckpointRepository, times(1)).save(captor.capture());
+        return captor.getValue();
+    }
+
+    private static List<OutboxEvent> events(Long... ids) {
+        List<OutboxEvent> events = new ArrayList<>();
+        for (Long id : ids) {
+            OutboxEvent event = new OutboxEvent("CREDIT", 1L, null, new BigDecimal("10"));
+            ReflectionTestUtils.setField(event, "id", id);
+            event.setSequenceNumber(id);
+            events.add(event);
+        }
+        return events;
+    }
+
+    private static class RecordingSubscriber implements OutboxEventSubscriber {
+
+        private final List<Long> deliveredIds = new ArrayList<>();
+
+        @Override
+        public String getName() {
+            return "recorder";
+        }
+
+        @Override
+        public void onEvents(List<OutboxEvent> events) {
+            for (OutboxEvent event : events) {
+                deliveredIds.add(event.getId());
+            }
+        }
+    }
+}
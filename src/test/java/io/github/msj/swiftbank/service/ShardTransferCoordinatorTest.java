@@ -0,0 +1,221 @@
+package io.github.msj.swiftbank.service;
+
+import io.github.msj.swiftbank.entity.ShardTransfer;
+import io.github.msj.swiftbank.entity.Transaction;
+import io.github.msj.swiftbank.exception.InsufficientFundsException;
+import io.github.msj.swiftbank.repository.AccountRepository;
+import io.github.msj.swiftbank.repository.ShardTransferRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ShardTransferCoordinatorTest {
+
+    private static final Long SOURCE = 2L;
+
+    private static final Long TARGET = 3L;
+
+    private static final BigDecimal AMOUNT = new BigDecimal("100");
+
+    @Mock
+    ShardTransferRepository shardTransferRepository;
+
+    @Mock
+    AccountRepository accountRepository;
+
+    @Mock
+    TransactionService transactionService;
+
+    @Mock
+    BalanceAggregateService balanceAggregateService;
+
+    @Mock
+    OutboxPublisher outboxPublisher;
+
+    @Mock
+    LedgerWriter ledgerWriter;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private AccountShards accountShards;
+
+    private ShardTransferCoordinator coordinator;
+
+    @BeforeEach
+    void setUp() {
+        accountShards = new AccountShards(TransactionOperations.withoutTransaction(), 2,
+                AccountShards.Strategy.HASH, 1000);
+        coordinator = new ShardTransferCoordinator(shardTransferRepository, accountRepository, accountShards,
+                new ConflictRetryExecutor(TransactionOperations.withoutTransaction(), 3, 0, 0),
+                new LedgerRecorder(accountRepository, transactionService, balanceAggregateService, accountShards,
+                        outboxPublisher, ledgerWriter),
+                meterRegistry, 30000, 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        accountShards.destroy();
+    }
+
+    @Test
+    void shouldDebitSourceShardThenCreditTargetShard() {
+        givenTransferIsRecorded();
+        when(accountRepository.findOwnerIdById(SOURCE)).thenReturn(Optional.of(5L));
+        when(accountRepository.findOwnerIdById(TARGET)).thenReturn(Optional.of(6L));
+        when(accountRepository.debitBalanceIfSufficient(SOURCE, AMOUNT)).thenReturn(1);
+        when(accountRepository.creditBalance(TARGET, AMOUNT)).thenReturn(1);
+
+        assertTrue(coordinator.transfer(SOURCE, TARGET, AMOUNT));
+
+        verify(shardTransferRepository, times(1)).insertStep(10L, ShardTransferCoordinator.DEBIT_STEP, true);
+        verify(shardTransferRepository, times(1)).insertStep(10L, ShardTransferCoordinator.CREDIT_STEP, true);
+        verify(shardTransferRepository, times(1)).updateStatus(eq(10L), eq(ShardTransfer.Status.DEBITED), any(LocalDateTime.class));
+        verify(shardTransferRepository, times(1)).updateStatus(eq(10L), eq(ShardTransfer.Status.COMPLETED), any(LocalDateTime.class));
+        verify(balanceAggregateService, times(1)).recordBalanceChange(5L, AMOUNT.negate());
+        verify(balanceAggregateService, times(1)).recordBalanceChange(6L, AMOUNT);
+        verify(transactionService, times(2)).save(any(Transaction.class));
+        verify(outboxPublisher, times(1)).publish("TRANSFER_OUT", SOURCE, TARGET, AMOUNT.negate());
+        verify(outboxPublisher, times(1)).publish("TRANSFER_IN", TARGET, SOURCE, AMOUNT);
+        assertEquals(1.0, transfersWithStatus("completed"));
+    }
+
+    @Test
+    void shouldLeaveTransferForRecoveryWhenCreditFailsAfterTheDebit() {
+        givenTransferIsRecorded();
+        when(accountRepository.findOwnerIdById(SOURCE)).thenReturn(Optional.of(5L));
+        when(accountRepository.debitBalanceIfSufficient(SOURCE, AMOUNT)).thenReturn(1);
+        when(accountRepository.creditBalance(TARGET, AMOUNT)).thenThrow(new IllegalStateException("conexão perdida"));
+
+        assertFalse(coordinator.transfer(SOURCE, TARGET, AMOUNT));
+
+        verify(shardTransferRepository, times(1)).updateStatus(eq(10L), eq(ShardTransfer.Status.DEBITED), any(LocalDateTime.class));
+        verify(shardTransferRepository, never()).insertStep(10L, ShardTransferCoordinator.REFUND_STEP, true);
+        verify(accountRepository, never()).creditBalance(SOURCE, AMOUNT);
+        assertTrue(meterRegistry.find("swiftbank.shard.transfers").counters().isEmpty());
+    }
+
+    @Test
+    void shouldMarkTransferFailedWhenSourceHasInsufficientFunds() {
+        givenTransferIsRecorded();
+        when(accountRepository.findOwnerIdById(SOURCE)).thenReturn(Optional.of(5L));
+        when(accountRepository.debitBalanceIfSufficient(SOURCE, AMOUNT)).thenReturn(0);
+
+        assertThrows(InsufficientFundsException.class, () -> coordinator.transfer(SOURCE, TARGET, AMOUNT));
+
+        verify(accountRepository, never()).creditBalance(anyLong(), any(BigDecimal.class));
+        verify(shardTransferRepository, times(1)).updateStatus(eq(10L), eq(ShardTransfer.Status.FAILED), any(LocalDateTime.class));
+        assertEquals(1.0, transfersWithStatus("failed"));
+    }
+
+    @Test
+    void shouldRefundSourceWhenTargetAccountIsMissing() {
+        givenTransferIsRecorded();
+        when(accountRepository.findOwnerIdById(SOURCE)).thenReturn(Optional.of(5L));
+        when(accountRepository.debitBalanceIfSufficient(SOURCE, AMOUNT)).thenReturn(1);
+        when(accountRepository.creditBalance(TARGET, AMOUNT)).thenReturn(0);
+        when(accountRepository.creditBalance(SOURCE, AMOUNT)).thenReturn(1);
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> coordinator.transfer(SOURCE, TARGET, AMOUNT));
+
+        assertEquals("Conta de destino não encontrada.", exception.getMessage());
+        verify(shardTransferRepository, times(1)).insertStep(10L, ShardTransferCoordinator.REFUND_STEP, true);
+        verify(balanceAggregateService, times(2)).recordBalanceChange(eq(5L), any(BigDecimal.class));
+        verify(outboxPublisher, times(1)).publish("TRANSFER_REVERSAL", SOURCE, TARGET, AMOUNT);
+        verify(shardTransferRepository, times(1)).updateStatus(eq(10L), eq(ShardTransfer.Status.COMPENSATED), any(LocalDateTime.class));
+        assertEquals(1.0, transfersWithStatus("compensated"));
+    }
+
+    @Test
+    void shouldResumePendingTransferWhoseDebitWasCommitted() {
+        ShardTransfer transfer = transfer(ShardTransfer.Status.PENDING);
+        givenStalled(transfer);
+        when(shardTransferRepository.insertStep(10L, ShardTransferCoordinator.DEBIT_STEP, false))
+                .thenThrow(new DataIntegrityViolationException("duplicate"));
+        when(shardTransferRepository.findStepApplied(10L, ShardTransferCoordinator.DEBIT_STEP)).thenReturn(Optional.of(true));
+        when(accountRepository.creditBalance(TARGET, AMOUNT)).thenReturn(1);
+        when(accountRepository.findOwnerIdById(TARGET)).thenReturn(Optional.of(6L));
+
+        coordinator.recoverStalledTransfers();
+
+        verify(accountRepository, never()).debitBalanceIfSufficient(anyLong(), any(BigDecimal.class));
+        verify(accountRepository, times(1)).creditBalance(TARGET, AMOUNT);
+        verify(shardTransferRepository, times(1)).updateStatus(eq(10L), eq(ShardTransfer.Status.COMPLETED), any(LocalDateTime.class));
+    }
+
+    @Test
+    void shouldFencePendingTransferWhoseDebitNeverHappened() {
+        givenStalled(transfer(ShardTransfer.Status.PENDING));
+
+        coordinator.recoverStalledTransfers();
+
+        verify(shardTransferRepository, times(1)).insertStep(10L, ShardTransferCoordinator.DEBIT_STEP, false);
+        verify(accountRepository, never()).creditBalance(anyLong(), any(BigDecimal.class));
+        verify(shardTransferRepository, times(1)).updateStatus(eq(10L), eq(ShardTransfer.Status.FAILED), any(LocalDateTime.class));
+    }
+
+    @Test
+    void shouldNotCreditTwiceWhenCreditStepAlreadyApplied() {
+        givenStalled(transfer(ShardTransfer.Status.DEBITED));
+        when(shardTransferRepository.insertStep(10L, ShardTransferCoordinator.CREDIT_STEP, true))
+                .thenThrow(new DataIntegrityViolationException("duplicate"));
+        when(shardTransferRepository.findStepApplied(10L, ShardTransferCoordinator.CREDIT_STEP)).thenReturn(Optional.of(true));
+
+        coordinator.recoverStalledTransfers();
+
+        verify(accountRepository, never()).creditBalance(anyLong(), any(BigDecimal.class));
+        verify(shardTransferRepository, times(1)).updateStatus(eq(10L), eq(ShardTransfer.Status.COMPLETED), any(LocalDateTime.class));
+    }
+
+    private void givenTransferIsRecorded() {
+        when(shardTransferRepository.save(any(ShardTransfer.class))).thenAnswer(invocation -> {
+            ShardTransfer transfer = invocation.getArgument(0);
+            ReflectionTestUtils.setField(transfer, "id", 10L);
+            return transfer;
+        });
+    }
+
+    private void givenStalled(ShardTransfer transfer) {
+        when(shardTransferRepository.findStalled(anyCollection(), any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(Collections.singletonList(transfer));
+    }
+
+    private static ShardTransfer transfer(ShardTransfer.Status status) {
+        ShardTransfer transfer = new ShardTransfer(SOURCE, TARGET, AMOUNT);
+        ReflectionTestUtils.setField(transfer, "id", 10L);
+        ReflectionTestUtils.setField(transfer, "status", status);
+        return transfer;
+    }
+
+    private double transfersWithStatus(String status) {
+        return meterRegistry.get("swiftbank.shard.transfers").tag("status", status).counter().count();
+    }
+}
@@ -1,21 +1,34 @@
 package io.github.msj.swiftbank.service;
 
+import io.github.msj.swiftbank.dto.TransactionCursor;
+import io.github.msj.swiftbank.dto.TransactionPage;
+import io.github.msj.swiftbank.dto.TransactionView;
 import io.github.msj.swiftbank.entity.Transaction;
 import io.github.msj.swiftbank.repository.TransactionRepository;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionOperations;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -26,6 +39,9 @@ class TransactionServiceTest {
     @Mock
     private TransactionRepository transactionRepository;
 
+    @Spy
+    AccountShards accountShards = AccountShards.single(TransactionOperations.withoutTransaction());
+
     @InjectMocks
     private TransactionService transactionService;
 
@@ -48,38 +64,114 @@ class TransactionServiceTest {
     }
 
     @Test
-    void shouldGetTransactionsByAccountSuccessfully() {
-        Transaction transaction1 = new Transaction();
-        transaction1.setId(1L);
-        transaction1.setAmount(new BigDecimal("100"));
-        transaction1.setTransactionType("CREDIT");
+    void shouldSaveTransactionsInOneBatch() {
+        Transaction debit = new Transaction();
+        debit.setAmount(new BigDecimal("-100"));
+        debit.setTransactionType("TRANSFER_OUT");
+
+        Transaction credit = new Transaction();
+        credit.setAmount(new BigDecimal("100"));
+        credit.setTransactionType("TRANSFER_IN");
+
+        List<Transaction> transactions = Arrays.asList(debit, credit);
+        when(transactionRepository.saveAll(transactions)).thenReturn(transactions);
+
+        List<Transaction> saved = transactionService.saveAll(transactions);
+
+        assertEquals(2, saved.size());
+        verify(transactionRepository, times(1)).saveAll(transactions);
+        verify(transactionRepository, never()).save(debit);
+    }
+
+    @Test
+    void shouldReturnFirstPageWithNextCursorWhenMoreRowsExist() {
+        List<TransactionView> rows = buildTransactions(TransactionService.PAGE_SIZE + 1, 1000L, -1);
+
+        when(transactionRepository.findLatestByAccountId(1L, Limit.of(TransactionService.PAGE_SIZE + 1))).thenReturn(rows);
+
+        TransactionPage page = transactionService.getTransactionPage(1L, null, TransactionPage.Direction.NEXT);
+
+        assertEquals(TransactionService.PAGE_SIZE, page.getTransactions().size());
+        assertTrue(page.hasNext());
+        assertFalse(page.hasPrevious());
+        TransactionView last = page.getTransactions().get(TransactionService.PAGE_SIZE - 1);
+        assertEquals(new TransactionCursor(last.getCreatedAt(), last.getId()).encode(), page.getNextCursor());
+    }
+
+    @Test
+    void shouldSeekOlderRowsFromCursor() {
+        LocalDateTime createdAt = LocalDateTime.of(2025, 1, 10, 12, 0);
+        TransactionCursor cursor = new TransactionCursor(createdAt, 500L);
+        List<TransactionView> rows = buildTransactions(3, 499L, -1);
+
+        when(transactionRepository.findOlderByAccountId(1L, createdAt, 500L, Limit.of(TransactionService.PAGE_SIZE + 1)))
+                .thenReturn(rows);
+
+        TransactionPage page = transactionService.getTransactionPage(1L, cursor.encode(), TransactionPage.Direction.NEXT);
+
+        assertEquals(3, page.getTransactions().size());
+        assertFalse(page.hasNext());
+        assertTrue(page.hasPrevious());
+    }
+
+    @Test
+    void shouldSeekNewerRowsAndKeepDescendingOrder() {
+        LocalDateTime createdAt = LocalDateTime.of(2025, 1, 10, 12, 0);
+        TransactionCursor cursor = new TransactionCursor(createdAt, 500L);
+        List<TransactionView> rows = buildTransactions(2, 501L, 1);
 
-        Transaction transaction2 = new Transaction();
-        transaction2.setId(2L);
-        transaction2.setAmount(new BigDecimal("200"));
-        transaction2.setTransactionType("DEBIT");
+        when(transactionRepository.findNewerByAccountId(1L, createdAt, 500L, Limit.of(TransactionService.PAGE_SIZE + 1)))
+                .thenReturn(rows);
 
-        List<Transaction> transactions = Arrays.asList(transaction1, transaction2);
+        TransactionPage page = transactionService.getTransactionPage(1L, cursor.encode(), TransactionPage.Direction.PREVIOUS);
 
-        when(transactionRepository.findByAccountId(1L)).thenReturn(transactions);
+        assertEquals(2, page.getTransactions().size());
+        assertEquals(502L, page.getTransactions().get(0).getId());
+        assertEquals(501L, page.getTransactions().get(1).getId());
+        assertTrue(page.hasNext());
+        assertFalse(page.hasPrevious());
+    }
 
-        List<Transaction> result = transactionService.getTransactionsByAccount(1L);
+    @Test
+    void shouldRejectMalformedCursor() {
+        IllegalArgumentException exception = assertThrows(
+                IllegalArgumentException.class,
+                () -> transactionService.getTransactionPage(1L, "not-a-cursor", TransactionPage.Direction.NEXT)
+        );
+        assertEquals("Cursor de paginação inválido.", exception.getMessage());
+    }
 
-        assertNotNull(result);
-        assertEquals(2, result.size());
-        assertEquals(1L, result.get(0).getId());
-        assertEquals(2L, result.get(1).getId());
-        verify(transactionRepository, times(1)).findByAccountId(1L);
+    @Test
+    void shouldExportTransactionsAsCsvFromStream() throws IOException {
+        TransactionView transaction = new TransactionView(7L, "CREDIT", new BigDecimal("150"), null);
+
+        when(transactionRepository.streamByAccountId(1L)).thenReturn(Stream.of(transaction));
+
+        StringWriter writer = new StringWriter();
+        transactionService.exportTransactions(1L, TransactionExportFormat.CSV, writer);
+
+        assertEquals("id,account_id,transaction_type,amount,created_at\n7,1,CREDIT,150,\n", writer.toString());
     }
 
     @Test
-    void shouldReturnEmptyListWhenNoTransactionsFound() {
-        when(transactionRepository.findByAccountId(1L)).thenReturn(Collections.emptyList());
+    void shouldExportTransactionsAsNdjson() throws IOException {
+        TransactionView transaction = new TransactionView(8L, "DEBIT", new BigDecimal("-20"), LocalDateTime.now());
 
-        List<Transaction> result = transactionService.getTransactionsByAccount(1L);
+        when(transactionRepository.streamByAccountId(1L)).thenReturn(Stream.of(transaction));
+
+        StringWriter writer = new StringWriter();
+        transactionService.exportTransactions(1L, TransactionExportFormat.NDJSON, writer);
+
+        assertEquals("{\"id\":8,\"accountId\":1,\"transactionType\":\"DEBIT\",\"amount\":-20,\"createdAt\":\""
+                + transaction.getCreatedAt() + "\"}\n", writer.toString());
+    }
 
-        assertNotNull(result);
-        assertTrue(result.isEmpty());
-        verify(transactionRepository, times(1)).findByAccountId(1L);
+    private List<TransactionView> buildTransactions(int count, long firstId, int step) {
+        List<TransactionView> transactions = new ArrayList<>();
+        LocalDateTime createdAt = LocalDateTime.now();
+        for (int i = 0; i < count; i++) {
+            transactions.add(new TransactionView(firstId + (long) i * step, "CREDIT", new BigDecimal("100"), createdAt));
+        }
+        return transactions;
     }
 }
@@ -7,6 +7,8 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.Arrays;
 import java.util.Collections;
@@ -27,6 +29,9 @@ class UserServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private UserDetailsCache userDetailsCache;
+
     @InjectMocks
     private UserService userService;
 
@@ -118,4 +123,19 @@ class UserServiceTest {
         assertEquals("Usuário nao encontrado.", exception.getMessage());
         verify(userRepository, times(1)).findByUsername("unknownuser");
     }
+
+    @Test
+    void shouldEvictCachedUserDetailsImmediatelyAndAfterTheTransactionCompletes() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            userService.evictUserDetails("user1");
+
+            verify(userDetailsCache, times(1)).evict("user1");
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+            verify(userDetailsCache, times(2)).evict("user1");
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
 }
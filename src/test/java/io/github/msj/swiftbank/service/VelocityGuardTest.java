@@ -0,0 +1,130 @@
+package io.github.msj.swiftbank.service;
+
+import io.github.msj.swiftbank.exception.VelocityLimitExceededException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class VelocityGuardTest {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("100");
+
+    private final AtomicLong clock = new AtomicLong(1_000_000L);
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final AtomicInteger outflows = new AtomicInteger();
+
+    @Test
+    void shouldBlockOutflowsOverCountLimitWithinWindow() {
+        VelocityGuard guard = guard(Collections.singletonMap("per-minute",
+                new VelocityRule(Duration.ofMinutes(1), 2, null)), null);
+
+        guard.withinLimits(1L, AMOUNT, outflows::incrementAndGet);
+        guard.withinLimits(1L, AMOUNT, outflows::incrementAndGet);
+
+        assertThrows(VelocityLimitExceededException.class, () -> guard.withinLimits(1L, AMOUNT, outflows::incrementAndGet));
+        assertEquals(2, outflows.get());
+        assertEquals(1.0, meterRegistry.counter("swiftbank.velocity.blocked", "rule", "per-minute").count());
+        assertDoesNotThrow(() -> guard.withinLimits(2L, AMOUNT, outflows::incrementAndGet));
+    }
+
+    @Test
+    void shouldAllowOutflowsAgainOnceTheWindowSlides() {
+        VelocityGuard guard = guard(Collections.singletonMap("per-minute",
+                new VelocityRule(Duration.ofMinutes(1), 1, null)), null);
+
+        guard.withinLimits(1L, AMOUNT, outflows::incrementAndGet);
+        clock.addAndGet(30_000);
+        assertThrows(VelocityLimitExceededException.class, () -> guard.withinLimits(1L, AMOUNT, outflows::incrementAndGet));
+
+        clock.addAndGet(31_000);
+        assertDoesNotThrow(() -> guard.withinLimits(1L, AMOUNT, outflows::incrementAndGet));
+    }
+
+    @Test
+    void shouldBlockOutflowsOverValueLimit() {
+        VelocityGuard guard = guard(Collections.singletonMap("value-per-hour",
+                new VelocityRule(Duration.ofHours(1), null, new BigDecimal("250"))), null);
+
+        guard.withinLimits(1L, AMOUNT, outflows::incrementAndGet);
+        guard.withinLimits(1L, AMOUNT, outflows::incrementAndGet);
+
+        assertThrows(VelocityLimitExceededException.class, () -> guard.withinLimits(1L, AMOUNT, outflows::incrementAndGet));
+        assertDoesNotThrow(() -> guard.withinLimits(1L, new BigDecimal("50"), outflows::incrementAndGet));
+    }
+
+    @Test
+    void shouldReleaseBudgetWhenOutflowFails() {
+        VelocityGuard guard = guard(Collections.singletonMap("per-minute",
+                new VelocityRule(Duration.ofMinutes(1), 1, null)), null);
+
+        assertThrows(IllegalArgumentException.class, () -> guard.withinLimits(1L, AMOUNT, () -> {
+            throw new IllegalArgumentException("Saldo insuficiente para realizar o débito.");
+        }));
+
+        assertDoesNotThrow(() -> guard.withinLimits(1L, AMOUNT, outflows::incrementAndGet));
+    }
+
+    @Test
+    void shouldOnlySweepAccountsIdleForAWholeWindow() {
+        VelocityGuard guard = guard(Collections.singletonMap("per-minute",
+                new VelocityRule(Duration.ofMinutes(1), 1, null)), null);
+
+        guard.withinLimits(1L, AMOUNT, outflows::incrementAndGet);
+        clock.addAndGet(30_000);
+        guard.evictIdleAccounts();
+        assertThrows(VelocityLimitExceededException.class, () -> guard.withinLimits(1L, AMOUNT, outflows::incrementAndGet));
+
+        clock.addAndGet(31_000);
+        guard.evictIdleAccounts();
+        assertDoesNotThrow(() -> guard.withinLimits(1L, AMOUNT, outflows::incrementAndGet));
+    }
+
+    @Test
+    void shouldHotReloadRulesFromFile(@TempDir Path directory) throws IOException {
+        Path rulesFile = directory.resolve("velocity.properties");
+        writeRules(rulesFile, "swiftbank.velocity.rules.per-minute.window=1m\n"
+                + "swiftbank.velocity.rules.per-minute.max-count=1\n", 1000);
+        VelocityGuard guard = guard(new HashMap<String, VelocityRule>(), rulesFile);
+        guard.reloadRules();
+
+        guard.withinLimits(1L, AMOUNT, outflows::incrementAndGet);
+        assertThrows(VelocityLimitExceededException.class, () -> guard.withinLimits(1L, AMOUNT, outflows::incrementAndGet));
+
+        writeRules(rulesFile, "swiftbank.velocity.rules.per-minute.window=1m\n"
+                + "swiftbank.velocity.rules.per-minute.max-count=3\n", 2000);
+        guard.reloadRules();
+
+        assertDoesNotThrow(() -> guard.withinLimits(1L, AMOUNT, outflows::incrementAndGet));
+        assertDoesNotThrow(() -> guard.withinLimits(1L, AMOUNT, outflows::incrementAndGet));
+        assertThrows(VelocityLimitExceededException.class, () -> guard.withinLimits(1L, AMOUNT, outflows::incrementAndGet));
+    }
+
+    private VelocityGuard guard(Map<String, VelocityRule> rules, Path rulesFile) {
+        return new VelocityGuard(rules, 60, clock::get, meterRegistry, rulesFile);
+    }
+
+    private static void writeRules(Path rulesFile, String rules, long modifiedAt) throws IOException {
+        Files.write(rulesFile, rules.getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(rulesFile, FileTime.fromMillis(modifiedAt));
+    }
+}